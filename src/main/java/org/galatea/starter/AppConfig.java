@@ -1,10 +1,14 @@
 package org.galatea.starter;
 
 import feign.Logger;
+import java.time.Clock;
+import java.util.concurrent.ForkJoinPool;
 import lombok.extern.slf4j.Slf4j;
 import net.sf.aspect4log.aspect.LogAspect;
 import org.galatea.starter.domain.SettlementMission;
 import org.galatea.starter.service.IAgreementTransformer;
+import org.galatea.starter.utils.resilience.Bulkhead;
+import org.galatea.starter.utils.resilience.CircuitBreaker;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
@@ -15,12 +19,15 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.EnableAspectJAutoProxy;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 @Slf4j
 @Configuration
 @EnableAspectJAutoProxy
 @EnableCaching
 @EnableFeignClients
+@EnableScheduling
 public class AppConfig {
 
   /**
@@ -76,4 +83,86 @@ public class AppConfig {
     return Logger.Level.BASIC;
   }
 
+  /**
+   * Bounded executor the symbols of batch historical price requests are resolved on.
+   *
+   * @param maxConcurrency the most symbols resolved, and so Iex calls made, at the same time.
+   * @param queueCapacity the most symbols waiting to be resolved.
+   * @return the executor.
+   */
+  @Bean
+  public ThreadPoolTaskExecutor iexBatchExecutor(
+      @Value("${iex.batch.max-concurrency}") final int maxConcurrency,
+      @Value("${iex.batch.queue-capacity}") final int queueCapacity) {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(maxConcurrency);
+    executor.setMaxPoolSize(maxConcurrency);
+    executor.setQueueCapacity(queueCapacity);
+    executor.setThreadNamePrefix("iex-batch-");
+    return executor;
+  }
+
+  /**
+   * Executor the chunks of large settlement spawns are validated and transformed on. They are
+   * stored afterwards on the calling thread, so the executor holds no database connection.
+   *
+   * @param parallelism the number of threads, or 0 for one per core.
+   * @return the executor.
+   */
+  @Bean(destroyMethod = "shutdown")
+  public ForkJoinPool settlementExecutor(
+      @Value("${settlement.spawn.parallelism}") final int parallelism) {
+    return new ForkJoinPool(
+        parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Bounded executor asynchronous settlement jobs run on. Once its queue is full, submissions are
+   * rejected rather than queued without bound.
+   *
+   * @param workers the most jobs run at the same time.
+   * @param queueCapacity the most jobs waiting to run.
+   * @return the executor.
+   */
+  @Bean
+  public ThreadPoolTaskExecutor settlementJobExecutor(
+      @Value("${settlement.jobs.workers}") final int workers,
+      @Value("${settlement.jobs.queue-capacity}") final int queueCapacity) {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(workers);
+    executor.setMaxPoolSize(workers);
+    executor.setQueueCapacity(queueCapacity);
+    executor.setThreadNamePrefix("settlement-job-");
+    return executor;
+  }
+
+  /**
+   * Bulkhead shared by every call to Iex, so a slow Iex can only hold a few of our threads.
+   *
+   * @param maxConcurrentCalls the most calls to Iex in flight at once.
+   * @param maxWaitMs how long a call waits for a free slot before failing.
+   * @return the bulkhead.
+   */
+  @Bean
+  public Bulkhead iexBulkhead(
+      @Value("${iex.client.bulkhead.max-concurrent-calls}") final int maxConcurrentCalls,
+      @Value("${iex.client.bulkhead.max-wait-ms}") final long maxWaitMs) {
+    return new Bulkhead(maxConcurrentCalls, maxWaitMs);
+  }
+
+  /**
+   * Circuit breaker shared by every call to Iex. While it is open, calls fail right away and the
+   * Iex service answers from the database only.
+   *
+   * @param failureThreshold the number of consecutive failed calls that opens the breaker.
+   * @param openMs how long the breaker stays open before a trial call is made.
+   * @return the circuit breaker.
+   */
+  @Bean
+  public CircuitBreaker iexCircuitBreaker(
+      @Value("${iex.client.circuit-breaker.failure-threshold}") final int failureThreshold,
+      @Value("${iex.client.circuit-breaker.open-ms}") final long openMs) {
+    return new CircuitBreaker("Iex", failureThreshold, openMs, Clock.systemUTC());
+  }
+
 }
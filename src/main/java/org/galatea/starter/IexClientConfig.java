@@ -0,0 +1,94 @@
+package org.galatea.starter;
+
+import feign.Client;
+import feign.Request;
+import feign.Retryer;
+import feign.codec.ErrorDecoder;
+import feign.httpclient.ApacheHttpClient;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.galatea.starter.service.IexErrorDecoder;
+import org.galatea.starter.service.IexFeignClient;
+import org.galatea.starter.service.IexRetryer;
+import org.galatea.starter.utils.resilience.Bulkhead;
+import org.galatea.starter.utils.resilience.CircuitBreaker;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+
+/**
+ * Feign configuration of the IEX client only. It is referenced from the FeignClient annotation of
+ * IexClient, and deliberately not annotated with @Configuration, so that its beans don't apply to
+ * every Feign client.
+ *
+ * <p>Calls go through a pool of kept alive connections, with a read timeout per endpoint, inside
+ * the shared Iex bulkhead and circuit breaker (see AppConfig). Throttled and failed calls are
+ * retried with jittered backoff.
+ */
+public class IexClientConfig {
+
+  /**
+   * Pooled HTTP client the Iex calls are made with. Idle connections are kept alive for reuse,
+   * but closed before Iex is likely to have dropped them.
+   */
+  @Bean(destroyMethod = "close")
+  public CloseableHttpClient iexHttpClient(
+      @Value("${iex.client.max-connections}") final int maxConnections,
+      @Value("${iex.client.keep-alive-ms}") final long keepAliveMs) {
+    PoolingHttpClientConnectionManager connectionManager =
+        new PoolingHttpClientConnectionManager(keepAliveMs, TimeUnit.MILLISECONDS);
+    // Every call goes to the same host, so a route may use the whole pool
+    connectionManager.setMaxTotal(maxConnections);
+    connectionManager.setDefaultMaxPerRoute(maxConnections);
+    return HttpClients.custom()
+        .setConnectionManager(connectionManager)
+        .setKeepAliveStrategy((response, context) -> keepAliveMs)
+        .evictIdleConnections(keepAliveMs, TimeUnit.MILLISECONDS)
+        .evictExpiredConnections()
+        .disableAutomaticRetries()
+        .build();
+  }
+
+  /**
+   * Feign client making the Iex calls over the pooled HTTP client, with the timeouts of each
+   * endpoint, the bulkhead and the circuit breaker.
+   */
+  @Bean
+  public Client iexFeignClient(final CloseableHttpClient iexHttpClient,
+      final Bulkhead iexBulkhead, final CircuitBreaker iexCircuitBreaker,
+      @Value("${iex.client.connect-timeout-ms}") final int connectTimeoutMs,
+      @Value("${iex.client.read-timeout-ms}") final int readTimeoutMs,
+      @Value("${iex.client.symbols-read-timeout-ms}") final int symbolsReadTimeoutMs,
+      @Value("${iex.client.last-traded-price-read-timeout-ms}")
+      final int lastTradedPriceReadTimeoutMs) {
+    Map<String, Request.Options> optionsByPath = new LinkedHashMap<>();
+    // The list of every symbol is large, while last traded prices are small and soon stale
+    optionsByPath.put("/ref-data/", new Request.Options(connectTimeoutMs, symbolsReadTimeoutMs));
+    optionsByPath.put("/tops/",
+        new Request.Options(connectTimeoutMs, lastTradedPriceReadTimeoutMs));
+    return new IexFeignClient(new ApacheHttpClient(iexHttpClient), iexBulkhead,
+        iexCircuitBreaker, new Request.Options(connectTimeoutMs, readTimeoutMs), optionsByPath);
+  }
+
+  /**
+   * Retries failed Iex calls with exponential, jittered backoff.
+   */
+  @Bean
+  public Retryer iexRetryer(
+      @Value("${iex.client.retry.max-attempts}") final int maxAttempts,
+      @Value("${iex.client.retry.initial-backoff-ms}") final long initialBackoffMs,
+      @Value("${iex.client.retry.max-backoff-ms}") final long maxBackoffMs) {
+    return new IexRetryer(maxAttempts, initialBackoffMs, maxBackoffMs);
+  }
+
+  /**
+   * Makes throttled and failed Iex calls retryable.
+   */
+  @Bean
+  public ErrorDecoder iexErrorDecoder() {
+    return new IexErrorDecoder();
+  }
+}
@@ -10,6 +10,7 @@ import org.galatea.starter.utils.http.converter.SettlementMissionXlsxConverter;
 import org.galatea.starter.utils.rest.FuseHttpTraceFilter;
 import org.springframework.boot.actuate.trace.http.HttpExchangeTracer;
 import org.springframework.boot.actuate.trace.http.Include;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.actuate.web.trace.servlet.HttpTraceFilter;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -18,6 +19,8 @@ import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.http.converter.protobuf.ProtobufHttpMessageConverter;
 import org.springframework.http.converter.xml.Jaxb2RootElementHttpMessageConverter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
 import org.springframework.web.servlet.config.annotation.ContentNegotiationConfigurer;
 import org.springframework.web.servlet.config.annotation.EnableWebMvc;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
@@ -33,15 +36,28 @@ public class MvcConfig implements WebMvcConfigurer {
   public static final MediaType APPLICATION_EXCEL = new MediaType("application", "vnd.ms-excel");
   public static final String APPLICATION_EXCEL_VALUE = "application/vnd.ms-excel";
 
+  public static final MediaType APPLICATION_NDJSON = new MediaType("application", "x-ndjson");
+  public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+  @Value("${mvc.settleMissionStreamPath}")
+  private String settleMissionStreamPath;
+
+  @Value("${mvc.async.max-threads}")
+  private int asyncMaxThreads;
+
+  @Value("${mvc.async.timeout-ms}")
+  private long asyncTimeoutMs;
+
   /**
-   * This is used to trace web requests and store that trace info.
+   * This is used to trace web requests and store that trace info. Streamed agreement posts are not
+   * traced, as tracing keeps a copy of the whole request and response.
    *
    * @return the trace filter
    */
   @Bean
   public HttpTraceFilter httpTraceFilter() {
     return new FuseHttpTraceFilter(fuseHttpTraceRepository(), httpExchangeTracer(),
-        path -> path.startsWith("/trace"));
+        path -> path.startsWith("/trace") || path.equals(settleMissionStreamPath));
   }
 
   /**
@@ -63,6 +79,27 @@ public class MvcConfig implements WebMvcConfigurer {
     return new HttpExchangeTracer(Sets.newHashSet(Include.values()));
   }
 
+  /**
+   * Executor that asynchronous responses, such as streamed ones, are written on.
+   *
+   * @return the executor
+   */
+  @Bean
+  public ThreadPoolTaskExecutor mvcAsyncExecutor() {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(asyncMaxThreads);
+    executor.setMaxPoolSize(asyncMaxThreads);
+    executor.setThreadNamePrefix("mvc-async-");
+    return executor;
+  }
+
+  @Override
+  public void configureAsyncSupport(final AsyncSupportConfigurer configurer) {
+    // Streamed responses can take a while, so don't fall back on the servlet container's timeout
+    configurer.setDefaultTimeout(asyncTimeoutMs);
+    configurer.setTaskExecutor(mvcAsyncExecutor());
+  }
+
   @Override
   public void configureContentNegotiation(final ContentNegotiationConfigurer configurer) {
     configurer.favorParameter(true) // give precedence to url request parameters
@@ -78,6 +115,7 @@ public class MvcConfig implements WebMvcConfigurer {
     configurer.mediaType("xml", MediaType.APPLICATION_XML);
     configurer.mediaType("csv", TEXT_CSV);
     configurer.mediaType("xlsx", APPLICATION_EXCEL);
+    configurer.mediaType("ndjson", APPLICATION_NDJSON);
 
   }
 
@@ -0,0 +1,48 @@
+package org.galatea.starter.domain;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.Locale;
+
+/**
+ * The period each bar of aggregated prices covers.
+ */
+public enum BarInterval {
+
+  DAY,
+  WEEK,
+  MONTH;
+
+  /**
+   * Get the first day of the period a date falls in.
+   *
+   * @param date a date.
+   * @return the date itself for DAY, the Monday of its week for WEEK, or the first day of its
+   *     month for MONTH.
+   */
+  public LocalDate periodStart(final LocalDate date) {
+    switch (this) {
+      case WEEK:
+        return date.with(DayOfWeek.MONDAY);
+      case MONTH:
+        return date.withDayOfMonth(1);
+      default:
+        return date;
+    }
+  }
+
+  /**
+   * Parse an interval from a request parameter, in any case.
+   *
+   * @param value "day", "week" or "month".
+   * @return the interval.
+   * @throws IllegalArgumentException if the value is not an interval.
+   */
+  public static BarInterval fromString(final String value) {
+    try {
+      return valueOf(value.trim().toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Improper Interval Provided.", e);
+    }
+  }
+}
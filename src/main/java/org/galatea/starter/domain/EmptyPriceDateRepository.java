@@ -0,0 +1,36 @@
+package org.galatea.starter.domain;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Like HistoricalPricesRepository, every lookup leads with the symbol, so it is answered by the
+ * unique (symbol, trade_date) index of IexEmptyPriceDate.
+ */
+public interface EmptyPriceDateRepository extends CrudRepository<IexEmptyPriceDate, Long> {
+
+  /**
+   * Query database for the empty dates of a symbol within a window of dates.
+   * @param symbol Symbol of stock to get empty dates for
+   * @param startDate First date of the window, inclusive
+   * @param endDate Last date of the window, inclusive
+   * @return every IexEmptyPriceDate of the symbol in the window
+   */
+  List<IexEmptyPriceDate> findBySymbolAndDateBetween(String symbol, LocalDate startDate,
+      LocalDate endDate);
+
+  /**
+   * Delete every entry checked before a time.
+   * @param checkedAt entries checked before this are deleted
+   * @return the number of entries deleted
+   */
+  @Transactional
+  @Modifying
+  @Query("delete from IexEmptyPriceDate e where e.checkedAt < ?1")
+  int deleteByCheckedAtBefore(Instant checkedAt);
+}
@@ -0,0 +1,85 @@
+package org.galatea.starter.domain;
+
+import java.sql.DatabaseMetaData;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Migrates historical prices stored before the date became a typed column. Those rows keep their
+ * date as a YYYY-MM-DD string in the legacy "date" column, which hibernate leaves in place when it
+ * adds the "trade_date" column. On startup the legacy dates are copied over, duplicate entries for
+ * the same symbol and date are dropped (keeping the first one stored) so the unique index holds,
+ * and the legacy column is removed. Nothing happens on databases that never had the legacy column.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class HistoricalPricesDateMigration implements ApplicationRunner {
+
+  private static final String TABLE = "iex_historical_pricesdb";
+  private static final String LEGACY_DATE_COLUMN = "date";
+
+  @NonNull
+  private JdbcTemplate jdbcTemplate;
+
+  @Override
+  @Transactional
+  public void run(final ApplicationArguments args) {
+    if (!hasLegacyDateColumn()) {
+      return;
+    }
+    log.info("Migrating the {} column of {} to trade_date", LEGACY_DATE_COLUMN, TABLE);
+
+    Set<String> seen = new HashSet<>();
+    List<Object[]> updates = new ArrayList<>();
+    List<Object[]> duplicates = new ArrayList<>();
+    jdbcTemplate.query("select id, symbol, " + LEGACY_DATE_COLUMN + " from " + TABLE
+        + " where trade_date is null and " + LEGACY_DATE_COLUMN + " is not null order by id",
+        rs -> {
+          long id = rs.getLong(1);
+          LocalDate date = LocalDate.parse(rs.getString(3));
+          if (seen.add(rs.getString(2) + "|" + date)) {
+            updates.add(new Object[]{Date.valueOf(date), id});
+          } else {
+            duplicates.add(new Object[]{id});
+          }
+        });
+
+    jdbcTemplate.batchUpdate("delete from " + TABLE + " where id = ?", duplicates);
+    jdbcTemplate.batchUpdate("update " + TABLE + " set trade_date = ? where id = ?", updates);
+    jdbcTemplate.execute("alter table " + TABLE + " drop column " + LEGACY_DATE_COLUMN);
+    log.info("Migrated {} row(s) and removed {} duplicate(s)", updates.size(), duplicates.size());
+  }
+
+  private boolean hasLegacyDateColumn() {
+    Boolean found = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+      DatabaseMetaData metaData = connection.getMetaData();
+      // Databases differ in the case they store unquoted identifiers in
+      return hasColumn(metaData, TABLE.toUpperCase(), LEGACY_DATE_COLUMN.toUpperCase())
+          || hasColumn(metaData, TABLE, LEGACY_DATE_COLUMN);
+    });
+    return Boolean.TRUE.equals(found);
+  }
+
+  private static boolean hasColumn(final DatabaseMetaData metaData, final String table,
+      final String column) throws SQLException {
+    try (ResultSet columns = metaData.getColumns(null, null, table, column)) {
+      return columns.next();
+    }
+  }
+}
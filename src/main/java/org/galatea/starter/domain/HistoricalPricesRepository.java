@@ -1,18 +1,86 @@
 package org.galatea.starter.domain;
 
+import java.time.LocalDate;
 import java.util.List;
-
+import java.util.stream.Stream;
+import javax.persistence.QueryHint;
+import org.hibernate.jpa.QueryHints;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 
+/**
+ * Every query here leads with the symbol, so it is answered by the unique (symbol, trade_date)
+ * index of IexHistoricalPricesDB: exact lookups are index seeks and date windows are ordered range
+ * scans over the index.
+ */
 public interface HistoricalPricesRepository extends CrudRepository<IexHistoricalPricesDB, Long> {
 
   /**
    * Query database by both date and symbol.
    * @param symbol Symbol of stock to get historical price for
-   * @param date Date you want to query (formatted YYYYMMDD)
-   * @return List of IexHistoricalPrices object
+   * @param date Date you want to query
+   * @return IexHistoricalPricesDB object, or null if there is none
+   */
+  IexHistoricalPricesDB findBySymbolAndDate(String symbol, LocalDate date);
+
+  /**
+   * Query database for every entry of a symbol within a window of dates, in a single query.
+   * @param symbol Symbol of stock to get historical prices for
+   * @param startDate First date of the window, inclusive
+   * @param endDate Last date of the window, inclusive
+   * @return List of IexHistoricalPricesDB objects sorted by date
    */
-  IexHistoricalPricesDB findBySymbolAndDate(String symbol, String date);
+  List<IexHistoricalPricesDB> findBySymbolAndDateBetweenOrderByDateAsc(String symbol,
+      LocalDate startDate, LocalDate endDate);
+
+  /**
+   * Stream every entry of a symbol within a window of dates, fetching rows from the database in
+   * batches as the stream is consumed. Must be called, and the stream consumed and closed, within
+   * a transaction.
+   * @param symbol Symbol of stock to get historical prices for
+   * @param startDate First date of the window, inclusive
+   * @param endDate Last date of the window, inclusive
+   * @return Stream of IexHistoricalPricesDB objects sorted by date
+   */
+  @org.springframework.data.jpa.repository.QueryHints({
+      @QueryHint(name = QueryHints.HINT_FETCH_SIZE, value = "500"),
+      @QueryHint(name = QueryHints.HINT_READONLY, value = "true")})
+  Stream<IexHistoricalPricesDB> streamBySymbolAndDateBetweenOrderByDateAsc(String symbol,
+      LocalDate startDate, LocalDate endDate);
+
+  /**
+   * Query database for the dates of a symbol that are stored within a window of dates, without
+   * loading the entries themselves.
+   * @param symbol Symbol of stock
+   * @param startDate First date of the window, inclusive
+   * @param endDate Last date of the window, inclusive
+   * @return List of the stored dates
+   */
+  @Query("select p.date from IexHistoricalPricesDB p"
+      + " where p.symbol = ?1 and p.date between ?2 and ?3")
+  List<LocalDate> findDatesBySymbolAndDateBetween(String symbol, LocalDate startDate,
+      LocalDate endDate);
+
+  /**
+   * Query database for every entry of a symbol, in a single query.
+   * @param symbol Symbol of stock to get historical prices for
+   * @return List of IexHistoricalPricesDB objects sorted by date
+   */
+  List<IexHistoricalPricesDB> findBySymbolOrderByDateAsc(String symbol);
+
+  /**
+   * Query database for the oldest entry of a symbol.
+   * @param symbol Symbol of stock
+   * @return the IexHistoricalPricesDB object with the earliest date, or null if there is none
+   */
+  IexHistoricalPricesDB findFirstBySymbolOrderByDateAsc(String symbol);
+
+  /**
+   * Query database for the most recent entry of a symbol.
+   * @param symbol Symbol of stock
+   * @return the IexHistoricalPricesDB object with the latest date, or null if there is none
+   */
+  IexHistoricalPricesDB findFirstBySymbolOrderByDateDesc(String symbol);
 
   /**
    * Query database by automatically-generated id.
@@ -23,5 +91,13 @@ public interface HistoricalPricesRepository extends CrudRepository<IexHistorical
 
   List<IexHistoricalPricesDB> findBySymbol(String symbol);
 
-  boolean existsBySymbol(String symbol);
+  /**
+   * Query database for the first and last stored dates, and the number of entries, of every
+   * symbol, in a single aggregate query. Rows without a date are left out.
+   * @return List of SymbolCoverage objects, one per stored symbol
+   */
+  @Query("select new org.galatea.starter.domain.SymbolCoverage(p.symbol, min(p.date),"
+      + " max(p.date), count(p)) from IexHistoricalPricesDB p where p.date is not null"
+      + " group by p.symbol")
+  List<SymbolCoverage> findCoverageOfEverySymbol();
 }
@@ -0,0 +1,30 @@
+package org.galatea.starter.domain;
+
+import java.util.List;
+import java.util.Map;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The historical prices of several symbols aggregated into bars, computed in one batch. A symbol
+ * appears under either bars or errors, never both, so one bad symbol does not fail the whole
+ * batch.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class IexAggregatedPrices {
+
+  // Period each bar covers, and number of daily returns the volatility of a bar is measured over
+  private BarInterval interval;
+  private int volatilityWindow;
+
+  // Bars of every symbol that was resolved, oldest first, keyed by symbol in the order requested
+  private Map<String, List<PriceBar>> bars;
+
+  // Reason each symbol that could not be resolved failed, keyed by symbol
+  private Map<String, String> errors;
+}
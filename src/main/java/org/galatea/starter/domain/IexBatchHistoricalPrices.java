@@ -0,0 +1,25 @@
+package org.galatea.starter.domain;
+
+import java.util.List;
+import java.util.Map;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The historical prices of several symbols, fetched in one batch. A symbol appears under either
+ * prices or errors, never both, so one bad symbol does not fail the whole batch.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class IexBatchHistoricalPrices {
+
+  // Prices of every symbol that was resolved, keyed by symbol in the order they were requested
+  private Map<String, List<IexHistoricalPrices>> prices;
+
+  // Reason each symbol that could not be resolved failed, keyed by symbol
+  private Map<String, String> errors;
+}
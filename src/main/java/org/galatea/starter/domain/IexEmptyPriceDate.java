@@ -0,0 +1,53 @@
+package org.galatea.starter.domain;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * A date Iex returned no price for, for a symbol (e.g. the symbol was halted or not listed yet).
+ * There is at most one entry per symbol and date; checkedAt is when Iex last returned nothing, so
+ * the date can be asked for again once the entry is old enough.
+ */
+@Entity
+@Table(indexes = @Index(name = "ux_iex_empty_price_date_symbol_date",
+    columnList = "symbol, trade_date", unique = true))
+@Getter
+@NoArgsConstructor
+public class IexEmptyPriceDate {
+
+  @Id
+  @GeneratedValue(strategy = GenerationType.AUTO)
+  private long id;
+
+  private String symbol;
+
+  // "date" is a reserved word in standard SQL, so the column gets a different name
+  @Column(name = "trade_date")
+  private LocalDate date;
+
+  @Setter
+  private Instant checkedAt;
+
+  /**
+   * Creates an entry.
+   *
+   * @param symbol Stock symbol Iex returned no price for.
+   * @param date the date Iex returned no price for.
+   * @param checkedAt when Iex returned nothing.
+   */
+  public IexEmptyPriceDate(final String symbol, final LocalDate date, final Instant checkedAt) {
+    this.symbol = symbol;
+    this.date = date;
+    this.checkedAt = checkedAt;
+  }
+}
@@ -1,36 +1,211 @@
 package org.galatea.starter.domain;
 
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import java.math.BigDecimal;
-import lombok.AllArgsConstructor;
 import lombok.Builder;
-import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
 
-@Data
-@Builder
-@AllArgsConstructor
+/**
+ * A daily price of a stock, as returned by Iex and by our endpoints. Prices are held as longs
+ * scaled by 10^ScaledPrices.SCALE, and are read from and written to JSON in that form, so a row
+ * holds no BigDecimal unless one of the BigDecimal getters is called.
+ */
+@JsonAutoDetect(fieldVisibility = Visibility.ANY, getterVisibility = Visibility.NONE,
+    isGetterVisibility = Visibility.NONE, setterVisibility = Visibility.NONE)
+@EqualsAndHashCode(doNotUseGetters = true)
+@ToString
 @NoArgsConstructor
 public class IexHistoricalPrices {
 
+  @Getter
+  @Setter
   private String symbol;
-  private BigDecimal close;
-  private BigDecimal high;
-  private BigDecimal low;
-  private BigDecimal open;
+
+  @JsonSerialize(using = ScaledPriceSerializer.class)
+  @JsonDeserialize(using = ScaledPriceDeserializer.class)
+  private long close = ScaledPrices.MISSING;
+
+  @JsonSerialize(using = ScaledPriceSerializer.class)
+  @JsonDeserialize(using = ScaledPriceDeserializer.class)
+  private long high = ScaledPrices.MISSING;
+
+  @JsonSerialize(using = ScaledPriceSerializer.class)
+  @JsonDeserialize(using = ScaledPriceDeserializer.class)
+  private long low = ScaledPrices.MISSING;
+
+  @JsonSerialize(using = ScaledPriceSerializer.class)
+  @JsonDeserialize(using = ScaledPriceDeserializer.class)
+  private long open = ScaledPrices.MISSING;
+
+  @Getter
+  @Setter
   private long volume;
+
+  @Getter
+  @Setter
   private String date;
 
+  /**
+   * Constructor from BigDecimal prices.
+   * @param symbol Stock symbol
+   * @param close Price at close
+   * @param high Adjusted high price for the day
+   * @param low Adjusted low price for the day
+   * @param open Adjusted open price for the day
+   * @param volume Volume of trades for the day
+   * @param date Date of the price (formatted YYYY-MM-DD)
+   */
+  @Builder
+  public IexHistoricalPrices(final String symbol, final BigDecimal close, final BigDecimal high,
+      final BigDecimal low, final BigDecimal open, final long volume, final String date) {
+    this.symbol = symbol;
+    this.close = ScaledPrices.scale(close);
+    this.high = ScaledPrices.scale(high);
+    this.low = ScaledPrices.scale(low);
+    this.open = ScaledPrices.scale(open);
+    this.volume = volume;
+    this.date = date;
+  }
+
   /**
    * Constructor from a database entry (IexHistoricalPricesDB).
    * @param entity IexHistoricalPricesDB entry
    */
   public IexHistoricalPrices(final IexHistoricalPricesDB entity) {
     this.symbol = entity.getSymbol();
-    this.close = entity.getClose();
-    this.high = entity.getHigh();
-    this.low = entity.getLow();
-    this.open = entity.getOpen();
+    this.close = entity.getScaledClose();
+    this.high = entity.getScaledHigh();
+    this.low = entity.getScaledLow();
+    this.open = entity.getScaledOpen();
     this.volume = entity.getVolume();
-    this.date = entity.getDate();
+    this.date = entity.getDate().toString();
+  }
+
+  /**
+   * Create a price from prices already scaled by 10^ScaledPrices.SCALE.
+   * @param symbol Stock symbol
+   * @param scaledClose Scaled price at close, or ScaledPrices.MISSING
+   * @param scaledHigh Scaled adjusted high price for the day, or ScaledPrices.MISSING
+   * @param scaledLow Scaled adjusted low price for the day, or ScaledPrices.MISSING
+   * @param scaledOpen Scaled adjusted open price for the day, or ScaledPrices.MISSING
+   * @param volume Volume of trades for the day
+   * @param date Date of the price (formatted YYYY-MM-DD)
+   * @return the price
+   */
+  public static IexHistoricalPrices ofScaled(final String symbol, final long scaledClose,
+      final long scaledHigh, final long scaledLow, final long scaledOpen, final long volume,
+      final String date) {
+    IexHistoricalPrices prices = new IexHistoricalPrices();
+    prices.symbol = symbol;
+    prices.close = scaledClose;
+    prices.high = scaledHigh;
+    prices.low = scaledLow;
+    prices.open = scaledOpen;
+    prices.volume = volume;
+    prices.date = date;
+    return prices;
+  }
+
+  /**
+   * Close price getter.
+   * @return close, or null if Iex did not provide it
+   */
+  public BigDecimal getClose() {
+    return ScaledPrices.unscale(close);
+  }
+
+  /**
+   * Close price setter.
+   * @param close the price at close
+   */
+  public void setClose(final BigDecimal close) {
+    this.close = ScaledPrices.scale(close);
+  }
+
+  /**
+   * Scaled close price getter.
+   * @return close multiplied by 10^ScaledPrices.SCALE, or ScaledPrices.MISSING
+   */
+  public long getScaledClose() {
+    return close;
+  }
+
+  /**
+   * High price getter.
+   * @return high, or null if Iex did not provide it
+   */
+  public BigDecimal getHigh() {
+    return ScaledPrices.unscale(high);
+  }
+
+  /**
+   * High price setter.
+   * @param high the adjusted high price for the day
+   */
+  public void setHigh(final BigDecimal high) {
+    this.high = ScaledPrices.scale(high);
+  }
+
+  /**
+   * Scaled high price getter.
+   * @return high multiplied by 10^ScaledPrices.SCALE, or ScaledPrices.MISSING
+   */
+  public long getScaledHigh() {
+    return high;
+  }
+
+  /**
+   * Low price getter.
+   * @return low, or null if Iex did not provide it
+   */
+  public BigDecimal getLow() {
+    return ScaledPrices.unscale(low);
+  }
+
+  /**
+   * Low price setter.
+   * @param low the adjusted low price for the day
+   */
+  public void setLow(final BigDecimal low) {
+    this.low = ScaledPrices.scale(low);
+  }
+
+  /**
+   * Scaled low price getter.
+   * @return low multiplied by 10^ScaledPrices.SCALE, or ScaledPrices.MISSING
+   */
+  public long getScaledLow() {
+    return low;
+  }
+
+  /**
+   * Open price getter.
+   * @return open, or null if Iex did not provide it
+   */
+  public BigDecimal getOpen() {
+    return ScaledPrices.unscale(open);
+  }
+
+  /**
+   * Open price setter.
+   * @param open the adjusted open price for the day
+   */
+  public void setOpen(final BigDecimal open) {
+    this.open = ScaledPrices.scale(open);
+  }
+
+  /**
+   * Scaled open price getter.
+   * @return open multiplied by 10^ScaledPrices.SCALE, or ScaledPrices.MISSING
+   */
+  public long getScaledOpen() {
+    return open;
   }
 }
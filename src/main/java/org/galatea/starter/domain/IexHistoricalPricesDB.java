@@ -1,13 +1,29 @@
 package org.galatea.starter.domain;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
+import javax.persistence.Column;
+import javax.persistence.Convert;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
 import lombok.NoArgsConstructor;
 
+/**
+ * A stored daily price of a stock. There is at most one entry per symbol and date, and the unique
+ * index on (symbol, trade_date) keeps lookups by symbol, by symbol and date, and by symbol over a
+ * range of dates as index seeks and ordered range scans rather than table scans.
+ *
+ * <p>Prices are held as longs scaled by 10^ScaledPrices.SCALE, and stored in decimal columns of
+ * that scale, so a loaded entry holds no BigDecimal and copying it to or from an
+ * IexHistoricalPrices object copies longs.
+ */
 @Entity
+@Table(indexes = @Index(name = "ux_iex_historical_prices_symbol_date",
+    columnList = "symbol, trade_date", unique = true))
 @NoArgsConstructor
 public class IexHistoricalPricesDB {
 
@@ -16,12 +32,28 @@ public class IexHistoricalPricesDB {
   private long id;
 
   private String symbol;
-  private BigDecimal close;
-  private BigDecimal high;
-  private BigDecimal low;
-  private BigDecimal open;
+
+  @Convert(converter = ScaledPriceConverter.class)
+  @Column(precision = 19, scale = ScaledPrices.SCALE)
+  private long close;
+
+  @Convert(converter = ScaledPriceConverter.class)
+  @Column(precision = 19, scale = ScaledPrices.SCALE)
+  private long high;
+
+  @Convert(converter = ScaledPriceConverter.class)
+  @Column(precision = 19, scale = ScaledPrices.SCALE)
+  private long low;
+
+  @Convert(converter = ScaledPriceConverter.class)
+  @Column(precision = 19, scale = ScaledPrices.SCALE)
+  private long open;
+
   private long volume;
-  private String date;
+
+  // "date" is a reserved word in standard SQL, so the column gets a different name
+  @Column(name = "trade_date")
+  private LocalDate date;
 
 /**
  * Constructor method for IexHistoricalPrices.
@@ -31,15 +63,15 @@ public class IexHistoricalPricesDB {
  * @param low Adjusted low price for the day
  * @param open Adjusted open price for the day
  * @param volume Volume of trades for the day
- * @param date Date queried (formatted yyyy-mm-dd)
+ * @param date Date queried
  */
   public IexHistoricalPricesDB(final String symbol, final BigDecimal close, final BigDecimal high,
-      final BigDecimal low, final BigDecimal open, final long volume, final String date) {
+      final BigDecimal low, final BigDecimal open, final long volume, final LocalDate date) {
     this.symbol = symbol;
-    this.close = close;
-    this.high = high;
-    this.low = low;
-    this.open = open;
+    this.close = ScaledPrices.scale(close);
+    this.high = ScaledPrices.scale(high);
+    this.low = ScaledPrices.scale(low);
+    this.open = ScaledPrices.scale(open);
     this.volume = volume;
     this.date = date;
   }
@@ -50,12 +82,37 @@ public class IexHistoricalPricesDB {
    */
   public IexHistoricalPricesDB(final IexHistoricalPrices entity) {
     this.symbol = entity.getSymbol();
-    this.close = entity.getClose();
-    this.high = entity.getHigh();
-    this.low = entity.getLow();
-    this.open = entity.getOpen();
+    this.close = entity.getScaledClose();
+    this.high = entity.getScaledHigh();
+    this.low = entity.getScaledLow();
+    this.open = entity.getScaledOpen();
     this.volume = entity.getVolume();
-    this.date = entity.getDate();
+    this.date = LocalDate.parse(entity.getDate());
+  }
+
+  /**
+   * Create a database entry from prices already scaled by 10^ScaledPrices.SCALE.
+   * @param symbol Stock symbol
+   * @param scaledClose Scaled price at close, or ScaledPrices.MISSING
+   * @param scaledHigh Scaled adjusted high price for the day, or ScaledPrices.MISSING
+   * @param scaledLow Scaled adjusted low price for the day, or ScaledPrices.MISSING
+   * @param scaledOpen Scaled adjusted open price for the day, or ScaledPrices.MISSING
+   * @param volume Volume of trades for the day
+   * @param date Date of the price
+   * @return the database entry
+   */
+  public static IexHistoricalPricesDB ofScaled(final String symbol, final long scaledClose,
+      final long scaledHigh, final long scaledLow, final long scaledOpen, final long volume,
+      final LocalDate date) {
+    IexHistoricalPricesDB entity = new IexHistoricalPricesDB();
+    entity.symbol = symbol;
+    entity.close = scaledClose;
+    entity.high = scaledHigh;
+    entity.low = scaledLow;
+    entity.open = scaledOpen;
+    entity.volume = volume;
+    entity.date = date;
+    return entity;
   }
 
   /**
@@ -76,33 +133,65 @@ public class IexHistoricalPricesDB {
 
   /**
    * Close price getter.
-   * @return close
+   * @return close, or null if there is none
    */
   public BigDecimal getClose() {
+    return ScaledPrices.unscale(close);
+  }
+
+  /**
+   * Scaled close price getter.
+   * @return close multiplied by 10^ScaledPrices.SCALE, or ScaledPrices.MISSING
+   */
+  public long getScaledClose() {
     return close;
   }
 
   /**
    * High price getter.
-   * @return high
+   * @return high, or null if there is none
    */
   public BigDecimal getHigh() {
+    return ScaledPrices.unscale(high);
+  }
+
+  /**
+   * Scaled high price getter.
+   * @return high multiplied by 10^ScaledPrices.SCALE, or ScaledPrices.MISSING
+   */
+  public long getScaledHigh() {
     return high;
   }
 
   /**
    * Low price getter.
-   * @return low
+   * @return low, or null if there is none
    */
   public BigDecimal getLow() {
+    return ScaledPrices.unscale(low);
+  }
+
+  /**
+   * Scaled low price getter.
+   * @return low multiplied by 10^ScaledPrices.SCALE, or ScaledPrices.MISSING
+   */
+  public long getScaledLow() {
     return low;
   }
 
   /**
    * Open price getter.
-   * @return open
+   * @return open, or null if there is none
    */
   public BigDecimal getOpen() {
+    return ScaledPrices.unscale(open);
+  }
+
+  /**
+   * Scaled open price getter.
+   * @return open multiplied by 10^ScaledPrices.SCALE, or ScaledPrices.MISSING
+   */
+  public long getScaledOpen() {
     return open;
   }
 
@@ -118,7 +207,7 @@ public class IexHistoricalPricesDB {
    * Date getter.
    * @return date
    */
-  public String getDate() {
+  public LocalDate getDate() {
     return date;
   }
 }
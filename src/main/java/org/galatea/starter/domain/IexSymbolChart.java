@@ -0,0 +1,21 @@
+package org.galatea.starter.domain;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The chart of one symbol in the answer to an Iex batch request, which holds one such entry per
+ * symbol it knows.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class IexSymbolChart {
+
+  // Daily prices of the symbol, oldest first; Iex may leave their symbol out
+  private List<IexHistoricalPrices> chart;
+}
@@ -0,0 +1,58 @@
+package org.galatea.starter.domain;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * The daily prices of a symbol aggregated over one period (a day, week or month). Prices are held
+ * as longs scaled by 10^ScaledPrices.SCALE and written to JSON as decimals. Returns are measured
+ * from the close of the previous bar, and the volatility is that of the daily log returns up to
+ * the last day of the bar; each is null when there is not enough history before the bar.
+ */
+@JsonAutoDetect(fieldVisibility = Visibility.ANY, getterVisibility = Visibility.NONE,
+    isGetterVisibility = Visibility.NONE, setterVisibility = Visibility.NONE)
+@Getter
+@Builder
+@AllArgsConstructor
+@ToString
+public class PriceBar {
+
+  // First and last trading days of the period with a price, formatted YYYY-MM-DD
+  private final String start;
+  private final String end;
+
+  @JsonProperty("open")
+  @JsonSerialize(using = ScaledPriceSerializer.class)
+  private final long scaledOpen;
+
+  @JsonProperty("high")
+  @JsonSerialize(using = ScaledPriceSerializer.class)
+  private final long scaledHigh;
+
+  @JsonProperty("low")
+  @JsonSerialize(using = ScaledPriceSerializer.class)
+  private final long scaledLow;
+
+  @JsonProperty("close")
+  @JsonSerialize(using = ScaledPriceSerializer.class)
+  private final long scaledClose;
+
+  private final long volume;
+
+  // Volume weighted average of the daily typical prices, (high + low + close) / 3
+  @JsonProperty("vwap")
+  @JsonSerialize(using = ScaledPriceSerializer.class)
+  private final long scaledVwap;
+
+  private final Double simpleReturn;
+  private final Double logReturn;
+
+  // Sample standard deviation of the daily log returns over the volatility window, not annualized
+  private final Double volatility;
+}
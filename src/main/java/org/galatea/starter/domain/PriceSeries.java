@@ -0,0 +1,271 @@
+package org.galatea.starter.domain;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import lombok.Getter;
+
+/**
+ * An immutable, columnar copy of the stored daily prices of one symbol. Dates are kept as sorted
+ * epoch days and prices as longs scaled by 10^PRICE_SCALE, one primitive array per column, so a
+ * row costs 44 bytes instead of an entity object with its symbol and date, and a date window is
+ * found with two binary searches.
+ */
+public final class PriceSeries {
+
+  /**
+   * Number of decimal places kept for prices, which is what Iex provides.
+   */
+  public static final int PRICE_SCALE = ScaledPrices.SCALE;
+
+  /**
+   * Heap used by one row of the series.
+   */
+  public static final int BYTES_PER_ROW = Integer.BYTES + 5 * Long.BYTES;
+
+  @Getter
+  private final String symbol;
+  private final int[] epochDays;
+  private final long[] open;
+  private final long[] high;
+  private final long[] low;
+  private final long[] close;
+  private final long[] volume;
+
+  private PriceSeries(final String symbol, final int size) {
+    this.symbol = symbol;
+    this.epochDays = new int[size];
+    this.open = new long[size];
+    this.high = new long[size];
+    this.low = new long[size];
+    this.close = new long[size];
+    this.volume = new long[size];
+  }
+
+  /**
+   * Build a series from stored entries.
+   *
+   * @param symbol the symbol the entries are for.
+   * @param entities the stored entries of the symbol, sorted by date with no date repeated.
+   * @return the series.
+   */
+  public static PriceSeries of(final String symbol,
+      final List<IexHistoricalPricesDB> entities) {
+    PriceSeries series = new PriceSeries(symbol, entities.size());
+    for (int i = 0; i < entities.size(); i++) {
+      IexHistoricalPricesDB entity = entities.get(i);
+      series.set(i, (int) entity.getDate().toEpochDay(), entity.getScaledOpen(),
+          entity.getScaledHigh(), entity.getScaledLow(), entity.getScaledClose(),
+          entity.getVolume());
+    }
+    return series;
+  }
+
+  /**
+   * Create a new series with the given prices added. A price for a date that is already in the
+   * series does not replace it.
+   *
+   * @param prices prices of this series' symbol, in any order.
+   * @return a new series holding the rows of both.
+   */
+  public PriceSeries merge(final Collection<IexHistoricalPrices> prices) {
+    Map<Integer, IexHistoricalPrices> added = new TreeMap<>();
+    for (IexHistoricalPrices price : prices) {
+      if (price.getDate() == null) {
+        continue;
+      }
+      int epochDay = (int) LocalDate.parse(price.getDate()).toEpochDay();
+      if (indexOf(epochDay) < 0) {
+        added.putIfAbsent(epochDay, price);
+      }
+    }
+    if (added.isEmpty()) {
+      return this;
+    }
+
+    PriceSeries merged = new PriceSeries(symbol, size() + added.size());
+    int from = 0;
+    int to = 0;
+    for (Map.Entry<Integer, IexHistoricalPrices> entry : added.entrySet()) {
+      // Copy every existing row older than the added one, then the added row itself
+      int end = lowerBound(entry.getKey());
+      for (; from < end; from++, to++) {
+        merged.copyRow(to, this, from);
+      }
+      IexHistoricalPrices price = entry.getValue();
+      merged.set(to++, entry.getKey(), price.getScaledOpen(), price.getScaledHigh(),
+          price.getScaledLow(), price.getScaledClose(), price.getVolume());
+    }
+    for (; from < size(); from++, to++) {
+      merged.copyRow(to, this, from);
+    }
+    return merged;
+  }
+
+  /**
+   * Get the number of rows in the series.
+   *
+   * @return the number of rows.
+   */
+  public int size() {
+    return epochDays.length;
+  }
+
+  /**
+   * Get the oldest date in the series.
+   *
+   * @return the first date, or null if the series is empty.
+   */
+  public LocalDate firstDate() {
+    return size() == 0 ? null : LocalDate.ofEpochDay(epochDays[0]);
+  }
+
+  /**
+   * Get the most recent date in the series.
+   *
+   * @return the last date, or null if the series is empty.
+   */
+  public LocalDate lastDate() {
+    return size() == 0 ? null : LocalDate.ofEpochDay(epochDays[size() - 1]);
+  }
+
+  /**
+   * Find the row of a date.
+   *
+   * @param date the date to look for.
+   * @return the index of the row, or a negative number if the date is not in the series.
+   */
+  public int indexOf(final LocalDate date) {
+    return indexOf((int) date.toEpochDay());
+  }
+
+  /**
+   * Find the first row on or after a date.
+   *
+   * @param date the date to look for.
+   * @return the index of the first row that is not older than the date; size() if there is none.
+   */
+  public int lowerBound(final LocalDate date) {
+    return lowerBound((int) date.toEpochDay());
+  }
+
+  /**
+   * Get the rows between two dates as Iex prices.
+   *
+   * @param startDate first date of the window, inclusive.
+   * @param endDate last date of the window, inclusive.
+   * @return the prices in the window, sorted by date.
+   */
+  public List<IexHistoricalPrices> slice(final LocalDate startDate, final LocalDate endDate) {
+    int start = lowerBound(startDate);
+    int end = lowerBound(endDate.plusDays(1));
+    List<IexHistoricalPrices> prices = new ArrayList<>(Math.max(end - start, 0));
+    for (int i = start; i < end; i++) {
+      prices.add(toPrices(i));
+    }
+    return prices;
+  }
+
+  /**
+   * Get a row as an Iex price.
+   *
+   * @param index the index of the row.
+   * @return the row as an IexHistoricalPrices object.
+   */
+  public IexHistoricalPrices toPrices(final int index) {
+    return IexHistoricalPrices.ofScaled(symbol, close[index], high[index], low[index],
+        open[index], volume[index], getDate(index).toString());
+  }
+
+  /**
+   * Get the date of a row.
+   *
+   * @param index the index of the row.
+   * @return the date.
+   */
+  public LocalDate getDate(final int index) {
+    return LocalDate.ofEpochDay(epochDays[index]);
+  }
+
+  /**
+   * Get the scaled open price of a row.
+   *
+   * @param index the index of the row.
+   * @return the open price multiplied by 10^PRICE_SCALE, or Long.MIN_VALUE if there is none.
+   */
+  public long getScaledOpen(final int index) {
+    return open[index];
+  }
+
+  /**
+   * Get the scaled high price of a row.
+   *
+   * @param index the index of the row.
+   * @return the high price multiplied by 10^PRICE_SCALE, or Long.MIN_VALUE if there is none.
+   */
+  public long getScaledHigh(final int index) {
+    return high[index];
+  }
+
+  /**
+   * Get the scaled low price of a row.
+   *
+   * @param index the index of the row.
+   * @return the low price multiplied by 10^PRICE_SCALE, or Long.MIN_VALUE if there is none.
+   */
+  public long getScaledLow(final int index) {
+    return low[index];
+  }
+
+  /**
+   * Get the scaled close price of a row.
+   *
+   * @param index the index of the row.
+   * @return the close price multiplied by 10^PRICE_SCALE, or Long.MIN_VALUE if there is none.
+   */
+  public long getScaledClose(final int index) {
+    return close[index];
+  }
+
+  /**
+   * Get the volume of a row.
+   *
+   * @param index the index of the row.
+   * @return the volume.
+   */
+  public long getVolume(final int index) {
+    return volume[index];
+  }
+
+  private int indexOf(final int epochDay) {
+    return Arrays.binarySearch(epochDays, epochDay);
+  }
+
+  private int lowerBound(final int epochDay) {
+    int index = Arrays.binarySearch(epochDays, epochDay);
+    return index >= 0 ? index : -index - 1;
+  }
+
+  private void set(final int index, final int epochDay, final long openPrice,
+      final long highPrice, final long lowPrice, final long closePrice, final long dayVolume) {
+    epochDays[index] = epochDay;
+    open[index] = openPrice;
+    high[index] = highPrice;
+    low[index] = lowPrice;
+    close[index] = closePrice;
+    volume[index] = dayVolume;
+  }
+
+  private void copyRow(final int index, final PriceSeries source, final int sourceIndex) {
+    epochDays[index] = source.epochDays[sourceIndex];
+    open[index] = source.open[sourceIndex];
+    high[index] = source.high[sourceIndex];
+    low[index] = source.low[sourceIndex];
+    close[index] = source.close[sourceIndex];
+    volume[index] = source.volume[sourceIndex];
+  }
+}
@@ -0,0 +1,83 @@
+package org.galatea.starter.domain;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Where the daily prices fetched from Iex are stored. There is at most one entry per symbol and
+ * date, and every query leads with the symbol. Implementations are chosen with
+ * iex.price-store.type: the JPA repository ("jpa", the default) or memory mapped files per symbol
+ * ("mapped"), which keep the history across restarts without a database server.
+ */
+public interface PriceStore {
+
+  /**
+   * Query the store by both date and symbol.
+   * @param symbol Symbol of stock to get historical price for
+   * @param date Date you want to query
+   * @return IexHistoricalPricesDB object, or null if there is none
+   */
+  IexHistoricalPricesDB findBySymbolAndDate(String symbol, LocalDate date);
+
+  /**
+   * Query the store for every entry of a symbol within a window of dates.
+   * @param symbol Symbol of stock to get historical prices for
+   * @param startDate First date of the window, inclusive
+   * @param endDate Last date of the window, inclusive
+   * @return List of IexHistoricalPricesDB objects sorted by date
+   */
+  List<IexHistoricalPricesDB> findBySymbolAndDateBetween(String symbol, LocalDate startDate,
+      LocalDate endDate);
+
+  /**
+   * Query the store for every entry of a symbol.
+   * @param symbol Symbol of stock to get historical prices for
+   * @return List of IexHistoricalPricesDB objects sorted by date
+   */
+  List<IexHistoricalPricesDB> findBySymbol(String symbol);
+
+  /**
+   * Query the store for the dates of a symbol that are stored within a window of dates, without
+   * loading the entries themselves.
+   * @param symbol Symbol of stock
+   * @param startDate First date of the window, inclusive
+   * @param endDate Last date of the window, inclusive
+   * @return List of the stored dates
+   */
+  List<LocalDate> findDatesBySymbolAndDateBetween(String symbol, LocalDate startDate,
+      LocalDate endDate);
+
+  /**
+   * Hand out every entry of a symbol within a window of dates, one at a time, without holding
+   * them all in memory.
+   * @param symbol Symbol of stock to get historical prices for
+   * @param startDate First date of the window, inclusive
+   * @param endDate Last date of the window, inclusive
+   * @param consumer receives each entry, sorted by date
+   */
+  void forEachBySymbolAndDateBetween(String symbol, LocalDate startDate, LocalDate endDate,
+      Consumer<IexHistoricalPrices> consumer);
+
+  /**
+   * Query the store for the first and last stored dates, and the number of entries, of every
+   * symbol. Entries without a date are left out.
+   * @return List of SymbolCoverage objects, one per stored symbol
+   */
+  List<SymbolCoverage> findCoverageOfEverySymbol();
+
+  /**
+   * Store new entries. The caller makes sure no (symbol, date) of the entries is stored yet.
+   * @param entities entries of any symbols, in any order
+   */
+  void saveAll(Collection<IexHistoricalPricesDB> entities);
+
+  /**
+   * Register a listener told of the symbol and date of every entry stored from now on, by
+   * whichever code stored it, once the entry is committed.
+   * @param listener receives the symbol and date of each stored entry
+   */
+  void addStoredListener(BiConsumer<String, LocalDate> listener);
+}
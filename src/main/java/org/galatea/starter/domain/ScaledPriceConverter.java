@@ -0,0 +1,23 @@
+package org.galatea.starter.domain;
+
+import java.math.BigDecimal;
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+/**
+ * Stores a price held as a scaled long in a decimal column, so the column keeps its type while
+ * entities only hold the long. A missing price is stored as null.
+ */
+@Converter
+public class ScaledPriceConverter implements AttributeConverter<Long, BigDecimal> {
+
+  @Override
+  public BigDecimal convertToDatabaseColumn(final Long price) {
+    return price == null ? null : ScaledPrices.unscale(price);
+  }
+
+  @Override
+  public Long convertToEntityAttribute(final BigDecimal column) {
+    return ScaledPrices.scale(column);
+  }
+}
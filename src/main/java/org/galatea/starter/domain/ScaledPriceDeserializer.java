@@ -0,0 +1,41 @@
+package org.galatea.starter.domain;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import java.io.IOException;
+
+/**
+ * Reads a JSON decimal number (or a string holding one) into a price held as a scaled long,
+ * straight from the characters of the number rather than through a BigDecimal. A null price is
+ * read as ScaledPrices.MISSING.
+ */
+public class ScaledPriceDeserializer extends StdDeserializer<Long> {
+
+  public ScaledPriceDeserializer() {
+    super(Long.class);
+  }
+
+  @Override
+  public Long deserialize(final JsonParser parser, final DeserializationContext context)
+      throws IOException {
+    JsonToken token = parser.getCurrentToken();
+    if (token != JsonToken.VALUE_NUMBER_INT && token != JsonToken.VALUE_NUMBER_FLOAT
+        && token != JsonToken.VALUE_STRING) {
+      return (Long) context.handleUnexpectedToken(Long.class, parser);
+    }
+    try {
+      return ScaledPrices.parse(parser.getTextCharacters(), parser.getTextOffset(),
+          parser.getTextLength());
+    } catch (NumberFormatException e) {
+      return (Long) context.handleWeirdStringValue(Long.class, parser.getText(),
+          "not a valid price");
+    }
+  }
+
+  @Override
+  public Long getNullValue(final DeserializationContext context) {
+    return ScaledPrices.MISSING;
+  }
+}
@@ -0,0 +1,32 @@
+package org.galatea.starter.domain;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import java.io.IOException;
+
+/**
+ * Writes a price held as a scaled long as a JSON decimal number, straight from its digits rather
+ * than through a BigDecimal or a String. A missing price is written as null.
+ */
+public class ScaledPriceSerializer extends StdSerializer<Long> {
+
+  // Generators are not shared between threads, so neither is the buffer their prices go through
+  private static final ThreadLocal<char[]> BUFFER =
+      ThreadLocal.withInitial(() -> new char[ScaledPrices.MAX_FORMATTED_LENGTH]);
+
+  public ScaledPriceSerializer() {
+    super(Long.class);
+  }
+
+  @Override
+  public void serialize(final Long price, final JsonGenerator generator,
+      final SerializerProvider provider) throws IOException {
+    if (price == ScaledPrices.MISSING) {
+      generator.writeNull();
+    } else {
+      char[] buffer = BUFFER.get();
+      generator.writeRawValue(buffer, 0, ScaledPrices.format(price, buffer));
+    }
+  }
+}
@@ -0,0 +1,174 @@
+package org.galatea.starter.domain;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Converts prices between BigDecimal and the compact form they are held in: a long scaled by
+ * 10^SCALE. Prices are only turned back into a BigDecimal when a caller asks for one; they are
+ * read from and written to JSON straight from their scaled form.
+ */
+public final class ScaledPrices {
+
+  /**
+   * Number of decimal places kept for prices, which is what Iex provides.
+   */
+  public static final int SCALE = 4;
+
+  /**
+   * Stands in for a price Iex did not provide.
+   */
+  public static final long MISSING = Long.MIN_VALUE;
+
+  /**
+   * The most chars a formatted price takes: a sign, 15 digits of units, a point and SCALE digits.
+   */
+  public static final int MAX_FORMATTED_LENGTH = 1 + 15 + 1 + SCALE;
+
+  // 10^SCALE
+  private static final long ONE = 10_000L;
+
+  // More significant digits than this could overflow a long once scaled, so such prices are
+  // parsed through a BigDecimal instead
+  private static final int MAX_PLAIN_DIGITS = 18 - SCALE;
+
+  private ScaledPrices() {}
+
+  /**
+   * Scale a price, rounding it half up to SCALE decimal places.
+   *
+   * @param price the price, or null if there is none.
+   * @return the price multiplied by 10^SCALE, or MISSING if there is none.
+   */
+  public static long scale(final BigDecimal price) {
+    if (price == null) {
+      return MISSING;
+    }
+    return price.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+  }
+
+  /**
+   * Turn a scaled price back into a BigDecimal.
+   *
+   * @param price the price multiplied by 10^SCALE, or MISSING if there is none.
+   * @return the price with SCALE decimal places, or null if there is none.
+   */
+  public static BigDecimal unscale(final long price) {
+    return price == MISSING ? null : BigDecimal.valueOf(price, SCALE);
+  }
+
+  /**
+   * Scale a price written as a plain decimal (an optional minus sign, digits, and an optional
+   * fraction), without going through a BigDecimal. Digits past SCALE decimal places are rounded
+   * half up.
+   *
+   * @param chars the characters holding the price.
+   * @param offset the index of the first character of the price.
+   * @param length the number of characters of the price.
+   * @return the price multiplied by 10^SCALE.
+   * @throws NumberFormatException if the characters are not a price.
+   */
+  public static long parse(final char[] chars, final int offset, final int length) {
+    int end = offset + length;
+    int i = offset;
+    boolean negative = i < end && chars[i] == '-';
+    if (negative || (i < end && chars[i] == '+')) {
+      i++;
+    }
+
+    long value = 0;
+    int digits = 0;
+    int significantDigits = 0;
+    int decimals = -1;
+    boolean roundUp = false;
+    for (; i < end; i++) {
+      char c = chars[i];
+      if (c == '.' && decimals < 0) {
+        decimals = 0;
+        continue;
+      } else if (c < '0' || c > '9') {
+        // An exponent, or not a number at all
+        return parseSlowly(chars, offset, length);
+      }
+      digits++;
+      if (decimals >= SCALE) {
+        // Past SCALE decimals only the first dropped digit matters
+        roundUp |= decimals++ == SCALE && c >= '5';
+        continue;
+      }
+      if ((value != 0 || c != '0') && ++significantDigits > MAX_PLAIN_DIGITS) {
+        return parseSlowly(chars, offset, length);
+      }
+      value = value * 10 + (c - '0');
+      if (decimals >= 0) {
+        decimals++;
+      }
+    }
+    if (digits == 0) {
+      throw new NumberFormatException("Not a price: " + new String(chars, offset, length));
+    }
+
+    for (int padding = SCALE - Math.max(decimals, 0); padding > 0; padding--) {
+      value *= 10;
+    }
+    if (roundUp) {
+      value++;
+    }
+    return negative ? -value : value;
+  }
+
+  /**
+   * Write a scaled price as a plain decimal, without trailing zeros in its fraction.
+   *
+   * @param price the price multiplied by 10^SCALE; must not be MISSING.
+   * @return the price as a decimal number.
+   */
+  public static String format(final long price) {
+    char[] buffer = new char[MAX_FORMATTED_LENGTH];
+    return new String(buffer, 0, format(price, buffer));
+  }
+
+  /**
+   * Write a scaled price as a plain decimal, without trailing zeros in its fraction, into a
+   * buffer.
+   *
+   * @param price the price multiplied by 10^SCALE; must not be MISSING.
+   * @param buffer where the price is written from index 0; must hold MAX_FORMATTED_LENGTH chars.
+   * @return the number of chars written.
+   */
+  public static int format(final long price, final char[] buffer) {
+    long units = Math.abs(price / ONE);
+    long fraction = Math.abs(price % ONE);
+    int length = 0;
+    if (price < 0) {
+      buffer[length++] = '-';
+    }
+    // Write the units backwards from the end of their digits
+    int unitsEnd = length + digitCount(units);
+    for (int i = unitsEnd - 1; i >= length; i--) {
+      buffer[i] = (char) ('0' + units % 10);
+      units /= 10;
+    }
+    length = unitsEnd;
+    if (fraction != 0) {
+      buffer[length++] = '.';
+      for (long place = ONE / 10; fraction != 0; place /= 10) {
+        buffer[length++] = (char) ('0' + fraction / place);
+        fraction %= place;
+      }
+    }
+    return length;
+  }
+
+  private static int digitCount(final long value) {
+    int count = 1;
+    for (long rest = value / 10; rest != 0; rest /= 10) {
+      count++;
+    }
+    return count;
+  }
+
+  private static long parseSlowly(final char[] chars, final int offset, final int length) {
+    return scale(new BigDecimal(chars, offset, length));
+  }
+}
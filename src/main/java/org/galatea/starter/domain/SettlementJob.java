@@ -0,0 +1,36 @@
+package org.galatea.starter.domain;
+
+import java.util.List;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Value;
+
+/**
+ * The state of an asynchronous settlement job at one point in time: how many of its agreements
+ * have had their missions stored so far, and the ids of those missions.
+ */
+@Builder
+@Value
+public class SettlementJob {
+
+  /**
+   * The stages a job goes through. A failed job keeps the missions stored before it failed.
+   */
+  public enum Status {
+    QUEUED, RUNNING, SUCCEEDED, FAILED
+  }
+
+  @NonNull
+  String id;
+
+  @NonNull
+  Status status;
+
+  int agreementCount;
+
+  @NonNull
+  List<Long> missionIds;
+
+  // Why the job failed, or null
+  String error;
+}
@@ -4,6 +4,7 @@ import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Version;
 import javax.validation.constraints.DecimalMin;
 import javax.xml.bind.annotation.XmlRootElement;
@@ -24,8 +25,17 @@ import org.galatea.starter.utils.validation.StringEnumeration;
 @XmlRootElement(name = "settlementMission")
 public class SettlementMission {
 
+  /**
+   * Number of ids reserved with each round trip to the id sequence. The pooled optimizer hands
+   * out the ids of a block in memory. A restart skips what is left of a block.
+   */
+  public static final int ID_ALLOCATION_SIZE = 500;
+
+  // Without database sequences (MySQL) the generator keeps the next value in a one row table
   @Id
-  @GeneratedValue(strategy = GenerationType.AUTO)
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "settlement_mission_id")
+  @SequenceGenerator(name = "settlement_mission_id", sequenceName = "settlement_mission_seq",
+      allocationSize = ID_ALLOCATION_SIZE)
   protected Long id;
 
   @NonNull
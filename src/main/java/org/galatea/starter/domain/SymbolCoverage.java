@@ -0,0 +1,50 @@
+package org.galatea.starter.domain;
+
+import java.time.LocalDate;
+import lombok.Value;
+
+/**
+ * The dates stored for a symbol: the first and last of them, and how many there are. A symbol
+ * whose row count equals the trading days from its first to its last date has no gap.
+ */
+@Value
+public class SymbolCoverage {
+
+  private String symbol;
+  private LocalDate firstDate;
+  private LocalDate lastDate;
+  private long rowCount;
+
+  /**
+   * Get the coverage once one more date is stored.
+   *
+   * @param date the newly stored date.
+   * @return the coverage including that date.
+   */
+  public SymbolCoverage withDate(final LocalDate date) {
+    return new SymbolCoverage(symbol, date.isBefore(firstDate) ? date : firstDate,
+        date.isAfter(lastDate) ? date : lastDate, rowCount + 1);
+  }
+
+  /**
+   * Check whether a window of dates lies within the first and last stored dates.
+   *
+   * @param startDate the first date of the window.
+   * @param endDate the last date of the window, included.
+   * @return true if no date of the window is before the first or after the last stored date.
+   */
+  public boolean spans(final LocalDate startDate, final LocalDate endDate) {
+    return !startDate.isBefore(firstDate) && !endDate.isAfter(lastDate);
+  }
+
+  /**
+   * Check whether a window of dates shares any date with the first to last stored dates.
+   *
+   * @param startDate the first date of the window.
+   * @param endDate the last date of the window, included.
+   * @return true if the window and the stored dates overlap.
+   */
+  public boolean overlaps(final LocalDate startDate, final LocalDate endDate) {
+    return !endDate.isBefore(firstDate) && !startDate.isAfter(lastDate);
+  }
+}
@@ -1,9 +1,13 @@
 package org.galatea.starter.entrypoint;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
-import java.util.Set;
 import java.util.stream.Collectors;
+import javax.validation.ConstraintViolationException;
 import lombok.AccessLevel;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
@@ -13,6 +17,7 @@ import net.sf.aspect4log.Log.Level;
 import org.galatea.starter.domain.SettlementMission;
 import org.galatea.starter.domain.TradeAgreement;
 import org.galatea.starter.service.SettlementService;
+import org.galatea.starter.utils.translation.TranslationException;
 
 /**
  * Implements a base class for settlement rest controllers to avoid duplicating the logic of calling
@@ -28,13 +33,39 @@ public abstract class BaseSettlementRestController extends BaseRestController {
 
   /**
    * Invokes the settlement service to spawn missions for the specified trade agreements.
+   *
+   * @return the paths of the missions, in the order of their agreements.
    */
-  protected Set<String> settleAgreementInternal(final List<TradeAgreement> agreements,
+  protected List<String> settleAgreementInternal(final List<TradeAgreement> agreements,
       final String getMissionPath) {
 
-    Set<Long> missionIds = settlementService.spawnMissions(agreements);
-    return missionIds.stream().map(id -> getMissionPath + id)
-        .collect(Collectors.toSet());
+    List<Long> missionIds = settlementService.spawnMissions(agreements);
+    return toMissionPaths(missionIds, getMissionPath);
+  }
+
+  /**
+   * Invokes the settlement service to spawn missions for trade agreements read one at a time,
+   * handing the paths of the missions of each stored batch to the writer as soon as it is stored.
+   * The response is already committed by then, so if the agreements fail part way, e.g. on an
+   * invalid agreement, what went wrong is handed to the error writer as the last record instead.
+   */
+  protected void settleAgreementStreamInternal(final Iterator<TradeAgreement> agreements,
+      final String getMissionPath, final MissionPathsWriter writer,
+      final StreamErrorWriter errorWriter) throws IOException {
+    try {
+      settlementService.spawnMissions(agreements, missionIds -> {
+        try {
+          writer.write(toMissionPaths(missionIds, getMissionPath));
+        } catch (IOException e) {
+          throw new ResponseWriteException(e);
+        }
+      });
+    } catch (ResponseWriteException e) {
+      // The client is gone, so there is no one left to tell
+      throw e.getCause();
+    } catch (RuntimeException e) {
+      errorWriter.write(toStreamErrorMessage(e));
+    }
   }
 
   /**
@@ -71,4 +102,56 @@ public abstract class BaseSettlementRestController extends BaseRestController {
   protected void deleteMissionInternal(final Long id) {
     settlementService.deleteMission(id);
   }
+
+  /**
+   * Describes why a stream of agreements failed, as RestExceptionHandler would for a whole post.
+   */
+  private static String toStreamErrorMessage(final RuntimeException exception) {
+    if (exception instanceof ConstraintViolationException) {
+      log.debug("Invalid input data streamed", exception);
+      return ConstraintViolationMessageFormatter.toMessage(
+          (ConstraintViolationException) exception);
+    } else if (exception instanceof TranslationException
+        || exception.getCause() instanceof JsonProcessingException) {
+      log.debug("Incorrectly formatted agreement streamed", exception);
+      return "Incorrectly formatted message.  Please consult the documentation.";
+    }
+    log.error("Unexpected error settling streamed agreements", exception);
+    return "An internal application error occurred.";
+  }
+
+  private static List<String> toMissionPaths(final List<Long> missionIds,
+      final String getMissionPath) {
+    return missionIds.stream().map(id -> getMissionPath + id)
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Writes the paths of a batch of spawned missions to a streamed response.
+   */
+  @FunctionalInterface
+  protected interface MissionPathsWriter {
+
+    void write(List<String> missionPaths) throws IOException;
+  }
+
+  /**
+   * Writes the last record of a streamed response whose agreements failed part way.
+   */
+  @FunctionalInterface
+  protected interface StreamErrorWriter {
+
+    void write(String error) throws IOException;
+  }
+
+  /**
+   * Carries a failure to write the response out of the settlement service, to tell it apart from
+   * a failure to read the request.
+   */
+  private static class ResponseWriteException extends UncheckedIOException {
+
+    ResponseWriteException(final IOException cause) {
+      super(cause);
+    }
+  }
 }
@@ -1,14 +1,27 @@
 package org.galatea.starter.entrypoint;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.sf.aspect4log.Log;
 import net.sf.aspect4log.Log.Level;
+import org.galatea.starter.MvcConfig;
+import org.galatea.starter.domain.BarInterval;
 import org.galatea.starter.domain.IexHistoricalPrices;
 import org.galatea.starter.domain.IexLastTradedPrice;
 import org.galatea.starter.domain.IexSymbol;
+import org.galatea.starter.service.HistoricalPricesAggregator;
+import org.galatea.starter.service.HistoricalPricesStreamer;
+import org.galatea.starter.service.IexBatchService;
 import org.galatea.starter.service.IexService;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -19,6 +32,7 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExceptionHandler;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @Slf4j
 @Log(enterLevel = Level.INFO, exitLevel = Level.INFO)
@@ -30,6 +44,21 @@ public class IexRestController extends ResponseEntityExceptionHandler {
   @NonNull
   private IexService iexService;
 
+  @NonNull
+  private IexBatchService iexBatchService;
+
+  @NonNull
+  private HistoricalPricesStreamer historicalPricesStreamer;
+
+  @NonNull
+  private HistoricalPricesAggregator historicalPricesAggregator;
+
+  @NonNull
+  private ObjectMapper objectMapper;
+
+  // Rows written between two flushes of a streamed response
+  private static final int STREAM_FLUSH_ROWS = 500;
+
   /**
    * Exposes an endpoint to get all of the symbols available on IEX.
    *
@@ -41,19 +70,48 @@ public class IexRestController extends ResponseEntityExceptionHandler {
   }
 
   /**
-   * Get the last traded price for each of the symbols passed in.
+   * Exposes an endpoint to search the symbols available on IEX by prefix of the symbol or of any
+   * word of its name.
+   *
+   * @param query the prefix to search for, in any case.
+   * @param limit the most symbols to return (Optional, defaults to 20).
+   * @return a list of matching IexStockSymbols, best match first.
+   */
+  @GetMapping(value = "${mvc.iex.searchSymbolsPath}", produces = {
+      MediaType.APPLICATION_JSON_VALUE})
+  public ResponseEntity searchStockSymbols(
+      @RequestParam(value = "query") final String query,
+      @RequestParam(name = "limit", defaultValue = "20") final int limit) {
+    if (query.trim().isEmpty()) {
+      return new ResponseEntity<>("No Search Query Provided", HttpStatus.BAD_REQUEST);
+    } else {
+      return new ResponseEntity<>(iexService.searchSymbols(query, limit), HttpStatus.OK);
+    }
+  }
+
+  /**
+   * Get the last traded price for each of the symbols passed in. The request thread is released
+   * while IEX is called, and the response is written once the prices are in.
    *
    * @param symbols list of symbols to get last traded price for.
-   * @return a List of IexLastTradedPrice objects for the given symbols.
+   * @param maxAgeMs the oldest cached price accepted, in milliseconds (Optional).
+   *      Note: If not provided, the configured default applies; 0 always asks IEX.
+   * @return a future List of IexLastTradedPrice objects for the given symbols.
    */
   @GetMapping(value = "${mvc.iex.getLastTradedPricePath}", produces = {
       MediaType.APPLICATION_JSON_VALUE})
-  public ResponseEntity getLastTradedPrice(
-      @RequestParam(value = "symbols") final List<String> symbols) {
+  public CompletionStage<ResponseEntity> getLastTradedPrice(
+      @RequestParam(value = "symbols") final List<String> symbols,
+      @RequestParam(name = "maxAgeMs", required = false) final Long maxAgeMs) {
     if (CollectionUtils.isEmpty(symbols)) {
-      return new ResponseEntity<>("No Stock Symbols Provided", HttpStatus.BAD_REQUEST);
+      return CompletableFuture.completedFuture(
+          new ResponseEntity<>("No Stock Symbols Provided", HttpStatus.BAD_REQUEST));
+    } else if (maxAgeMs != null && maxAgeMs < 0) {
+      return CompletableFuture.completedFuture(
+          new ResponseEntity<>("maxAgeMs Cannot Be Negative", HttpStatus.BAD_REQUEST));
     } else {
-      return new ResponseEntity<>(iexService.getLastTradedPriceForSymbols(symbols), HttpStatus.OK);
+      return iexService.getLastTradedPriceForSymbolsAsync(symbols, maxAgeMs)
+          .thenApply(prices -> new ResponseEntity<>(prices, HttpStatus.OK));
     }
   }
 
@@ -81,4 +139,149 @@ public class IexRestController extends ResponseEntityExceptionHandler {
     }
   }
 
+  /**
+   * Get the historical prices of several symbols for the same range or date in one call. Symbols
+   * that cannot be resolved are reported in the errors of the response instead of failing it.
+   *
+   * @param symbols list of symbols to get historical prices for.
+   * @param range the range of time  (ex. "5m", "ytd" ) to get previous data (Optional).
+   * @param date the date from which we would want to get the previous data from (Optional).
+   *      Note: If neither optional parameter is used, the system will default to range = 1m.
+   * @return an IexBatchHistoricalPrices object with the prices or error of each symbol.
+   */
+  @GetMapping(value = "${mvc.iex.getBatchHistoricalPricesPath}", produces = {
+      MediaType.APPLICATION_JSON_VALUE})
+  public ResponseEntity getBatchHistoricalPrices(
+      @RequestParam(value = "symbols") final List<String> symbols,
+      @RequestParam(name = "range", required = false) final String range,
+      @RequestParam(name = "date", required = false) final String date) {
+    if (CollectionUtils.isEmpty(symbols)) {
+      return new ResponseEntity<>("No Stock Symbols Provided", HttpStatus.BAD_REQUEST);
+    }
+    try {
+      return new ResponseEntity<>(
+          iexBatchService.getHistoricalPricesForSymbols(symbols, range, date), HttpStatus.OK);
+    } catch (IllegalArgumentException e) {
+      return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+  }
+
+  /**
+   * Get the historical prices of several symbols over a range aggregated into day, week or month
+   * bars (OHLCV, VWAP, simple and log returns, rolling volatility), instead of every daily price.
+   * Symbols that cannot be resolved are reported in the errors of the response instead of failing
+   * it.
+   *
+   * @param symbols list of symbols to aggregate historical prices for.
+   * @param range the range of time  (ex. "5y", "ytd" ) to aggregate (Optional).
+   *      Note: If not provided, the system will default to range = 1m.
+   * @param interval the period each bar covers: "day", "week" or "month" (Optional, defaults to
+   *      week).
+   * @param volatilityWindow the number of daily log returns the volatility of each bar is
+   *      measured over (Optional, defaults to 20).
+   * @return an IexAggregatedPrices object with the bars or error of each symbol.
+   */
+  @GetMapping(value = "${mvc.iex.getAggregatedHistoricalPricesPath}", produces = {
+      MediaType.APPLICATION_JSON_VALUE})
+  public ResponseEntity getAggregatedHistoricalPrices(
+      @RequestParam(value = "symbols") final List<String> symbols,
+      @RequestParam(name = "range", required = false) final String range,
+      @RequestParam(name = "interval", defaultValue = "week") final String interval,
+      @RequestParam(name = "volatilityWindow", defaultValue = "20") final int volatilityWindow) {
+    if (CollectionUtils.isEmpty(symbols)) {
+      return new ResponseEntity<>("No Stock Symbols Provided", HttpStatus.BAD_REQUEST);
+    }
+    try {
+      return new ResponseEntity<>(historicalPricesAggregator.aggregate(symbols, range,
+          BarInterval.fromString(interval), volatilityWindow), HttpStatus.OK);
+    } catch (IllegalArgumentException e) {
+      return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+  }
+
+  /**
+   * Stream the historical prices of several symbols over a range as newline delimited JSON, one
+   * price per line, written as the prices are read.
+   *
+   * @param symbols list of symbols to get historical prices for.
+   * @param range the range of time  (ex. "5y", "ytd" ) to get previous data (Optional).
+   *      Note: If not provided, the system will default to range = 1m.
+   * @return the streamed prices, sorted by symbol (in the requested order) then date.
+   */
+  @GetMapping(value = "${mvc.iex.streamHistoricalPricesPath}", produces = {
+      MvcConfig.APPLICATION_NDJSON_VALUE})
+  public ResponseEntity<StreamingResponseBody> streamHistoricalPricesAsNdjson(
+      @RequestParam(value = "symbols") final List<String> symbols,
+      @RequestParam(name = "range", required = false) final String range) {
+    return streamHistoricalPrices(symbols, range, MvcConfig.APPLICATION_NDJSON, false);
+  }
+
+  /**
+   * Stream the historical prices of several symbols over a range as a JSON array, written in
+   * chunks as the prices are read.
+   *
+   * @param symbols list of symbols to get historical prices for.
+   * @param range the range of time  (ex. "5y", "ytd" ) to get previous data (Optional).
+   *      Note: If not provided, the system will default to range = 1m.
+   * @return the streamed prices, sorted by symbol (in the requested order) then date.
+   */
+  @GetMapping(value = "${mvc.iex.streamHistoricalPricesPath}", produces = {
+      MediaType.APPLICATION_JSON_VALUE})
+  public ResponseEntity<StreamingResponseBody> streamHistoricalPricesAsJsonArray(
+      @RequestParam(value = "symbols") final List<String> symbols,
+      @RequestParam(name = "range", required = false) final String range) {
+    return streamHistoricalPrices(symbols, range, MediaType.APPLICATION_JSON, true);
+  }
+
+  private ResponseEntity<StreamingResponseBody> streamHistoricalPrices(final List<String> symbols,
+      final String range, final MediaType mediaType, final boolean asArray) {
+    if (CollectionUtils.isEmpty(symbols)) {
+      return ResponseEntity.badRequest().build();
+    }
+    // Missing prices are fetched before the response starts, so Iex errors still set the status
+    List<String> prepared;
+    try {
+      prepared = historicalPricesStreamer.prepare(symbols, range);
+    } catch (IllegalArgumentException e) {
+      log.debug("Rejected request to stream historical prices", e);
+      return ResponseEntity.badRequest().build();
+    }
+
+    StreamingResponseBody body = outputStream ->
+        writeHistoricalPrices(outputStream, prepared, range, asArray);
+    return ResponseEntity.ok().contentType(mediaType).body(body);
+  }
+
+  private void writeHistoricalPrices(final OutputStream outputStream, final List<String> symbols,
+      final String range, final boolean asArray) throws IOException {
+    try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+      // The servlet container owns the stream; only the generator is closed here
+      generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+      generator.setRootValueSeparator(new SerializedString("\n"));
+      if (asArray) {
+        generator.writeStartArray();
+      }
+      int[] rows = {0};
+      try {
+        historicalPricesStreamer.forEachHistoricalPrice(symbols, range, price -> {
+          try {
+            generator.writeObject(price);
+            if (++rows[0] % STREAM_FLUSH_ROWS == 0) {
+              generator.flush();
+            }
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        });
+      } catch (UncheckedIOException e) {
+        throw e.getCause();
+      }
+      if (asArray) {
+        generator.writeEndArray();
+      } else if (rows[0] > 0) {
+        generator.writeRaw('\n');
+      }
+    }
+  }
+
 }
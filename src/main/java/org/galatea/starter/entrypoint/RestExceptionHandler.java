@@ -1,9 +1,11 @@
 package org.galatea.starter.entrypoint;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import java.util.concurrent.RejectedExecutionException;
 import javax.validation.ConstraintViolationException;
 import lombok.extern.slf4j.Slf4j;
 import org.galatea.starter.entrypoint.exception.EntityNotFoundException;
+import org.galatea.starter.service.IexUnavailableException;
 import org.springframework.dao.DataAccessException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -73,6 +75,24 @@ public class RestExceptionHandler {
     return buildResponseEntity(error);
   }
 
+  @ExceptionHandler(IexUnavailableException.class)
+  protected ResponseEntity<Object> handleIexUnavailable(final IexUnavailableException exception) {
+    log.warn("Iex is unavailable", exception);
+
+    String errorMessage = "Market data is temporarily unavailable.  Please try again later.";
+    ApiError error = new ApiError(HttpStatus.SERVICE_UNAVAILABLE, errorMessage);
+    return buildResponseEntity(error);
+  }
+
+  @ExceptionHandler(RejectedExecutionException.class)
+  protected ResponseEntity<Object> handleRejectedExecution(
+      final RejectedExecutionException exception) {
+    log.warn("Too much work is queued", exception);
+    String errorMessage = "The server is too busy to take this request.  Please try again later.";
+    ApiError error = new ApiError(HttpStatus.SERVICE_UNAVAILABLE, errorMessage);
+    return buildResponseEntity(error);
+  }
+
   private ResponseEntity<Object> buildResponseEntity(final ApiError apiError) {
     return new ResponseEntity<>(apiError, apiError.getStatus());
   }
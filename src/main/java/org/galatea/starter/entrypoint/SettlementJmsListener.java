@@ -1,21 +1,37 @@
 package org.galatea.starter.entrypoint;
 
-import java.util.Arrays;
-import java.util.Set;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.TextMessage;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.galatea.starter.domain.TradeAgreement;
 import org.galatea.starter.entrypoint.messagecontracts.TradeAgreementMessage;
 import org.galatea.starter.service.SettlementService;
+import org.galatea.starter.utils.jms.BatchMessageListener;
 import org.galatea.starter.utils.translation.ITranslator;
-import org.springframework.jms.annotation.JmsListener;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jms.annotation.JmsListenerConfigurer;
+import org.springframework.jms.config.JmsListenerEndpointRegistrar;
+import org.springframework.jms.config.SimpleJmsListenerEndpoint;
+import org.springframework.jms.support.converter.MessageConversionException;
 import org.springframework.stereotype.Component;
 
+/**
+ * Spawns missions for the TradeAgreements pulled off the jms queues. The messages of a queue are
+ * handled in batches (see FuseMessageListenerContainer), so the missions of a whole batch are
+ * stored with one saveAll and its messages acknowledged together.
+ */
 @RequiredArgsConstructor
 @Slf4j
 @Component
-public class SettlementJmsListener {
+public class SettlementJmsListener implements JmsListenerConfigurer {
 
   @NonNull
   protected SettlementService settlementService;
@@ -26,31 +42,91 @@ public class SettlementJmsListener {
   @NonNull
   protected ITranslator<TradeAgreementMessage, TradeAgreement> tradeAgreementMessageTranslator;
 
+  @NonNull
+  protected ObjectMapper objectMapper;
+
+  @Value("${jms.agreement-queue-json}")
+  private String jsonQueue;
+
+  @Value("${jms.agreement-queue-proto}")
+  private String protoQueue;
+
+  @Value("${jms.listener-concurrency}")
+  private String concurrency;
+
+  /**
+   * Registers the batch listeners of the agreement queues with the default container factory.
+   */
+  @Override
+  public void configureJmsListeners(final JmsListenerEndpointRegistrar registrar) {
+    registrar.registerEndpoint(endpoint("settleAgreementJson", jsonQueue,
+        this::settleAgreementsJson));
+    registrar.registerEndpoint(endpoint("settleAgreementProto", protoQueue,
+        this::settleAgreementsProto));
+  }
+
   /**
-   * Spawns Missions for any TradeAgreements pulled off the jms queue in JSON format.
+   * Spawns Missions for TradeAgreements pulled off the jms queue in JSON format.
    */
-  @JmsListener(destination = "${jms.agreement-queue-json}",
-      concurrency = "${jms.listener-concurrency}")
-  public void settleAgreementJson(final TradeAgreementMessage agreementMessage) {
-    log.info("Handling agreements {}", agreementMessage);
+  public void settleAgreementsJson(final List<Message> messages) throws JMSException {
+    List<TradeAgreement> agreements = new ArrayList<>(messages.size());
+    for (Message message : messages) {
+      TradeAgreementMessage agreementMessage = readJson(message);
+      log.info("Handling agreement {}", agreementMessage);
+      agreements.add(tradeAgreementMessageTranslator.translate(agreementMessage));
+    }
 
-    TradeAgreement agreement = tradeAgreementMessageTranslator.translate(agreementMessage);
-    Set<Long> missionIds = settlementService.spawnMissions(Arrays.asList(agreement));
+    List<Long> missionIds = settlementService.spawnMissions(agreements);
     log.info("Created missions {}", missionIds);
   }
 
   /**
-   * Spawns missions for any TradeAgreements pulled off the jms queue in protobuf format.
+   * Spawns missions for TradeAgreements pulled off the jms queue in protobuf format.
    */
-  @JmsListener(destination = "${jms.agreement-queue-proto}",
-      concurrency = "${jms.listener-concurrency}")
-  public void settleAgreementProto(final byte[] message) {
-    log.info("Received message. Translating.");
-    TradeAgreement agreement = tradeAgreementProtoTranslator.translate(message);
-
-    log.info("Handling agreement {}", agreement);
+  public void settleAgreementsProto(final List<Message> messages) throws JMSException {
+    log.info("Received {} message(s). Translating.", messages.size());
+    List<TradeAgreement> agreements = new ArrayList<>(messages.size());
+    for (Message message : messages) {
+      TradeAgreement agreement = tradeAgreementProtoTranslator.translate(readBytes(message));
+      log.info("Handling agreement {}", agreement);
+      agreements.add(agreement);
+    }
 
-    Set<Long> missionIds = settlementService.spawnMissions(Arrays.asList(agreement));
+    List<Long> missionIds = settlementService.spawnMissions(agreements);
     log.info("Created missions {}", missionIds);
   }
+
+  private SimpleJmsListenerEndpoint endpoint(final String id, final String destination,
+      final BatchMessageListener listener) {
+    SimpleJmsListenerEndpoint endpoint = new SimpleJmsListenerEndpoint();
+    endpoint.setId(id);
+    endpoint.setDestination(destination);
+    endpoint.setConcurrency(concurrency);
+    endpoint.setMessageListener(listener);
+    return endpoint;
+  }
+
+  private TradeAgreementMessage readJson(final Message message) throws JMSException {
+    if (!(message instanceof TextMessage)) {
+      throw new MessageConversionException("Expected a text message but got " + message);
+    }
+    try {
+      return objectMapper.readValue(((TextMessage) message).getText(),
+          TradeAgreementMessage.class);
+    } catch (IOException e) {
+      throw new MessageConversionException("Could not read the agreement of " + message, e);
+    }
+  }
+
+  private static byte[] readBytes(final Message message) throws JMSException {
+    if (!(message instanceof BytesMessage)) {
+      throw new MessageConversionException("Expected a bytes message but got " + message);
+    }
+    BytesMessage bytesMessage = (BytesMessage) message;
+    // A message of a failed batch is read again on its own, so start from its beginning
+    bytesMessage.reset();
+    byte[] body = new byte[(int) bytesMessage.getBodyLength()];
+    bytesMessage.readBytes(body);
+    return body;
+  }
 }
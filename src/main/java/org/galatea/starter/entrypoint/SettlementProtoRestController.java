@@ -1,8 +1,13 @@
 package org.galatea.starter.entrypoint;
 
+import com.google.common.collect.AbstractIterator;
+import com.google.protobuf.InvalidProtocolBufferException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
-import java.util.Set;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import net.sf.aspect4log.Log;
@@ -11,11 +16,14 @@ import org.galatea.starter.domain.SettlementMission;
 import org.galatea.starter.domain.TradeAgreement;
 import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.SettlementMissionProtoMessage;
 import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.SettlementResponseProtoMessage;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessage;
 import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessages;
 import org.galatea.starter.service.SettlementService;
 import org.galatea.starter.utils.translation.ITranslator;
+import org.galatea.starter.utils.translation.TranslationException;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -24,6 +32,7 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 /**
  * REST controller that mimics the behavior of SettlementRestController but accepts and returns only
@@ -43,6 +52,9 @@ public class SettlementProtoRestController extends BaseSettlementRestController
   @NonNull
   private ITranslator<TradeAgreementProtoMessages, List<TradeAgreement>> tradeAgreementTranslator;
 
+  @NonNull
+  private ITranslator<TradeAgreementProtoMessage, TradeAgreement> tradeAgreementMessageTranslator;
+
   @Value("${mvc.settleMissionPath}")
   private String settleMissionPath;
 
@@ -57,10 +69,13 @@ public class SettlementProtoRestController extends BaseSettlementRestController
   public SettlementProtoRestController(final SettlementService settlementService,
       final ITranslator<TradeAgreementProtoMessages, List<TradeAgreement>> tradeAgreementTranslator,
       final ITranslator<SettlementMission, SettlementMissionProtoMessage>
-          settlementMissionTranslator) {
+          settlementMissionTranslator,
+      final ITranslator<TradeAgreementProtoMessage, TradeAgreement>
+          tradeAgreementMessageTranslator) {
     super(settlementService);
     this.settlementMissionTranslator = settlementMissionTranslator;
     this.tradeAgreementTranslator = tradeAgreementTranslator;
+    this.tradeAgreementMessageTranslator = tradeAgreementMessageTranslator;
   }
 
   /**
@@ -75,12 +90,41 @@ public class SettlementProtoRestController extends BaseSettlementRestController
     processRequestId(requestId);
 
     List<TradeAgreement> agreements = tradeAgreementTranslator.translate(messages);
-    Set<String> missionPaths = settleAgreementInternal(agreements, getMissionPath);
+    List<String> missionPaths = settleAgreementInternal(agreements, getMissionPath);
 
     return SettlementResponseProtoMessage.newBuilder().addAllSpawnedMissionPaths(missionPaths)
         .build();
   }
 
+  /**
+   * Spawn settlement missions from trade agreement messages posted length delimited, one after
+   * the other. The agreements are read from the request as they arrive and stored in batches, and
+   * the paths of the missions of each stored batch are written back as one length delimited
+   * response message, so memory stays flat however large the post is. The client must read the
+   * response while it is still posting. An invalid agreement ends the response early with a
+   * message holding only an error; the missions already written back stay stored.
+   */
+  @PostMapping(value = "${mvc.settleMissionStreamPath}", consumes = APPLICATION_X_PROTOBUF,
+      produces = APPLICATION_X_PROTOBUF)
+  public ResponseEntity<StreamingResponseBody> settleAgreementStream(final InputStream body,
+      @RequestParam(value = "requestId", required = false) final String requestId) {
+    // if an external request id was provided, grab it
+    processRequestId(requestId);
+
+    StreamingResponseBody responseBody = outputStream -> settleAgreementStreamInternal(
+        readDelimited(body), getMissionPath, missionPaths -> {
+          SettlementResponseProtoMessage.newBuilder().addAllSpawnedMissionPaths(missionPaths)
+              .build().writeDelimitedTo(outputStream);
+          outputStream.flush();
+        }, error -> {
+          SettlementResponseProtoMessage.newBuilder().setError(error).build()
+              .writeDelimitedTo(outputStream);
+          outputStream.flush();
+        });
+    return ResponseEntity.ok().contentType(MediaType.parseMediaType(APPLICATION_X_PROTOBUF))
+        .body(responseBody);
+  }
+
   /**
    * Retrieves existing settlement mission messages.
    */
@@ -103,4 +147,24 @@ public class SettlementProtoRestController extends BaseSettlementRestController
     // could add a test for the not-found case in order to meet coverage requirements
     return new ResponseEntity<>(null, HttpStatus.NOT_FOUND);
   }
+
+  /**
+   * Reads the length delimited trade agreement messages of a stream one at a time, as iterated.
+   */
+  private Iterator<TradeAgreement> readDelimited(final InputStream body) {
+    return new AbstractIterator<TradeAgreement>() {
+      @Override
+      protected TradeAgreement computeNext() {
+        try {
+          TradeAgreementProtoMessage message = TradeAgreementProtoMessage.parseDelimitedFrom(body);
+          return message == null
+              ? endOfData() : tradeAgreementMessageTranslator.translate(message);
+        } catch (InvalidProtocolBufferException e) {
+          throw new TranslationException("Could not read the next trade agreement.", e);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+    };
+  }
 }
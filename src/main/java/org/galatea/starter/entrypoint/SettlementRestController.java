@@ -1,27 +1,37 @@
 package org.galatea.starter.entrypoint;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Iterators;
+import java.io.InputStream;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
-import java.util.Set;
 import java.util.stream.Collectors;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import net.sf.aspect4log.Log;
 import net.sf.aspect4log.Log.Level;
 import org.galatea.starter.MvcConfig;
+import org.galatea.starter.domain.SettlementJob;
 import org.galatea.starter.domain.SettlementMission;
 import org.galatea.starter.domain.TradeAgreement;
 import org.galatea.starter.entrypoint.exception.EntityNotFoundException;
+import org.galatea.starter.entrypoint.messagecontracts.SettlementJobMessage;
 import org.galatea.starter.entrypoint.messagecontracts.SettlementMissionList;
 import org.galatea.starter.entrypoint.messagecontracts.SettlementMissionMessage;
 import org.galatea.starter.entrypoint.messagecontracts.SettlementResponseMessage;
+import org.galatea.starter.entrypoint.messagecontracts.TradeAgreementMessage;
 import org.galatea.starter.entrypoint.messagecontracts.TradeAgreementMessages;
+import org.galatea.starter.service.SettlementJobService;
 import org.galatea.starter.service.SettlementService;
 import org.galatea.starter.utils.translation.ITranslator;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -31,6 +41,7 @@ import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 /**
  * REST Controller that generates and listens to http endpoints which allow the caller to create
@@ -51,6 +62,18 @@ public class SettlementRestController extends BaseSettlementRestController {
   @NonNull
   ITranslator<TradeAgreementMessages, List<TradeAgreement>> tradeAgreementTranslator;
 
+  @NonNull
+  ITranslator<TradeAgreementMessage, TradeAgreement> tradeAgreementMessageTranslator;
+
+  @NonNull
+  ObjectMapper objectMapper;
+
+  @NonNull
+  SettlementJobService settlementJobService;
+
+  @Value("${mvc.getSettlementJobPath}")
+  private String getSettlementJobPath;
+
   @Value("${mvc.settleMissionPath}")
   private String settleMissionPath;
 
@@ -66,11 +89,16 @@ public class SettlementRestController extends BaseSettlementRestController {
       final ITranslator<TradeAgreementMessages, List<TradeAgreement>> tradeAgreementTranslator,
       final ITranslator<SettlementMission, SettlementMissionMessage> settlementMissionTranslator,
       final ITranslator<SettlementMissionMessage, SettlementMission>
-          settlementMissionMsgTranslator) {
+          settlementMissionMsgTranslator,
+      final ITranslator<TradeAgreementMessage, TradeAgreement> tradeAgreementMessageTranslator,
+      final ObjectMapper objectMapper, final SettlementJobService settlementJobService) {
     super(settlementService);
     this.tradeAgreementTranslator = tradeAgreementTranslator;
     this.settlementMissionTranslator = settlementMissionTranslator;
     this.settlementMissionMsgTranslator = settlementMissionMsgTranslator;
+    this.tradeAgreementMessageTranslator = tradeAgreementMessageTranslator;
+    this.objectMapper = objectMapper;
+    this.settlementJobService = settlementJobService;
   }
 
   /**
@@ -90,11 +118,93 @@ public class SettlementRestController extends BaseSettlementRestController {
 
     List<TradeAgreement> agreements = tradeAgreementTranslator.translate(messages);
 
-    Set<String> missionPaths = settleAgreementInternal(agreements, getMissionPath);
+    List<String> missionPaths = settleAgreementInternal(agreements, getMissionPath);
 
     return SettlementResponseMessage.builder().spawnedMissions(missionPaths).build();
   }
 
+  /**
+   * Queue a job generating Missions from the provided TradeAgreements, and answer right away with
+   * 202 and the job, whose progress can then be followed at the path in the Location header.
+   * When too many jobs are queued already the post is turned away with 503.
+   */
+  @PostMapping(value = "${mvc.settleMissionJobPath}", consumes = {
+      MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_XML_VALUE}, produces = {
+      MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_XML_VALUE})
+  public ResponseEntity<SettlementJobMessage> submitSettlementJob(
+      @RequestBody final TradeAgreementMessages messages,
+      @RequestParam(value = "requestId", required = false) final String requestId) {
+
+    // if an external request id was provided, grab it
+    processRequestId(requestId);
+
+    List<TradeAgreement> agreements = tradeAgreementTranslator.translate(messages);
+    SettlementJob job = settlementJobService.submit(agreements);
+
+    return ResponseEntity.status(HttpStatus.ACCEPTED)
+        .header("Location", getSettlementJobPath + job.getId())
+        .body(toJobMessage(job));
+  }
+
+  /**
+   * Retrieve the progress of a settlement job: how many of its agreements have had their missions
+   * stored so far, and the paths of those missions.
+   */
+  @GetMapping(value = "${mvc.getSettlementJobPath}" + "{id}", produces = {
+      MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_XML_VALUE})
+  public SettlementJobMessage getSettlementJob(@PathVariable final String id,
+      @RequestParam(value = "requestId", required = false) final String requestId) {
+
+    // if an external request id was provided, grab it
+    processRequestId(requestId);
+
+    return settlementJobService.getJob(id).map(this::toJobMessage)
+        .orElseThrow(() -> new EntityNotFoundException(SettlementJob.class, id));
+  }
+
+  /**
+   * Generate Missions from TradeAgreements posted as newline delimited JSON, one agreement per
+   * line. The agreements are read from the request as they arrive and stored in batches, and the
+   * paths of the missions of each stored batch are written back as one SettlementResponseMessage
+   * line, so memory stays flat however large the post is. The client must read the response while
+   * it is still posting. An invalid agreement ends the response early with an {"error": ...}
+   * line; the missions already written back stay stored.
+   */
+  @PostMapping(value = "${mvc.settleMissionStreamPath}",
+      consumes = MvcConfig.APPLICATION_NDJSON_VALUE, produces = MvcConfig.APPLICATION_NDJSON_VALUE)
+  public ResponseEntity<StreamingResponseBody> settleAgreementStream(final InputStream body,
+      @RequestParam(value = "requestId", required = false) final String requestId) {
+
+    // if an external request id was provided, grab it
+    processRequestId(requestId);
+
+    StreamingResponseBody responseBody = outputStream -> {
+      try (MappingIterator<TradeAgreementMessage> messages =
+          objectMapper.readerFor(TradeAgreementMessage.class).readValues(body);
+          JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+        // The servlet container owns the stream; only the generator is closed here
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        // Each line is ended as soon as it is written, so don't separate the root values as well
+        generator.setRootValueSeparator(null);
+        settleAgreementStreamInternal(
+            Iterators.transform(messages, tradeAgreementMessageTranslator::translate),
+            getMissionPath, missionPaths -> {
+              generator.writeObject(
+                  SettlementResponseMessage.builder().spawnedMissions(missionPaths).build());
+              generator.writeRaw('\n');
+              generator.flush();
+            }, error -> {
+              generator.writeStartObject();
+              generator.writeStringField("error", error);
+              generator.writeEndObject();
+              generator.writeRaw('\n');
+              generator.flush();
+            });
+      }
+    };
+    return ResponseEntity.ok().contentType(MvcConfig.APPLICATION_NDJSON).body(responseBody);
+  }
+
   /**
    * Retrieve a previously generated Mission.
    */
@@ -196,4 +306,11 @@ public class SettlementRestController extends BaseSettlementRestController {
     }
   }
 
+  private SettlementJobMessage toJobMessage(final SettlementJob job) {
+    return SettlementJobMessage.builder().id(job.getId()).status(job.getStatus().name())
+        .agreementCount(job.getAgreementCount()).spawnedCount(job.getMissionIds().size())
+        .spawnedMissions(job.getMissionIds().stream().map(missionId -> getMissionPath + missionId)
+            .collect(Collectors.toList()))
+        .error(job.getError()).build();
+  }
 }
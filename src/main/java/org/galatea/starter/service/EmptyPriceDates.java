@@ -0,0 +1,129 @@
+package org.galatea.starter.service;
+
+import com.google.common.util.concurrent.Striped;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.domain.EmptyPriceDateRepository;
+import org.galatea.starter.domain.IexEmptyPriceDate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Remembers the dates Iex returned no price for, per symbol, so they are not requested again
+ * until ttlMs has passed. The markers are stored, so they outlive restarts; expired ones are
+ * purged on a schedule.
+ */
+@Slf4j
+@Component
+public class EmptyPriceDates {
+
+  private final EmptyPriceDateRepository repository;
+  private final Clock clock;
+  private final long ttlMs;
+
+  // Checking which markers exist and saving the rest is atomic per symbol
+  private final Striped<Lock> markLocks = Striped.lock(64);
+
+  /**
+   * Creates the store of empty dates.
+   *
+   * @param repository the repository the markers are stored in.
+   * @param clock the clock the age of markers is measured with.
+   * @param ttlMs how long a date is known to be empty after Iex returned nothing for it.
+   */
+  public EmptyPriceDates(final EmptyPriceDateRepository repository, final Clock clock,
+      @Value("${iex.empty-dates.ttl-ms}") final long ttlMs) {
+    this.repository = repository;
+    this.clock = clock;
+    this.ttlMs = ttlMs;
+  }
+
+  /**
+   * Get the dates of a symbol, within a window, that Iex returned no price for recently enough.
+   *
+   * @param symbol Stock symbol to get the empty dates of.
+   * @param startDate the first date of the window.
+   * @param endDate the last date of the window, included.
+   * @return the dates known to have no price.
+   */
+  public Set<LocalDate> getKnownEmpty(final String symbol, final LocalDate startDate,
+      final LocalDate endDate) {
+    Instant oldest = clock.instant().minusMillis(ttlMs);
+    return repository.findBySymbolAndDateBetween(symbol, startDate, endDate).stream()
+        .filter(marker -> !marker.getCheckedAt().isBefore(oldest))
+        .map(IexEmptyPriceDate::getDate)
+        .collect(Collectors.toSet());
+  }
+
+  /**
+   * Check whether Iex returned no price for a date of a symbol recently enough.
+   *
+   * @param symbol Stock symbol to check.
+   * @param date the date to check.
+   * @return true if the date is known to have no price.
+   */
+  public boolean isKnownEmpty(final String symbol, final LocalDate date) {
+    return !getKnownEmpty(symbol, date, date).isEmpty();
+  }
+
+  /**
+   * Remember that Iex returned no price for dates of a symbol, from now on.
+   *
+   * @param symbol Stock symbol Iex returned no price for.
+   * @param dates the dates Iex returned no price for.
+   */
+  public void markEmpty(final String symbol, final Collection<LocalDate> dates) {
+    if (dates.isEmpty()) {
+      return;
+    }
+    NavigableSet<LocalDate> sorted = new TreeSet<>(dates);
+    Instant now = clock.instant();
+    log.debug("Iex returned no price for {} date(s) of {}", sorted.size(), symbol);
+
+    Lock lock = markLocks.get(symbol);
+    lock.lock();
+    try {
+      // Expired markers are refreshed rather than inserted again, which the index would refuse
+      Map<LocalDate, IexEmptyPriceDate> existing = repository
+          .findBySymbolAndDateBetween(symbol, sorted.first(), sorted.last()).stream()
+          .collect(Collectors.toMap(IexEmptyPriceDate::getDate, Function.identity()));
+      List<IexEmptyPriceDate> markers = sorted.stream()
+          .map(date -> {
+            IexEmptyPriceDate marker = existing.get(date);
+            if (marker == null) {
+              return new IexEmptyPriceDate(symbol, date, now);
+            }
+            marker.setCheckedAt(now);
+            return marker;
+          })
+          .collect(Collectors.toList());
+      repository.saveAll(markers);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Delete the markers that have expired. Runs on a schedule.
+   */
+  @Scheduled(initialDelayString = "${iex.empty-dates.purge-ms}",
+      fixedDelayString = "${iex.empty-dates.purge-ms}")
+  public void purgeExpired() {
+    int purged = repository.deleteByCheckedAtBefore(clock.instant().minusMillis(ttlMs));
+    if (purged > 0) {
+      log.info("Purged {} expired empty price dates", purged);
+    }
+  }
+}
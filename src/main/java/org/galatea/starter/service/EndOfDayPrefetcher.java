@@ -0,0 +1,159 @@
+package org.galatea.starter.service;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.domain.IexHistoricalPrices;
+import org.galatea.starter.domain.IexSymbolChart;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Fetches the latest daily prices of a watchlist of symbols from Iex after the market closes, and
+ * stores them, so that the first request of the next day for a watched symbol is answered from
+ * the database or the price series cache instead of waiting on Iex.
+ *
+ * <p>Symbols are fetched in batch calls of at most symbolsPerCall symbols, run in parallel on the
+ * bounded batch executor. Each call asks for a short range rather than today only, so a missed run
+ * is caught up by the next one; dates already stored are skipped when storing. Every symbol of a
+ * call is bulk inserted as soon as the call answers, and a failed call only skips its symbols.
+ */
+@Slf4j
+@Component
+public class EndOfDayPrefetcher {
+
+  // Iex answers at most 100 symbols per batch request
+  private static final int MAX_SYMBOLS_PER_CALL = 100;
+
+  private final IexClient iexClient;
+  private final HistoricalPricesWriter historicalPricesWriter;
+  private final PriceSeriesCache priceSeriesCache;
+  private final TradingCalendar tradingCalendar;
+  private final Clock clock;
+  private final TaskExecutor executor;
+  private final List<String> watchlist;
+  private final int symbolsPerCall;
+  private final String range;
+
+  /**
+   * Creates a prefetcher.
+   *
+   * @param iexClient the client the prices are fetched with.
+   * @param historicalPricesWriter the writer the prices are stored with.
+   * @param priceSeriesCache the cache whose series of watched symbols are kept up to date.
+   * @param tradingCalendar the calendar telling whether the market traded today.
+   * @param clock the clock telling what today is.
+   * @param executor the bounded executor the calls are made on.
+   * @param watchlist the symbols to prefetch; none by default.
+   * @param symbolsPerCall the most symbols fetched in one call; capped at 100.
+   * @param range the range of time (ex. "5d") fetched for each symbol.
+   */
+  public EndOfDayPrefetcher(final IexClient iexClient,
+      final HistoricalPricesWriter historicalPricesWriter, final PriceSeriesCache priceSeriesCache,
+      final TradingCalendar tradingCalendar, final Clock clock,
+      @Qualifier("iexBatchExecutor") final TaskExecutor executor,
+      @Value("${iex.prefetch.symbols}") final String[] watchlist,
+      @Value("${iex.prefetch.symbols-per-call}") final int symbolsPerCall,
+      @Value("${iex.prefetch.range}") final String range) {
+    this.iexClient = iexClient;
+    this.historicalPricesWriter = historicalPricesWriter;
+    this.priceSeriesCache = priceSeriesCache;
+    this.tradingCalendar = tradingCalendar;
+    this.clock = clock;
+    this.executor = executor;
+    Set<String> distinctSymbols = new LinkedHashSet<>();
+    for (String symbol : watchlist) {
+      if (!symbol.trim().isEmpty()) {
+        distinctSymbols.add(symbol.trim().toUpperCase(Locale.ROOT));
+      }
+    }
+    this.watchlist = new ArrayList<>(distinctSymbols);
+    this.symbolsPerCall = Math.max(1, Math.min(symbolsPerCall, MAX_SYMBOLS_PER_CALL));
+    this.range = range;
+  }
+
+  /**
+   * Prefetch the watchlist, if the market traded today. Runs on a schedule, after the close.
+   */
+  @Scheduled(cron = "${iex.prefetch.cron}", zone = "${iex.prefetch.zone}")
+  public void prefetchAfterClose() {
+    if (watchlist.isEmpty()) {
+      return;
+    } else if (!tradingCalendar.isTradingDay(LocalDate.now(clock))) {
+      log.debug("The market did not trade today, not prefetching");
+      return;
+    }
+    prefetch();
+  }
+
+  /**
+   * Fetch the latest daily prices of every watched symbol from Iex, and store them.
+   *
+   * @return the number of prices Iex returned for the watched symbols, stored or already stored.
+   */
+  public int prefetch() {
+    log.info("Prefetching the latest prices of {} symbol(s)", watchlist.size());
+    List<CompletableFuture<Integer>> calls = new ArrayList<>();
+    for (int start = 0; start < watchlist.size(); start += symbolsPerCall) {
+      List<String> symbols =
+          watchlist.subList(start, Math.min(start + symbolsPerCall, watchlist.size()));
+      try {
+        calls.add(CompletableFuture.supplyAsync(() -> prefetch(symbols), executor));
+      } catch (RejectedExecutionException e) {
+        // The executor is busy with user requests, which come first
+        log.warn("Could not prefetch {} symbol(s), the batch executor is full", symbols.size());
+      }
+    }
+
+    int prices = 0;
+    for (CompletableFuture<Integer> call : calls) {
+      try {
+        prices += call.join();
+      } catch (CompletionException e) {
+        // The symbols of that call are fetched on the user request path instead
+        log.warn("Could not prefetch a batch of symbols", e.getCause());
+      }
+    }
+    log.info("Prefetched {} price(s) of {} symbol(s)", prices, watchlist.size());
+    return prices;
+  }
+
+  private int prefetch(final List<String> symbols) {
+    Map<String, IexSymbolChart> charts = iexClient.getHistoricalPricesForSymbolsByRange(
+        String.join(",", symbols), range);
+    LocalDate today = LocalDate.now(clock);
+
+    int prices = 0;
+    for (String symbol : symbols) {
+      IexSymbolChart chart = charts.get(symbol);
+      if (chart == null || chart.getChart() == null) {
+        log.debug("Iex returned no prices for {}", symbol);
+        continue;
+      }
+      List<IexHistoricalPrices> latest = chart.getChart().stream()
+          .filter(price -> price.getDate() != null
+              && !LocalDate.parse(price.getDate()).isAfter(today))
+          .collect(Collectors.toList());
+      // Batch charts may leave the symbol out of each price
+      latest.forEach(price -> price.setSymbol(symbol));
+      historicalPricesWriter.write(symbol, latest);
+      historicalPricesWriter.flush(symbol);
+      priceSeriesCache.merge(symbol, latest);
+      prices += latest.size();
+    }
+    return prices;
+  }
+}
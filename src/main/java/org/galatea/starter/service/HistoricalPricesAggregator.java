@@ -0,0 +1,275 @@
+package org.galatea.starter.service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.domain.BarInterval;
+import org.galatea.starter.domain.IexAggregatedPrices;
+import org.galatea.starter.domain.IexHistoricalPrices;
+import org.galatea.starter.domain.PriceBar;
+import org.galatea.starter.domain.ScaledPrices;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Service;
+
+/**
+ * Aggregates the stored daily prices of symbols into day, week or month bars server side, so that
+ * clients get a few bars instead of every daily row. Each symbol's prices are read once, oldest
+ * first, from the same cache or repository stream as streamed responses, and every figure of a
+ * bar (OHLCV, VWAP, returns and rolling volatility) is computed in that single pass without
+ * holding the rows. Several symbols are aggregated in parallel on the batch executor.
+ */
+@Slf4j
+@Service
+public class HistoricalPricesAggregator {
+
+  private final HistoricalPricesStreamer historicalPricesStreamer;
+  private final TaskExecutor executor;
+  private final int maxSymbols;
+
+  /**
+   * Creates an aggregator.
+   *
+   * @param historicalPricesStreamer the streamer the daily prices are read with.
+   * @param executor the bounded executor the symbols are aggregated on.
+   * @param maxSymbols the most symbols accepted in one request.
+   */
+  public HistoricalPricesAggregator(final HistoricalPricesStreamer historicalPricesStreamer,
+      @Qualifier("iexBatchExecutor") final TaskExecutor executor,
+      @Value("${iex.batch.max-symbols}") final int maxSymbols) {
+    this.historicalPricesStreamer = historicalPricesStreamer;
+    this.executor = executor;
+    this.maxSymbols = maxSymbols;
+  }
+
+  /**
+   * Aggregate the historical prices of each symbol over a range into bars. Missing prices are
+   * fetched and stored first, the same way as for a single symbol request.
+   *
+   * @param symbols the symbols to aggregate prices for; duplicates are aggregated once.
+   * @param range the range of time (ex. "5y", "ytd") to aggregate; defaults to "1m".
+   * @param interval the period each bar covers.
+   * @param volatilityWindow the number of daily log returns the volatility is measured over.
+   * @return the bars of every symbol that was resolved, and the error of every one that wasn't.
+   */
+  public IexAggregatedPrices aggregate(final List<String> symbols, final String range,
+      final BarInterval interval, final int volatilityWindow) {
+    if (volatilityWindow < 2) {
+      throw new IllegalArgumentException("The volatility window must be at least 2 days.");
+    }
+    Set<String> distinctSymbols = new LinkedHashSet<>();
+    for (String symbol : symbols) {
+      distinctSymbols.add(symbol.trim().toUpperCase());
+    }
+    if (distinctSymbols.size() > maxSymbols) {
+      throw new IllegalArgumentException(
+          "At most " + maxSymbols + " symbols can be requested at once.");
+    }
+
+    Map<String, CompletableFuture<List<PriceBar>>> futures = new LinkedHashMap<>();
+    for (String symbol : distinctSymbols) {
+      futures.put(symbol, distinctSymbols.size() == 1
+          // Not worth a hand-off to another thread
+          ? supplyNow(() -> aggregate(symbol, range, interval, volatilityWindow))
+          : submit(symbol, range, interval, volatilityWindow));
+    }
+
+    Map<String, List<PriceBar>> bars = new LinkedHashMap<>();
+    Map<String, String> errors = new LinkedHashMap<>();
+    futures.forEach((symbol, future) -> {
+      try {
+        bars.put(symbol, future.join());
+      } catch (CompletionException e) {
+        Throwable cause = e.getCause() == null ? e : e.getCause();
+        log.warn("Could not aggregate historical prices for {}", symbol, cause);
+        errors.put(symbol, describe(cause));
+      }
+    });
+    return new IexAggregatedPrices(interval, volatilityWindow, bars, errors);
+  }
+
+  private List<PriceBar> aggregate(final String symbol, final String range,
+      final BarInterval interval, final int volatilityWindow) {
+    List<String> prepared =
+        historicalPricesStreamer.prepare(Collections.singletonList(symbol), range);
+    BarBuilder builder = new BarBuilder(interval, volatilityWindow);
+    historicalPricesStreamer.forEachHistoricalPrice(prepared, range, builder::add);
+    return builder.finish();
+  }
+
+  private CompletableFuture<List<PriceBar>> submit(final String symbol, final String range,
+      final BarInterval interval, final int volatilityWindow) {
+    try {
+      return CompletableFuture.supplyAsync(
+          () -> aggregate(symbol, range, interval, volatilityWindow), executor);
+    } catch (RejectedExecutionException e) {
+      // The executor's queue is full, so only this symbol is failed rather than the request
+      CompletableFuture<List<PriceBar>> rejected = new CompletableFuture<>();
+      rejected.completeExceptionally(e);
+      return rejected;
+    }
+  }
+
+  private static CompletableFuture<List<PriceBar>> supplyNow(
+      final Supplier<List<PriceBar>> supplier) {
+    CompletableFuture<List<PriceBar>> future = new CompletableFuture<>();
+    try {
+      future.complete(supplier.get());
+    } catch (RuntimeException e) {
+      future.completeExceptionally(e);
+    }
+    return future;
+  }
+
+  private static String describe(final Throwable cause) {
+    if (cause instanceof RejectedExecutionException) {
+      return "Too many symbols are being resolved, try again later.";
+    } else if (cause instanceof IllegalArgumentException) {
+      return cause.getMessage();
+    }
+    return "Could not aggregate historical prices: " + cause.getClass().getSimpleName();
+  }
+
+  /**
+   * Builds the bars of one symbol from its daily prices, handed to it oldest first. Rows without
+   * a close price are skipped. Only the current bar and the last volatilityWindow daily log
+   * returns are held.
+   */
+  private static final class BarBuilder {
+
+    private final BarInterval interval;
+    private final List<PriceBar> bars = new ArrayList<>();
+
+    // The daily log returns of the volatility window, as a ring, with their running sums
+    private final double[] dailyReturns;
+    private int dailyReturnCount;
+    private double dailyReturnSum;
+    private double dailyReturnSquareSum;
+
+    private long previousDayClose = ScaledPrices.MISSING;
+    private long previousBarClose = ScaledPrices.MISSING;
+
+    // The bar being built
+    private LocalDate periodStart;
+    private String start;
+    private String end;
+    private long open;
+    private long high;
+    private long low;
+    private long close;
+    private long volume;
+    private double typicalPriceVolume;
+
+    BarBuilder(final BarInterval interval, final int volatilityWindow) {
+      this.interval = interval;
+      this.dailyReturns = new double[volatilityWindow];
+    }
+
+    void add(final IexHistoricalPrices price) {
+      long dayClose = price.getScaledClose();
+      if (dayClose == ScaledPrices.MISSING) {
+        return;
+      }
+      long dayHigh = orElse(price.getScaledHigh(), dayClose);
+      long dayLow = orElse(price.getScaledLow(), dayClose);
+      LocalDate date = LocalDate.parse(price.getDate());
+
+      LocalDate dayPeriodStart = interval.periodStart(date);
+      if (!dayPeriodStart.equals(periodStart)) {
+        if (periodStart != null) {
+          finishBar();
+        }
+        periodStart = dayPeriodStart;
+        start = price.getDate();
+        open = orElse(price.getScaledOpen(), dayClose);
+        high = dayHigh;
+        low = dayLow;
+        volume = 0;
+        typicalPriceVolume = 0;
+      }
+      end = price.getDate();
+      high = Math.max(high, dayHigh);
+      low = Math.min(low, dayLow);
+      close = dayClose;
+      volume += price.getVolume();
+      typicalPriceVolume += (dayHigh + dayLow + dayClose) / 3.0 * price.getVolume();
+
+      if (previousDayClose != ScaledPrices.MISSING && previousDayClose > 0 && dayClose > 0) {
+        addDailyReturn(Math.log((double) dayClose / previousDayClose));
+      }
+      previousDayClose = dayClose;
+    }
+
+    List<PriceBar> finish() {
+      if (periodStart != null) {
+        finishBar();
+        periodStart = null;
+      }
+      return bars;
+    }
+
+    private void finishBar() {
+      Double simpleReturn = null;
+      Double logReturn = null;
+      if (previousBarClose != ScaledPrices.MISSING && previousBarClose > 0) {
+        double ratio = (double) close / previousBarClose;
+        simpleReturn = ratio - 1;
+        logReturn = close > 0 ? Math.log(ratio) : null;
+      }
+      bars.add(PriceBar.builder()
+          .start(start)
+          .end(end)
+          .scaledOpen(open)
+          .scaledHigh(high)
+          .scaledLow(low)
+          .scaledClose(close)
+          .volume(volume)
+          .scaledVwap(volume > 0 ? Math.round(typicalPriceVolume / volume) : ScaledPrices.MISSING)
+          .simpleReturn(simpleReturn)
+          .logReturn(logReturn)
+          .volatility(volatility())
+          .build());
+      previousBarClose = close;
+    }
+
+    private void addDailyReturn(final double dailyReturn) {
+      int slot = dailyReturnCount % dailyReturns.length;
+      if (dailyReturnCount >= dailyReturns.length) {
+        double dropped = dailyReturns[slot];
+        dailyReturnSum -= dropped;
+        dailyReturnSquareSum -= dropped * dropped;
+      }
+      dailyReturns[slot] = dailyReturn;
+      dailyReturnSum += dailyReturn;
+      dailyReturnSquareSum += dailyReturn * dailyReturn;
+      dailyReturnCount++;
+    }
+
+    private Double volatility() {
+      int window = dailyReturns.length;
+      if (dailyReturnCount < window) {
+        return null;
+      }
+      double mean = dailyReturnSum / window;
+      // Guard against a slightly negative variance left by the running sums
+      double variance = Math.max(
+          (dailyReturnSquareSum - window * mean * mean) / (window - 1), 0);
+      return Math.sqrt(variance);
+    }
+
+    private static long orElse(final long price, final long fallback) {
+      return price == ScaledPrices.MISSING ? fallback : price;
+    }
+  }
+}
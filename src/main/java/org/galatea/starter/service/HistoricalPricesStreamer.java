@@ -0,0 +1,116 @@
+package org.galatea.starter.service;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.domain.IexHistoricalPrices;
+import org.galatea.starter.domain.PriceSeries;
+import org.galatea.starter.domain.PriceStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Hands out the historical prices of many symbols over long ranges one row at a time, so that
+ * they can be written to a response as they are read instead of being collected first. Rows of
+ * hot symbols come from the price series cache; the others are streamed from the price store one
+ * row at a time, so memory stays flat however many rows there are.
+ */
+@Slf4j
+@Service
+public class HistoricalPricesStreamer {
+
+  private static final DateTimeFormatter inFormatter = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+  private final IexService iexService;
+  private final PriceStore priceStore;
+  private final PriceSeriesCache priceSeriesCache;
+  private final HistoricalPricesWriter historicalPricesWriter;
+  private final int maxSymbols;
+
+  /**
+   * Creates a streamer.
+   *
+   * @param iexService the service used to store missing prices before streaming.
+   * @param priceStore the store prices are streamed from.
+   * @param priceSeriesCache the cache hot symbols are streamed from.
+   * @param historicalPricesWriter the writer whose pending prices are stored before streaming.
+   * @param maxSymbols the most symbols accepted in one request.
+   */
+  public HistoricalPricesStreamer(final IexService iexService,
+      final PriceStore priceStore, final PriceSeriesCache priceSeriesCache,
+      final HistoricalPricesWriter historicalPricesWriter,
+      @Value("${iex.batch.max-symbols}") final int maxSymbols) {
+    this.iexService = iexService;
+    this.priceStore = priceStore;
+    this.priceSeriesCache = priceSeriesCache;
+    this.historicalPricesWriter = historicalPricesWriter;
+    this.maxSymbols = maxSymbols;
+  }
+
+  /**
+   * Store the missing prices of each symbol over the range, so that they can then be streamed.
+   * This is meant to be called before the response is started, so any failure is still reported
+   * as an error status.
+   *
+   * @param symbols the symbols to stream prices for; duplicates are streamed once.
+   * @param range the range of time (ex. "5y", "ytd") to stream prices for; defaults to "1m".
+   * @return the distinct, upper cased symbols to stream, in the order they were requested.
+   */
+  public List<String> prepare(final List<String> symbols, final String range) {
+    Set<String> distinctSymbols = new LinkedHashSet<>();
+    for (String symbol : symbols) {
+      distinctSymbols.add(symbol.trim().toUpperCase());
+    }
+    if (distinctSymbols.size() > maxSymbols) {
+      throw new IllegalArgumentException(
+          "At most " + maxSymbols + " symbols can be requested at once.");
+    }
+    for (String symbol : distinctSymbols) {
+      iexService.backfillHistoricalPrices(symbol, range);
+      // Uncached symbols are streamed from the price store, so nothing may be left pending
+      historicalPricesWriter.flush(symbol);
+    }
+    return new ArrayList<>(distinctSymbols);
+  }
+
+  /**
+   * Hand out the stored prices of each symbol over the range, one at a time and sorted by symbol
+   * (in the given order) then date.
+   *
+   * @param symbols the symbols to stream prices for, as returned by prepare.
+   * @param range the range of time (ex. "5y", "ytd") to stream prices for; defaults to "1m".
+   * @param consumer receives each price; it should write it out rather than keep it.
+   */
+  public void forEachHistoricalPrice(final List<String> symbols, final String range,
+      final Consumer<IexHistoricalPrices> consumer) {
+    List<String> dates = iexService.rangeToDateList(range == null ? "1m" : range);
+    if (dates.isEmpty()) {
+      return;
+    }
+    LocalDate startDate = LocalDate.parse(dates.get(0), inFormatter);
+    LocalDate endDate = LocalDate.parse(dates.get(dates.size() - 1), inFormatter);
+
+    for (String symbol : symbols) {
+      Optional<PriceSeries> series = priceSeriesCache.get(symbol);
+      if (series.isPresent()) {
+        forEachCachedPrice(series.get(), startDate, endDate, consumer);
+      } else {
+        priceStore.forEachBySymbolAndDateBetween(symbol, startDate, endDate, consumer);
+      }
+    }
+  }
+
+  private static void forEachCachedPrice(final PriceSeries series, final LocalDate startDate,
+      final LocalDate endDate, final Consumer<IexHistoricalPrices> consumer) {
+    for (int i = series.lowerBound(startDate);
+        i < series.size() && !series.getDate(i).isAfter(endDate); i++) {
+      consumer.accept(series.toPrices(i));
+    }
+  }
+}
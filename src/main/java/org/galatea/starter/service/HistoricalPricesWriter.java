@@ -0,0 +1,333 @@
+package org.galatea.starter.service;
+
+import com.google.common.util.concurrent.Striped;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.domain.IexHistoricalPrices;
+import org.galatea.starter.domain.IexHistoricalPricesDB;
+import org.galatea.starter.domain.PriceStore;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Stores the prices fetched from Iex behind the requests that fetched them. Prices handed to write
+ * are held as pending and stored in the background by one writer thread, in saveAll calls of at
+ * most batchRows rows (which Hibernate sends as JDBC batches of hibernate.jdbc.batch_size), so the
+ * request can answer as soon as Iex has.
+ *
+ * <p>Until they are stored, pending prices are served through getPending, so a request never goes
+ * back to Iex for a date that is only waiting to be written. Storing is idempotent: a date already
+ * stored for the symbol is skipped, so a price written twice is stored once. Once maxPendingRows
+ * rows are pending, writes are stored by the calling thread instead, and whatever is still pending
+ * at shutdown is stored before the writer stops.
+ *
+ * <p>Prices the writer fails to store are retried every retryDelayMs, up to maxAttempts times in a
+ * row; then the pending prices of the symbol are dropped, to be fetched from Iex again when next
+ * requested, rather than held and retried forever.
+ */
+@Slf4j
+@Component
+public class HistoricalPricesWriter implements DisposableBean {
+
+  private final PriceStore priceStore;
+  private final int maxPendingRows;
+  private final int batchRows;
+  private final long retryDelayMs;
+  private final int maxAttempts;
+
+  // The unique (symbol, date) index is checked then written under the lock of the symbol, which
+  // only orders the writes of this JVM
+  private final Striped<Lock> storeLocks = Striped.lock(64);
+  private final ConcurrentMap<String, ConcurrentNavigableMap<LocalDate, IexHistoricalPrices>>
+      pendingBySymbol = new ConcurrentHashMap<>();
+  private final AtomicInteger pendingRows = new AtomicInteger();
+  private final BlockingQueue<String> queue = new LinkedBlockingQueue<>();
+  private final Set<String> queuedSymbols = ConcurrentHashMap.newKeySet();
+  // Only touched by the writer thread
+  private final Map<String, Integer> failedAttempts = new HashMap<>();
+  private final ExecutorService writer;
+  private volatile boolean running = true;
+
+  /**
+   * Creates a writer, and starts its thread.
+   *
+   * @param priceStore the store prices are stored in.
+   * @param meterRegistry the registry the pending row gauge is registered with.
+   * @param maxPendingRows the most rows waiting to be stored before writes are made in place.
+   * @param batchRows the most rows stored in one saveAll call.
+   * @param retryDelayMs how long the writer waits before retrying rows it failed to store.
+   * @param maxAttempts how many times in a row the writer tries to store the pending prices of a
+   *     symbol before dropping them.
+   */
+  public HistoricalPricesWriter(final PriceStore priceStore,
+      final MeterRegistry meterRegistry,
+      @Value("${iex.write-behind.max-pending-rows}") final int maxPendingRows,
+      @Value("${iex.write-behind.batch-rows}") final int batchRows,
+      @Value("${iex.write-behind.retry-delay-ms}") final long retryDelayMs,
+      @Value("${iex.write-behind.max-attempts}") final int maxAttempts) {
+    this.priceStore = priceStore;
+    this.maxPendingRows = maxPendingRows;
+    this.batchRows = batchRows;
+    this.retryDelayMs = retryDelayMs;
+    this.maxAttempts = maxAttempts;
+    meterRegistry.gauge("iex.prices.write-behind.pending", pendingRows);
+    this.writer = Executors.newSingleThreadExecutor(
+        new CustomizableThreadFactory("iex-price-writer-"));
+    this.writer.execute(this::run);
+  }
+
+  /**
+   * Queue prices of a symbol to be stored. A date already pending for the symbol is queued once.
+   *
+   * @param symbol Stock symbol the prices are for.
+   * @param prices prices returned by Iex; those without a date are ignored.
+   */
+  public void write(final String symbol, final Collection<IexHistoricalPrices> prices) {
+    if (prices.isEmpty()) {
+      return;
+    } else if (!running || pendingRows.get() + prices.size() > maxPendingRows) {
+      // Too far behind (or shutting down): slow the callers down rather than grow without bound
+      log.debug("Storing {} prices for {} in place", prices.size(), symbol);
+      store(symbol, prices);
+      return;
+    }
+
+    pendingBySymbol.compute(symbol, (key, pending) -> {
+      ConcurrentNavigableMap<LocalDate, IexHistoricalPrices> dates =
+          pending == null ? new ConcurrentSkipListMap<>() : pending;
+      for (IexHistoricalPrices price : prices) {
+        if (price.getDate() != null
+            && dates.putIfAbsent(LocalDate.parse(price.getDate()), price) == null) {
+          pendingRows.incrementAndGet();
+        }
+      }
+      return dates.isEmpty() ? null : dates;
+    });
+    enqueue(symbol);
+  }
+
+  /**
+   * Get the prices of a symbol that are waiting to be stored, over a range of dates.
+   *
+   * @param symbol Stock symbol to get pending prices for.
+   * @param startDate the first date of the range.
+   * @param endDate the last date of the range, included.
+   * @return the pending prices, sorted by date.
+   */
+  public List<IexHistoricalPrices> getPending(final String symbol, final LocalDate startDate,
+      final LocalDate endDate) {
+    NavigableMap<LocalDate, IexHistoricalPrices> pending = pendingBySymbol.get(symbol);
+    if (pending == null) {
+      return Collections.emptyList();
+    }
+    return new ArrayList<>(pending.subMap(startDate, true, endDate, true).values());
+  }
+
+  /**
+   * Check whether any price of a symbol is waiting to be stored.
+   *
+   * @param symbol Stock symbol to check.
+   * @return true if the symbol has pending prices.
+   */
+  public boolean hasPending(final String symbol) {
+    return pendingBySymbol.containsKey(symbol);
+  }
+
+  /**
+   * Store the pending prices of a symbol now, on the calling thread. Used before reading the
+   * prices of the symbol straight from the price store.
+   *
+   * @param symbol Stock symbol to store the pending prices of.
+   */
+  public void flush(final String symbol) {
+    storePending(symbol);
+  }
+
+  /**
+   * Get the number of rows waiting to be stored.
+   *
+   * @return the number of pending rows.
+   */
+  public int pendingRowCount() {
+    return pendingRows.get();
+  }
+
+  @Override
+  public void destroy() throws InterruptedException {
+    running = false;
+    // Wake the writer up so it sees it should stop, then store what it left behind
+    queue.offer("");
+    writer.shutdown();
+    writer.awaitTermination(30, TimeUnit.SECONDS);
+    for (String symbol : new ArrayList<>(pendingBySymbol.keySet())) {
+      storePending(symbol);
+    }
+  }
+
+  private void run() {
+    while (running) {
+      String symbol;
+      try {
+        symbol = queue.take();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+      if (symbol.isEmpty()) {
+        continue;
+      }
+      try {
+        storePending(symbol);
+        failedAttempts.remove(symbol);
+      } catch (RuntimeException e) {
+        int attempts = failedAttempts.merge(symbol, 1, Integer::sum);
+        if (attempts < maxAttempts) {
+          // Keep the rows pending, and try again later
+          log.warn("Could not store the pending prices of {} (attempt {} of {}), retrying in {} ms",
+              symbol, attempts, maxAttempts, retryDelayMs, e);
+          enqueue(symbol);
+          sleep(retryDelayMs);
+        } else {
+          failedAttempts.remove(symbol);
+          log.error("Could not store the pending prices of {} after {} attempts, dropped {} rows",
+              symbol, attempts, dropPending(symbol), e);
+        }
+      }
+    }
+  }
+
+  private void enqueue(final String symbol) {
+    if (queuedSymbols.add(symbol)) {
+      queue.offer(symbol);
+    }
+  }
+
+  private void storePending(final String symbol) {
+    // Dequeued first, so prices written from now on queue the symbol again
+    queuedSymbols.remove(symbol);
+    NavigableMap<LocalDate, IexHistoricalPrices> pending = pendingBySymbol.get(symbol);
+    if (pending == null) {
+      return;
+    }
+    List<IexHistoricalPrices> rows = new ArrayList<>(pending.values());
+    for (int start = 0; start < rows.size(); start += batchRows) {
+      List<IexHistoricalPrices> batch =
+          rows.subList(start, Math.min(start + batchRows, rows.size()));
+      store(symbol, batch);
+      removePending(symbol, batch);
+    }
+  }
+
+  /**
+   * Stores the prices that are not in the price store yet, in bulk. A date that is already stored
+   * for the symbol, or that appears more than once in the prices, is only stored once so that the
+   * unique (symbol, date) index is never violated by this JVM. Another instance sharing the price
+   * store may still store a date between the check and the write; the batch is then stored a row at
+   * a time, skipping the rows the index refuses, rather than failing until the symbol is dropped.
+   */
+  private void store(final String symbol, final Collection<IexHistoricalPrices> prices) {
+    NavigableMap<LocalDate, IexHistoricalPrices> newPrices = new TreeMap<>();
+    for (IexHistoricalPrices price : prices) {
+      if (price.getDate() != null) {
+        newPrices.putIfAbsent(LocalDate.parse(price.getDate()), price);
+      }
+    }
+    if (newPrices.isEmpty()) {
+      return;
+    }
+
+    // Only a fast path within this JVM: the unique index is what keeps instances from storing a
+    // date twice
+    Lock lock = storeLocks.get(symbol);
+    lock.lock();
+    try {
+      for (LocalDate stored : priceStore.findDatesBySymbolAndDateBetween(
+          symbol, newPrices.firstKey(), newPrices.lastKey())) {
+        newPrices.remove(stored);
+      }
+      try {
+        priceStore.saveAll(toEntities(newPrices.values()));
+      } catch (DataIntegrityViolationException e) {
+        log.info("Some prices of {} were stored elsewhere meanwhile, storing the others one by one",
+            symbol, e);
+        storeOneByOne(symbol, newPrices.values());
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void storeOneByOne(final String symbol, final Collection<IexHistoricalPrices> prices) {
+    for (IexHistoricalPrices price : prices) {
+      try {
+        priceStore.saveAll(toEntities(Collections.singletonList(price)));
+      } catch (DataIntegrityViolationException e) {
+        log.debug("Skipped the price of {} on {}, which is stored already", symbol,
+            price.getDate(), e);
+      }
+    }
+  }
+
+  // Entities are built afresh for every attempt, since a failed save may leave them with an id
+  private static List<IexHistoricalPricesDB> toEntities(
+      final Collection<IexHistoricalPrices> prices) {
+    List<IexHistoricalPricesDB> entities = new ArrayList<>(prices.size());
+    for (IexHistoricalPrices price : prices) {
+      entities.add(new IexHistoricalPricesDB(price));
+    }
+    return entities;
+  }
+
+  private void removePending(final String symbol, final List<IexHistoricalPrices> stored) {
+    pendingBySymbol.computeIfPresent(symbol, (key, pending) -> {
+      for (IexHistoricalPrices price : stored) {
+        if (pending.remove(LocalDate.parse(price.getDate()), price)) {
+          pendingRows.decrementAndGet();
+        }
+      }
+      return pending.isEmpty() ? null : pending;
+    });
+  }
+
+  private int dropPending(final String symbol) {
+    AtomicInteger dropped = new AtomicInteger();
+    pendingBySymbol.computeIfPresent(symbol, (key, pending) -> {
+      dropped.set(pending.size());
+      pendingRows.addAndGet(-pending.size());
+      return null;
+    });
+    return dropped.get();
+  }
+
+  private static void sleep(final long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
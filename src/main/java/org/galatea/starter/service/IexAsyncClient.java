@@ -0,0 +1,173 @@
+package org.galatea.starter.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import org.galatea.starter.domain.IexLastTradedPrice;
+import org.galatea.starter.utils.resilience.Bulkhead;
+import org.galatea.starter.utils.resilience.CircuitBreaker;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * The non-blocking counterpart of IexClient for last traded prices, called with the JDK HTTP
+ * client so that no thread waits on Iex while a call is in flight. Each call returns right away
+ * with a future completed by one of a few client threads once Iex answers.
+ *
+ * <p>Calls share the Iex bulkhead and circuit breaker with IexClient, and fail with an
+ * IexUnavailableException when the bulkhead has no free permit (rather than waiting for one), while
+ * the breaker is open, when Iex is throttling us or failing (429 or 5xx), or on a timeout. They are
+ * not retried, since callers waiting on a future can retry more cheaply than a blocked thread.
+ */
+@Component
+public class IexAsyncClient implements DisposableBean {
+
+  private static final TypeReference<List<IexLastTradedPrice>> LAST_TRADED_PRICES =
+      new TypeReference<List<IexLastTradedPrice>>() {};
+
+  private final String basePath;
+  private final String token;
+  private final ObjectMapper objectMapper;
+  private final Bulkhead bulkhead;
+  private final CircuitBreaker circuitBreaker;
+  private final Duration lastTradedPriceReadTimeout;
+  private final ExecutorService executor;
+  private final HttpClient httpClient;
+
+  /**
+   * Creates a client.
+   *
+   * @param basePath the URL of the Iex API.
+   * @param token the Iex API token.
+   * @param objectMapper the mapper the responses are read with.
+   * @param iexBulkhead the bulkhead shared by every call to Iex.
+   * @param iexCircuitBreaker the circuit breaker shared by every call to Iex.
+   * @param connectTimeoutMs how long connecting to Iex may take.
+   * @param lastTradedPriceReadTimeoutMs how long Iex may take to answer with last traded prices.
+   * @param threads the number of threads completing the futures.
+   */
+  public IexAsyncClient(@Value("${spring.rest.iexBasePath}") final String basePath,
+      @Value("${spring.application.iex_token}") final String token,
+      final ObjectMapper objectMapper, final Bulkhead iexBulkhead,
+      final CircuitBreaker iexCircuitBreaker,
+      @Value("${iex.client.connect-timeout-ms}") final long connectTimeoutMs,
+      @Value("${iex.client.last-traded-price-read-timeout-ms}")
+      final long lastTradedPriceReadTimeoutMs,
+      @Value("${iex.client.async-threads}") final int threads) {
+    // Paths start with a slash, so don't end up with two of them
+    this.basePath = basePath.endsWith("/")
+        ? basePath.substring(0, basePath.length() - 1) : basePath;
+    this.token = encode(token);
+    this.objectMapper = objectMapper;
+    this.bulkhead = iexBulkhead;
+    this.circuitBreaker = iexCircuitBreaker;
+    this.lastTradedPriceReadTimeout = Duration.ofMillis(lastTradedPriceReadTimeoutMs);
+    this.executor = Executors.newFixedThreadPool(threads,
+        new CustomizableThreadFactory("iex-async-"));
+    // HTTP/1.1 keeps the connections to Iex alive without an h2c upgrade on every new one
+    this.httpClient = HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_1_1)
+        .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+        .executor(executor)
+        .build();
+  }
+
+  /**
+   * Get the last traded price for each stock symbol passed in, without blocking.
+   *
+   * @param symbols stock symbols to get last traded price for.
+   * @return a future of the last traded price for each of the symbols Iex knows.
+   */
+  public CompletableFuture<List<IexLastTradedPrice>> getLastTradedPriceForSymbols(
+      final List<String> symbols) {
+    String joined = symbols.stream()
+        .map(IexAsyncClient::encode)
+        .collect(Collectors.joining(","));
+    return get("/tops/last?token=" + token + "&symbols=" + joined, lastTradedPriceReadTimeout,
+        LAST_TRADED_PRICES);
+  }
+
+  @Override
+  public void destroy() {
+    executor.shutdownNow();
+  }
+
+  private <T> CompletableFuture<T> get(final String pathAndQuery, final Duration timeout,
+      final TypeReference<T> type) {
+    if (!circuitBreaker.tryAcquirePermission()) {
+      return CompletableFuture.failedFuture(
+          new IexUnavailableException("The Iex circuit breaker is open"));
+    }
+    // Waiting for a permit would block the caller, so a full bulkhead turns the call away at once
+    if (!bulkhead.tryAcquireNow()) {
+      // The breaker let the call through, so it must hear back; a full bulkhead says nothing
+      // about Iex itself
+      circuitBreaker.onSuccess();
+      return CompletableFuture.failedFuture(
+          new IexUnavailableException("Too many calls to Iex are in flight"));
+    }
+    HttpRequest request = HttpRequest.newBuilder(URI.create(basePath + pathAndQuery))
+        .timeout(timeout)
+        .header("Accept", "application/json")
+        .GET()
+        .build();
+
+    CompletableFuture<HttpResponse<byte[]>> sent;
+    try {
+      sent = httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
+    } catch (RuntimeException e) {
+      bulkhead.release();
+      circuitBreaker.onFailure();
+      throw e;
+    }
+
+    return sent
+        .whenComplete((response, error) -> bulkhead.release())
+        .handle((response, error) -> {
+          if (error != null) {
+            circuitBreaker.onFailure();
+            throw new IexUnavailableException("Iex call failed: " + error.getMessage(),
+                error instanceof CompletionException ? error.getCause() : error);
+          }
+          int status = response.statusCode();
+          if (status == 429 || status >= 500) {
+            circuitBreaker.onFailure();
+            throw new IexUnavailableException("Iex answered with status " + status);
+          }
+          circuitBreaker.onSuccess();
+          if (status >= 300) {
+            throw new IllegalStateException("Iex answered " + request.uri().getPath()
+                + " with status " + status);
+          }
+          return read(response.body(), type);
+        });
+  }
+
+  private <T> T read(final byte[] body, final TypeReference<T> type) {
+    try {
+      return objectMapper.readValue(body, type);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static String encode(final String value) {
+    return URLEncoder.encode(value, StandardCharsets.UTF_8);
+  }
+}
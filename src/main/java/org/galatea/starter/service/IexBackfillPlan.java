@@ -0,0 +1,35 @@
+package org.galatea.starter.service;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import lombok.Value;
+
+/**
+ * The calls to make to Iex in order to fill the dates of a symbol that are missing from the
+ * database: at most one chart range call, plus one call per date the range does not cover.
+ */
+@Value
+public class IexBackfillPlan {
+
+  private IexChartRange range;
+  private List<LocalDate> singleDates;
+
+  /**
+   * Get the chart range to request, if any.
+   *
+   * @return the chart range, or empty if only single dates are requested.
+   */
+  public Optional<IexChartRange> getRange() {
+    return Optional.ofNullable(range);
+  }
+
+  /**
+   * Get the number of calls to Iex this plan makes.
+   *
+   * @return the number of calls.
+   */
+  public int callCount() {
+    return singleDates.size() + (range == null ? 0 : 1);
+  }
+}
@@ -0,0 +1,124 @@
+package org.galatea.starter.service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Decides how to fetch the dates of a symbol that are missing from the database with the least
+ * Iex usage. Missing dates are grouped into runs of consecutive trading days, and each run is
+ * either requested one date at a time or covered by the smallest chart range reaching back to its
+ * first date. Since every chart range ends today, one range covers every run newer than the one it
+ * was chosen for, so at most one range call is ever needed.
+ */
+@Slf4j
+@Component
+public class IexBackfillPlanner {
+
+  private final int callCost;
+  private final TradingCalendar tradingCalendar;
+
+  /**
+   * Creates a planner.
+   *
+   * @param callCost the cost of one call to Iex, measured in rows of data returned. The higher it
+   *     is, the sooner a range call is preferred over calls for single dates.
+   * @param tradingCalendar the calendar used to count the rows a range call returns.
+   */
+  public IexBackfillPlanner(@Value("${iex.backfill.call-cost}") final int callCost,
+      final TradingCalendar tradingCalendar) {
+    this.callCost = callCost;
+    this.tradingCalendar = tradingCalendar;
+  }
+
+  /**
+   * Plan the calls needed to fetch the missing dates.
+   *
+   * @param requestedDates every date that was requested, in ascending order.
+   * @param missingDates the requested dates that are not in the database, in ascending order.
+   * @param today the date the calls to Iex are made on.
+   * @return the cheapest plan that fetches every missing date.
+   */
+  public IexBackfillPlan plan(final List<LocalDate> requestedDates,
+      final List<LocalDate> missingDates, final LocalDate today) {
+    // The option of not making a range call at all is always available
+    Set<IexChartRange> candidates = new LinkedHashSet<>();
+    candidates.add(null);
+    for (List<LocalDate> run : groupIntoRuns(requestedDates, missingDates)) {
+      IexChartRange.smallestCovering(run.get(0), today).ifPresent(candidates::add);
+    }
+
+    IexBackfillPlan cheapest = null;
+    long cheapestCost = Long.MAX_VALUE;
+    for (IexChartRange candidate : candidates) {
+      IexBackfillPlan plan = planWithRange(candidate, missingDates, today);
+      long cost = cost(plan, today);
+      if (cost < cheapestCost) {
+        cheapest = plan;
+        cheapestCost = cost;
+      }
+    }
+    log.debug("Planned {} call(s) to fetch {} missing date(s): {}", cheapest.callCount(),
+        missingDates.size(), cheapest);
+    return cheapest;
+  }
+
+  /**
+   * Split the missing dates into runs of dates that are next to each other in the requested dates,
+   * i.e. that have no stored date between them.
+   *
+   * @param requestedDates every date that was requested, in ascending order.
+   * @param missingDates the requested dates that are not in the database.
+   * @return the runs of missing dates, oldest first.
+   */
+  List<List<LocalDate>> groupIntoRuns(final List<LocalDate> requestedDates,
+      final List<LocalDate> missingDates) {
+    Set<LocalDate> missing = new HashSet<>(missingDates);
+    List<List<LocalDate>> runs = new ArrayList<>();
+    List<LocalDate> currentRun = new ArrayList<>();
+    for (LocalDate date : requestedDates) {
+      if (missing.contains(date)) {
+        currentRun.add(date);
+      } else if (!currentRun.isEmpty()) {
+        runs.add(currentRun);
+        currentRun = new ArrayList<>();
+      }
+    }
+    if (!currentRun.isEmpty()) {
+      runs.add(currentRun);
+    }
+    return runs;
+  }
+
+  private IexBackfillPlan planWithRange(final IexChartRange range,
+      final List<LocalDate> missingDates, final LocalDate today) {
+    if (range == null) {
+      return new IexBackfillPlan(null, missingDates);
+    }
+    LocalDate rangeStart = range.startDate(today);
+    List<LocalDate> uncovered = missingDates.stream()
+        .filter(date -> date.isBefore(rangeStart))
+        .collect(Collectors.toList());
+    return new IexBackfillPlan(range, uncovered);
+  }
+
+  private long cost(final IexBackfillPlan plan, final LocalDate today) {
+    // A single date call returns one row
+    long cost = (long) plan.getSingleDates().size() * (callCost + 1);
+    Optional<IexChartRange> range = plan.getRange();
+    if (range.isPresent()) {
+      // A range returns one row per trading day up to today
+      cost += callCost
+          + tradingCalendar.tradingDaysBetween(range.get().startDate(today), today.plusDays(1));
+    }
+    return cost;
+  }
+}
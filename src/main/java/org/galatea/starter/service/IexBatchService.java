@@ -0,0 +1,107 @@
+package org.galatea.starter.service;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.domain.IexBatchHistoricalPrices;
+import org.galatea.starter.domain.IexHistoricalPrices;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Service;
+
+/**
+ * Resolves the historical prices of many symbols at once. Each symbol goes through the same
+ * database first logic as a single symbol request, on a bounded executor so that no more than the
+ * executor's pool size of symbols, and therefore of calls to Iex, are in flight at any time.
+ */
+@Slf4j
+@Service
+public class IexBatchService {
+
+  private final IexService iexService;
+  private final TaskExecutor executor;
+  private final int maxSymbols;
+
+  /**
+   * Creates a batch service.
+   *
+   * @param iexService the service resolving the prices of one symbol.
+   * @param executor the bounded executor the symbols are resolved on.
+   * @param maxSymbols the most symbols accepted in one batch.
+   */
+  public IexBatchService(final IexService iexService,
+      @Qualifier("iexBatchExecutor") final TaskExecutor executor,
+      @Value("${iex.batch.max-symbols}") final int maxSymbols) {
+    this.iexService = iexService;
+    this.executor = executor;
+    this.maxSymbols = maxSymbols;
+  }
+
+  /**
+   * Get the historical prices of each symbol for the same range or date.
+   *
+   * @param symbols the symbols to get historical prices for; duplicates are resolved once.
+   * @param range the range of time (ex. "5m", "ytd") to get previous data (Optional).
+   * @param date the date from which we would want to get the previous data from (Optional).
+   *      Note: the same defaults and precedence as for a single symbol apply.
+   * @return the prices of every symbol that was resolved, and the error of every one that wasn't.
+   */
+  public IexBatchHistoricalPrices getHistoricalPricesForSymbols(final List<String> symbols,
+      final String range, final String date) {
+    Set<String> distinctSymbols = new LinkedHashSet<>();
+    for (String symbol : symbols) {
+      distinctSymbols.add(symbol.trim().toUpperCase());
+    }
+    if (distinctSymbols.size() > maxSymbols) {
+      throw new IllegalArgumentException(
+          "At most " + maxSymbols + " symbols can be requested at once.");
+    }
+
+    Map<String, CompletableFuture<List<IexHistoricalPrices>>> futures = new LinkedHashMap<>();
+    for (String symbol : distinctSymbols) {
+      futures.put(symbol, submit(symbol, range, date));
+    }
+
+    Map<String, List<IexHistoricalPrices>> prices = new LinkedHashMap<>();
+    Map<String, String> errors = new LinkedHashMap<>();
+    futures.forEach((symbol, future) -> {
+      try {
+        prices.put(symbol, future.join());
+      } catch (CompletionException e) {
+        Throwable cause = e.getCause() == null ? e : e.getCause();
+        log.warn("Could not get historical prices for {}", symbol, cause);
+        errors.put(symbol, describe(cause));
+      }
+    });
+    return new IexBatchHistoricalPrices(prices, errors);
+  }
+
+  private CompletableFuture<List<IexHistoricalPrices>> submit(final String symbol,
+      final String range, final String date) {
+    try {
+      return CompletableFuture.supplyAsync(
+          () -> iexService.getHistoricalPricesForSymbol(symbol, range, date), executor);
+    } catch (RejectedExecutionException e) {
+      // The executor's queue is full, so only this symbol is failed rather than the batch
+      CompletableFuture<List<IexHistoricalPrices>> rejected = new CompletableFuture<>();
+      rejected.completeExceptionally(e);
+      return rejected;
+    }
+  }
+
+  private static String describe(final Throwable cause) {
+    if (cause instanceof RejectedExecutionException) {
+      return "Too many symbols are being resolved, try again later.";
+    } else if (cause instanceof IllegalArgumentException) {
+      return cause.getMessage();
+    }
+    return "Could not get historical prices: " + cause.getClass().getSimpleName();
+  }
+}
@@ -0,0 +1,58 @@
+package org.galatea.starter.service;
+
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.Optional;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * The fixed ranges accepted by the Iex chart endpoint, ordered from smallest to largest. Every
+ * range ends at the current date, so a range covers a date when the date is no older than the
+ * start of the range.
+ */
+@RequiredArgsConstructor
+public enum IexChartRange {
+
+  // "5d" is five trading days; four calendar days back is covered whatever the day of the week
+  FIVE_DAYS("5d", Period.ofDays(4)),
+  ONE_MONTH("1m", Period.ofMonths(1)),
+  THREE_MONTHS("3m", Period.ofMonths(3)),
+  ONE_YEAR("1y", Period.ofYears(1)),
+  FIVE_YEARS("5y", Period.ofYears(5));
+
+  /**
+   * The range as it is passed to Iex (ex. "5d", "1y").
+   */
+  @Getter
+  private final String value;
+
+  private final Period lookBack;
+
+  /**
+   * Get the oldest date that a call for this range is guaranteed to return.
+   *
+   * @param today the date the call to Iex is made on.
+   * @return the first date covered by this range.
+   */
+  public LocalDate startDate(final LocalDate today) {
+    return today.minus(lookBack);
+  }
+
+  /**
+   * Get the smallest range that covers the given date.
+   *
+   * @param date the oldest date that needs to be covered.
+   * @param today the date the call to Iex is made on.
+   * @return the smallest covering range, or empty if the date is older than every range.
+   */
+  public static Optional<IexChartRange> smallestCovering(final LocalDate date,
+      final LocalDate today) {
+    for (IexChartRange range : values()) {
+      if (!date.isBefore(range.startDate(today))) {
+        return Optional.of(range);
+      }
+    }
+    return Optional.empty();
+  }
+}
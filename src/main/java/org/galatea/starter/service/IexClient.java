@@ -1,10 +1,13 @@
 package org.galatea.starter.service;
 
 import java.util.List;
+import java.util.Map;
 import javax.websocket.server.PathParam;
+import org.galatea.starter.IexClientConfig;
 import org.galatea.starter.domain.IexHistoricalPrices;
 import org.galatea.starter.domain.IexLastTradedPrice;
 import org.galatea.starter.domain.IexSymbol;
+import org.galatea.starter.domain.IexSymbolChart;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -14,8 +17,12 @@ import org.springframework.web.bind.annotation.RequestParam;
 /**
  * A Feign Declarative REST Client to access endpoints from the Free and Open IEX API to get market
  * data. See https://iextrading.com/developer/docs/
+ *
+ * <p>Every call is an idempotent GET, so failed calls are safely retried; see IexClientConfig for
+ * the transport, timeouts and retries.
  */
-@FeignClient(name = "IEX", url = "${spring.rest.iexBasePath}")
+@FeignClient(name = "IEX", url = "${spring.rest.iexBasePath}",
+    configuration = IexClientConfig.class)
 public interface IexClient {
 
   /**
@@ -61,4 +68,17 @@ public interface IexClient {
   List<IexHistoricalPrices> getHistoricalPricesForSymbolByRange(
       @PathVariable("symbol") String symbol,
       @PathVariable("range") String range);
+
+  /**
+   * Get the historical prices of several symbols over a range in one call. See
+   * https://iextrading.com/developer/docs/#batch-requests.
+   *
+   * @param symbols comma separated symbols to get historical prices for; at most 100.
+   * @param range the range of time  (ex. "5d", "1m" ) to get previous data for.
+   * @return the chart of each of the symbols Iex knows, keyed by symbol.
+   */
+  @GetMapping("/stock/market/batch?token=${spring.application.iex_token}&types=chart")
+  Map<String, IexSymbolChart> getHistoricalPricesForSymbolsByRange(
+      @RequestParam("symbols") String symbols,
+      @RequestParam("range") String range);
 }
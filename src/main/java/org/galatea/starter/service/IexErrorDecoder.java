@@ -0,0 +1,24 @@
+package org.galatea.starter.service;
+
+import feign.FeignException;
+import feign.RetryableException;
+import feign.Response;
+import feign.codec.ErrorDecoder;
+
+/**
+ * Makes the IexClient errors worth retrying retryable: Iex throttling us (429) and Iex failing
+ * (5xx). Any other error, such as an unknown symbol, is decoded as usual and not retried.
+ */
+public class IexErrorDecoder implements ErrorDecoder {
+
+  private final ErrorDecoder defaultDecoder = new ErrorDecoder.Default();
+
+  @Override
+  public Exception decode(final String methodKey, final Response response) {
+    if (response.status() == 429 || response.status() >= 500) {
+      FeignException error = FeignException.errorStatus(methodKey, response);
+      return new RetryableException(error.getMessage(), error, null);
+    }
+    return defaultDecoder.decode(methodKey, response);
+  }
+}
@@ -0,0 +1,85 @@
+package org.galatea.starter.service;
+
+import feign.Client;
+import feign.Request;
+import feign.Request.Options;
+import feign.Response;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.utils.resilience.Bulkhead;
+import org.galatea.starter.utils.resilience.CircuitBreaker;
+
+/**
+ * The Feign transport of IexClient. Each call gets the timeouts of its endpoint, is only made if
+ * the circuit breaker is closed and the bulkhead has a free permit, and its outcome is reported to
+ * the breaker. A call that is turned away fails right away with an IexUnavailableException, which
+ * Feign does not retry.
+ */
+@Slf4j
+public class IexFeignClient implements Client {
+
+  private final Client delegate;
+  private final Bulkhead bulkhead;
+  private final CircuitBreaker circuitBreaker;
+  private final Options defaultOptions;
+  private final Map<String, Options> optionsByPath;
+
+  /**
+   * Creates a transport.
+   *
+   * @param delegate the client making the HTTP calls.
+   * @param bulkhead limits the calls in flight to Iex.
+   * @param circuitBreaker stops calls to Iex while it keeps failing.
+   * @param defaultOptions the timeouts of endpoints not in optionsByPath.
+   * @param optionsByPath the timeouts of the endpoints whose URL contains each path, checked in
+   *     iteration order.
+   */
+  public IexFeignClient(final Client delegate, final Bulkhead bulkhead,
+      final CircuitBreaker circuitBreaker, final Options defaultOptions,
+      final Map<String, Options> optionsByPath) {
+    this.delegate = delegate;
+    this.bulkhead = bulkhead;
+    this.circuitBreaker = circuitBreaker;
+    this.defaultOptions = defaultOptions;
+    this.optionsByPath = new LinkedHashMap<>(optionsByPath);
+  }
+
+  @Override
+  public Response execute(final Request request, final Options options) throws IOException {
+    if (!circuitBreaker.tryAcquirePermission()) {
+      throw new IexUnavailableException("The Iex circuit breaker is open");
+    }
+    if (!bulkhead.tryAcquire()) {
+      // The breaker let the call through, so it must hear back; a full bulkhead says nothing
+      // about Iex itself
+      circuitBreaker.onSuccess();
+      throw new IexUnavailableException("Too many calls to Iex are in flight");
+    }
+
+    try {
+      Response response = delegate.execute(request, optionsFor(request));
+      if (response.status() == 429 || response.status() >= 500) {
+        circuitBreaker.onFailure();
+      } else {
+        circuitBreaker.onSuccess();
+      }
+      return response;
+    } catch (IOException | RuntimeException e) {
+      circuitBreaker.onFailure();
+      throw e;
+    } finally {
+      bulkhead.release();
+    }
+  }
+
+  private Options optionsFor(final Request request) {
+    for (Map.Entry<String, Options> entry : optionsByPath.entrySet()) {
+      if (request.url().contains(entry.getKey())) {
+        return entry.getValue();
+      }
+    }
+    return defaultOptions;
+  }
+}
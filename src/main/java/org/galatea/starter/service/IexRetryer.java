@@ -0,0 +1,53 @@
+package org.galatea.starter.service;
+
+import feign.RetryableException;
+import feign.Retryer;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Retries failed IexClient calls, which are all idempotent GETs, with exponential backoff and
+ * full jitter: each wait is random between zero and a cap that doubles every attempt, so clients
+ * that failed together don't all retry together. Once maxAttempts calls have failed, the last
+ * failure is thrown as an IexUnavailableException.
+ */
+public class IexRetryer implements Retryer {
+
+  private final int maxAttempts;
+  private final long initialBackoffMs;
+  private final long maxBackoffMs;
+  private int attempt = 1;
+
+  /**
+   * Creates a retryer for one call.
+   *
+   * @param maxAttempts the most times a call is made, including the first.
+   * @param initialBackoffMs the cap of the wait before the first retry.
+   * @param maxBackoffMs the cap of any wait.
+   */
+  public IexRetryer(final int maxAttempts, final long initialBackoffMs, final long maxBackoffMs) {
+    this.maxAttempts = maxAttempts;
+    this.initialBackoffMs = initialBackoffMs;
+    this.maxBackoffMs = maxBackoffMs;
+  }
+
+  @Override
+  public void continueOrPropagate(final RetryableException e) {
+    if (attempt >= maxAttempts) {
+      throw new IexUnavailableException(
+          "Iex call failed after " + attempt + " attempt(s): " + e.getMessage(), e);
+    }
+    long cap = Math.min(maxBackoffMs, initialBackoffMs << Math.min(attempt - 1, 20));
+    attempt++;
+    try {
+      Thread.sleep(ThreadLocalRandom.current().nextLong(cap + 1));
+    } catch (InterruptedException interrupted) {
+      Thread.currentThread().interrupt();
+      throw e;
+    }
+  }
+
+  @Override
+  public Retryer clone() {
+    return new IexRetryer(maxAttempts, initialBackoffMs, maxBackoffMs);
+  }
+}
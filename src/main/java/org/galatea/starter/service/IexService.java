@@ -1,23 +1,35 @@
 package org.galatea.starter.service;
 
 import java.time.Clock;
-import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.function.Predicate;
-import java.util.regex.*;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.regex.*;
 import java.util.stream.Collectors;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.galatea.starter.domain.HistoricalPricesRepository;
 import org.galatea.starter.domain.IexHistoricalPrices;
 import org.galatea.starter.domain.IexHistoricalPricesDB;
 import org.galatea.starter.domain.IexLastTradedPrice;
 import org.galatea.starter.domain.IexSymbol;
+import org.galatea.starter.domain.PriceSeries;
+import org.galatea.starter.domain.PriceStore;
+import org.galatea.starter.utils.SingleFlight;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 
@@ -38,30 +50,148 @@ public class IexService {
   private IexClient iexClient;
 
   @NonNull
-  private HistoricalPricesRepository repository;
+  private PriceStore priceStore;
+
+  @NonNull
+  private IexBackfillPlanner backfillPlanner;
+
+  @NonNull
+  private PriceSeriesCache priceSeriesCache;
+
+  @NonNull
+  private SymbolDirectory symbolDirectory;
+
+  @NonNull
+  private LastTradedPriceBatcher lastTradedPriceBatcher;
+
+  @NonNull
+  private QuoteCache quoteCache;
+
+  @NonNull
+  private HistoricalPricesWriter historicalPricesWriter;
+
+  @NonNull
+  private TradingCalendar tradingCalendar;
+
+  @NonNull
+  private EmptyPriceDates emptyPriceDates;
+
+  @NonNull
+  private StoredSymbolIndex storedSymbolIndex;
+
+  // Age of the oldest cached quote served when a request doesn't say
+  @Value("${iex.quote-cache.default-max-age-ms}")
+  private long defaultQuoteMaxAgeMs;
+
+  // Concurrent identical historical price calls to Iex share one response
+  private final SingleFlight<String, List<IexHistoricalPrices>> iexCalls = new SingleFlight<>();
 
 
   /**
-   * Get all stock symbols from IEX.
+   * Get all stock symbols from IEX, as last loaded into the symbol directory.
    *
    * @return a list of all Stock Symbols from IEX.
    */
   public List<IexSymbol> getAllSymbols() {
-    return iexClient.getAllSymbols();
+    return symbolDirectory.getAllSymbols();
+  }
+
+  /**
+   * Search the stock symbols from IEX by prefix of the symbol or of any word of its name.
+   *
+   * @param query the prefix to look for, in any case.
+   * @param limit the most symbols to return.
+   * @return the matching Stock Symbols, best match first.
+   */
+  public List<IexSymbol> searchSymbols(final String query, final int limit) {
+    if (query == null || query.trim().isEmpty()) {
+      throw new IllegalArgumentException("No Search Query Provided.");
+    }
+    return symbolDirectory.search(query, limit);
   }
 
   /**
-   * Get the last traded price for each Symbol that is passed in.
+   * Get the last traded price for each Symbol that is passed in, accepting cached quotes up to
+   * the default maximum age.
    *
    * @param symbols the list of symbols to get a last traded price for.
    * @return a list of last traded price objects for each Symbol that is passed in.
    */
   public List<IexLastTradedPrice> getLastTradedPriceForSymbols(final List<String> symbols) {
+    return getLastTradedPriceForSymbols(symbols, null);
+  }
+
+  /**
+   * Get the last traded price for each Symbol that is passed in. Quotes fetched within maxAgeMs
+   * are served from the quote cache, and only the other symbols are sent to IEX, together with
+   * those of any other request arriving within the batching window.
+   *
+   * @param symbols the list of symbols to get a last traded price for.
+   * @param maxAgeMs the oldest cached quote accepted, in milliseconds (Optional).
+   *      Note: If not provided, the configured default is used; 0 always fetches from IEX.
+   * @return a list of last traded price objects for each Symbol that is passed in.
+   */
+  public List<IexLastTradedPrice> getLastTradedPriceForSymbols(final List<String> symbols,
+      final Long maxAgeMs) {
+    try {
+      return getLastTradedPriceForSymbolsAsync(symbols, maxAgeMs).toCompletableFuture().join();
+    } catch (CompletionException e) {
+      // Rethrow what the Iex call threw, as if it had been made by this thread
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Get the last traded price for each Symbol that is passed in, without blocking while IEX is
+   * called. Works like getLastTradedPriceForSymbols, and completes right away if every quote is
+   * served from the quote cache.
+   *
+   * @param symbols the list of symbols to get a last traded price for.
+   * @param maxAgeMs the oldest cached quote accepted, in milliseconds (Optional).
+   *      Note: If not provided, the configured default is used; 0 always fetches from IEX.
+   * @return a stage completed with a list of last traded price objects for each Symbol that is
+   *     passed in.
+   */
+  public CompletionStage<List<IexLastTradedPrice>> getLastTradedPriceForSymbolsAsync(
+      final List<String> symbols, final Long maxAgeMs) {
     if (CollectionUtils.isEmpty(symbols)) {
       throw new IllegalArgumentException("No Stock Symbol Provided.");
-    } else {
-      return iexClient.getLastTradedPriceForSymbols(symbols.toArray(new String[0]));
     }
+    long maxAge = maxAgeMs == null ? defaultQuoteMaxAgeMs : maxAgeMs;
+
+    Map<String, IexLastTradedPrice> quotes = new LinkedHashMap<>();
+    List<String> staleSymbols = new ArrayList<>();
+    for (String symbol : symbols) {
+      String key = symbol.trim().toUpperCase();
+      if (!key.isEmpty() && !quotes.containsKey(key)) {
+        Optional<IexLastTradedPrice> cached = quoteCache.get(key, maxAge);
+        quotes.put(key, cached.orElse(null));
+        if (!cached.isPresent()) {
+          staleSymbols.add(key);
+        }
+      }
+    }
+
+    if (staleSymbols.isEmpty()) {
+      return CompletableFuture.completedFuture(nonNullQuotes(quotes));
+    }
+    return lastTradedPriceBatcher.getLastTradedPricesAsync(staleSymbols).thenApply(fetched -> {
+      quoteCache.putAll(fetched);
+      for (IexLastTradedPrice quote : fetched) {
+        quotes.replace(quote.getSymbol().toUpperCase(), quote);
+      }
+      return nonNullQuotes(quotes);
+    });
+  }
+
+  private static List<IexLastTradedPrice> nonNullQuotes(
+      final Map<String, IexLastTradedPrice> quotes) {
+    return quotes.values().stream()
+        .filter(Objects::nonNull)
+        .collect(Collectors.toList());
   }
 
   /**
@@ -87,39 +217,314 @@ public class IexService {
     }
     else if (date != null) {
       List<IexHistoricalPrices> outputFromDate = new ArrayList<>();
-      if (!isDateWeekend(date)) {
-        outputFromDate.add(getHistoricalPriceBySymbolAndDate(symbol, date));
+      if (isTradingDay(date)) {
+        getHistoricalPriceBySymbolAndDate(symbol, date).ifPresent(outputFromDate::add);
       }
       return outputFromDate;
     } else {
-      // Parse range into a list of dates and run them through getHistoricalPriceBySymbolAndDate
-      List<String> datesToLookThrough = rangeToDateList(range);
-      List<IexHistoricalPrices> outputFromDate = new ArrayList<>();
-      for (String dateVal : datesToLookThrough) {
-        IexHistoricalPrices out = getHistoricalPriceBySymbolAndDate(symbol, dateVal);
-        if (out != null) {
-          outputFromDate.add(out);
+      // Parse range into a list of dates and look them all up in a single pass
+      return getHistoricalPricesForDates(symbol, rangeToDateList(range == null ? "1m" : range));
+    }
+  }
+
+  /**
+   * Gets the historical prices of a symbol for a list of dates. The stored prices of the window
+   * are read from the price series cache when the symbol is hot, and otherwise from the repository
+   * in one query. Only the dates missing from both are requested from Iex; if Iex is unavailable,
+   * only the stored prices are returned.
+   *
+   * @param symbol Stock symbol to get historical prices for.
+   * @param dates the dates (formatted YYYYMMDD, ascending) to get historical prices for.
+   * @return a list of IexHistoricalPrices objects sorted by date.
+   */
+  public List<IexHistoricalPrices> getHistoricalPricesForDates(
+      final String symbol, final List<String> dates) {
+    if (dates.isEmpty()) {
+      return new ArrayList<>();
+    }
+    List<LocalDate> requestedDates = toLocalDates(dates);
+    LocalDate startDate = requestedDates.get(0);
+    LocalDate endDate = requestedDates.get(requestedDates.size() - 1);
+
+    Map<LocalDate, IexHistoricalPrices> pricesByDate = new HashMap<>();
+    Optional<PriceSeries> series = getCachedSeries(symbol);
+    series.ifPresent(cached -> putByDate(pricesByDate, cached.slice(startDate, endDate)));
+    if (!series.isPresent() || pricesByDate.size() < requestedDates.size()) {
+      // The cache can miss rows another request stored while the series was being loaded, so
+      // anything it does not have is checked against the repository before going to Iex, unless
+      // no stored date of the symbol falls in the window
+      if (storedSymbolIndex.getCoverage(symbol)
+          .filter(coverage -> coverage.overlaps(startDate, endDate)).isPresent()) {
+        List<IexHistoricalPrices> stored = priceStore
+            .findBySymbolAndDateBetween(symbol, startDate, endDate).stream()
+            .map(IexHistoricalPrices::new)
+            .collect(Collectors.toList());
+        putByDate(pricesByDate, stored);
+        priceSeriesCache.merge(symbol, stored);
+      }
+      // Prices fetched by an earlier request may still be waiting to be stored
+      putByDate(pricesByDate, historicalPricesWriter.getPending(symbol, startDate, endDate));
+    }
+
+    List<LocalDate> missingDates = requestedDates.stream()
+        .filter(date -> !pricesByDate.containsKey(date))
+        .collect(Collectors.toList());
+    if (!missingDates.isEmpty()) {
+      log.info("{} of {} dates for {} are not in the database", missingDates.size(),
+          dates.size(), symbol);
+      try {
+        for (IexHistoricalPrices price
+            : fetchMissingDatesFromIex(symbol, requestedDates, missingDates)) {
+          pricesByDate.put(LocalDate.parse(price.getDate()), price);
+        }
+      } catch (IexUnavailableException e) {
+        if (pricesByDate.isEmpty()) {
+          throw e;
         }
+        // Answer with what is stored rather than failing while Iex is down
+        log.warn("Iex is unavailable, returning only the stored prices of {}: {}", symbol,
+            e.getMessage());
       }
-      return outputFromDate;
     }
+
+    List<IexHistoricalPrices> output = new ArrayList<>();
+    for (LocalDate date : requestedDates) {
+      IexHistoricalPrices price = pricesByDate.get(date);
+      if (price != null) {
+        output.add(price);
+      }
+    }
+    return output;
   }
 
   /**
-   * Check if the date is a weekend.
-   * @param date date (string formatted YYYYMMDD) we are considering
-   * @return boolean: true if the date is a weekend, false otherwise
+   * Makes sure every price of a symbol over a range is stored, fetching the missing dates from Iex
+   * the same way getHistoricalPricesForSymbol does, but without building the stored prices. Only
+   * the stored dates of the window are read. A symbol with stored prices is left as it is if Iex
+   * is unavailable.
+   *
+   * @param symbol Stock symbol to store historical prices for.
+   * @param range the range of time (ex. "5m", "ytd") to store prices for; defaults to "1m".
+   */
+  public void backfillHistoricalPrices(final String symbol, final String range) {
+    String effectiveRange = range == null ? "1m" : range;
+    List<LocalDate> requestedDates = toLocalDates(rangeToDateList(effectiveRange));
+    if (requestedDates.isEmpty()) {
+      return;
+    } else if (!isSymbolInDatabase(symbol)) {
+      getHistoricalPricesFromIex(symbol, effectiveRange, null);
+      return;
+    }
+    LocalDate startDate = requestedDates.get(0);
+    LocalDate endDate = requestedDates.get(requestedDates.size() - 1);
+    if (storedSymbolIndex.isComplete(symbol, startDate, endDate)) {
+      // Every trading day of the window is stored, so there is nothing to read or fetch
+      return;
+    }
+
+    Set<LocalDate> storedDates = new HashSet<>();
+    priceSeriesCache.get(symbol).ifPresent(series -> {
+      for (int i = series.lowerBound(startDate);
+          i < series.size() && !series.getDate(i).isAfter(endDate); i++) {
+        storedDates.add(series.getDate(i));
+      }
+    });
+    if (storedDates.size() < requestedDates.size()) {
+      storedDates.addAll(priceStore.findDatesBySymbolAndDateBetween(symbol, startDate, endDate));
+      for (IexHistoricalPrices pending
+          : historicalPricesWriter.getPending(symbol, startDate, endDate)) {
+        storedDates.add(LocalDate.parse(pending.getDate()));
+      }
+    }
+
+    List<LocalDate> missingDates = requestedDates.stream()
+        .filter(date -> !storedDates.contains(date))
+        .collect(Collectors.toList());
+    if (!missingDates.isEmpty()) {
+      log.info("Backfilling {} of {} dates for {}", missingDates.size(), requestedDates.size(),
+          symbol);
+      try {
+        fetchMissingDatesFromIex(symbol, requestedDates, missingDates);
+      } catch (IexUnavailableException e) {
+        // The symbol has stored prices, so they can still be served while Iex is down
+        log.warn("Iex is unavailable, not backfilling {}: {}", symbol, e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Fetches the missing dates of a symbol from Iex with the calls chosen by the backfill planner,
+   * and stores the prices for those dates in the repository in bulk. Dates Iex recently returned
+   * no price for are not fetched again, and dates it returns no price for now are remembered,
+   * unless they fall outside the prices a range call returned.
+   *
+   * @param symbol Stock symbol to get historical prices for.
+   * @param requestedDates every date that was requested, in ascending order.
+   * @param missingDates the dates missing from the repository, in ascending order.
+   * @return the prices Iex returned for the missing dates.
+   */
+  private List<IexHistoricalPrices> fetchMissingDatesFromIex(final String symbol,
+      final List<LocalDate> requestedDates, final List<LocalDate> missingDates) {
+    Set<LocalDate> knownEmpty = emptyPriceDates.getKnownEmpty(symbol, missingDates.get(0),
+        missingDates.get(missingDates.size() - 1));
+    List<LocalDate> toFetch = missingDates.stream()
+        .filter(date -> !knownEmpty.contains(date))
+        .collect(Collectors.toList());
+    if (toFetch.isEmpty()) {
+      return new ArrayList<>();
+    }
+    LocalDate today = LocalDate.now(clock);
+    IexBackfillPlan plan = backfillPlanner.plan(requestedDates, toFetch, today);
+
+    List<IexHistoricalPrices> fetched = new ArrayList<>();
+    plan.getRange().ifPresent(range -> fetched.addAll(fetchByRange(symbol, range.getValue())));
+    // A range answer may not reach back as far as its range should, so it only vouches for the
+    // dates between the first and last it returned
+    LocalDate rangeFirst = null;
+    LocalDate rangeLast = null;
+    for (IexHistoricalPrices price : fetched) {
+      LocalDate date = LocalDate.parse(price.getDate());
+      rangeFirst = rangeFirst == null || date.isBefore(rangeFirst) ? date : rangeFirst;
+      rangeLast = rangeLast == null || date.isAfter(rangeLast) ? date : rangeLast;
+    }
+    for (LocalDate date : plan.getSingleDates()) {
+      fetched.addAll(fetchByDate(symbol, date.format(inFormatter)));
+    }
+
+    // Only keep (and store) what was actually missing; a range call returns far more than that
+    Set<LocalDate> stillMissing = new HashSet<>(toFetch);
+    List<IexHistoricalPrices> found = new ArrayList<>();
+    for (IexHistoricalPrices price : fetched) {
+      if (stillMissing.remove(LocalDate.parse(price.getDate()))) {
+        found.add(price);
+      }
+    }
+    storeMissingPrices(symbol, found);
+    // Iex has no price for those left that a call answered for; the others are fetched again
+    Set<LocalDate> singleDates = new HashSet<>(plan.getSingleDates());
+    List<LocalDate> empty = new ArrayList<>();
+    for (LocalDate date : stillMissing) {
+      if (singleDates.contains(date) || (rangeFirst != null && !date.isBefore(rangeFirst)
+          && !date.isAfter(rangeLast))) {
+        empty.add(date);
+      }
+    }
+    markEmpty(symbol, empty, today);
+    return found;
+  }
+
+  /**
+   * Calls Iex for the historical price of a symbol on a date, unless Iex recently returned no
+   * price for it, and remembers the date if Iex returns no price for it now.
+   *
+   * @param symbol Stock symbol to get the historical price for.
+   * @param date Input date (formatted YYYYMMDD) to get price data for.
+   * @return the prices returned by Iex, which must not be modified.
    */
-  public boolean isDateWeekend(final String date) {
-    LocalDate dateToCheck = LocalDate.parse(date, inFormatter);
+  private List<IexHistoricalPrices> fetchDateUnlessKnownEmpty(final String symbol,
+      final String date) {
+    LocalDate localDate = LocalDate.parse(date, inFormatter);
+    if (emptyPriceDates.isKnownEmpty(symbol, localDate)) {
+      return Collections.emptyList();
+    }
+    List<IexHistoricalPrices> prices = fetchByDate(symbol, date);
+    if (prices.isEmpty()) {
+      markEmpty(symbol, Collections.singleton(localDate), LocalDate.now(clock));
+    }
+    return prices;
+  }
 
-    DayOfWeek d = dateToCheck.getDayOfWeek();
-    return (d == DayOfWeek.SATURDAY || d == DayOfWeek.SUNDAY);
+  private void markEmpty(final String symbol, final Collection<LocalDate> dates,
+      final LocalDate today) {
+    // Today's price may just not be published yet
+    emptyPriceDates.markEmpty(symbol, dates.stream()
+        .filter(date -> date.isBefore(today))
+        .collect(Collectors.toList()));
+  }
+
+  /**
+   * Calls Iex for the historical price of a symbol on a date, sharing the call with any identical
+   * one already in flight.
+   *
+   * @param symbol Stock symbol to get the historical price for.
+   * @param date Input date (formatted YYYYMMDD) to get price data for.
+   * @return the prices returned by Iex, which must not be modified.
+   */
+  private List<IexHistoricalPrices> fetchByDate(final String symbol, final String date) {
+    return iexCalls.execute(symbol + "/date/" + date,
+        () -> iexClient.getHistoricalPricesForSymbolByDate(symbol, date));
+  }
+
+  /**
+   * Calls Iex for the historical prices of a symbol over a range, sharing the call with any
+   * identical one already in flight.
+   *
+   * @param symbol Stock symbol to get historical prices for.
+   * @param range the range of time (ex. "5m", "ytd") to get prices for.
+   * @return the prices returned by Iex, which must not be modified.
+   */
+  private List<IexHistoricalPrices> fetchByRange(final String symbol, final String range) {
+    return iexCalls.execute(symbol + "/range/" + range,
+        () -> iexClient.getHistoricalPricesForSymbolByRange(symbol, range));
+  }
+
+  /**
+   * Gets the cached price series of a symbol, loading the symbol's full history from the
+   * repository (and any of its prices still waiting to be stored) once it has been asked for often
+   * enough to be admitted to the cache.
+   *
+   * @param symbol Stock symbol to get the price series for.
+   * @return the cached series, or empty if the symbol is not hot.
+   */
+  private Optional<PriceSeries> getCachedSeries(final String symbol) {
+    Optional<PriceSeries> cached = priceSeriesCache.get(symbol);
+    if (cached.isPresent() || !priceSeriesCache.recordMiss(symbol)) {
+      return cached;
+    }
+    PriceSeries series = PriceSeries.of(symbol, priceStore.findBySymbol(symbol))
+        .merge(historicalPricesWriter.getPending(symbol, LocalDate.MIN, LocalDate.MAX));
+    log.debug("Caching {} stored prices for {}", series.size(), symbol);
+    priceSeriesCache.put(series);
+    return Optional.of(series);
+  }
+
+  private static void putByDate(final Map<LocalDate, IexHistoricalPrices> pricesByDate,
+      final List<IexHistoricalPrices> prices) {
+    for (IexHistoricalPrices price : prices) {
+      pricesByDate.putIfAbsent(LocalDate.parse(price.getDate()), price);
+    }
+  }
+
+  /**
+   * Hands the prices Iex returned to the write-behind writer, and adds them to the cached series
+   * of the symbol if it has one, so they are served from now on even before they are stored.
+   *
+   * @param symbol Stock symbol the prices are for.
+   * @param prices prices returned by Iex.
+   */
+  private void storeMissingPrices(final String symbol, final List<IexHistoricalPrices> prices) {
+    historicalPricesWriter.write(symbol, prices);
+    priceSeriesCache.merge(symbol, prices);
+  }
+
+  private static List<LocalDate> toLocalDates(final List<String> dates) {
+    return dates.stream()
+        .map(date -> LocalDate.parse(date, inFormatter))
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Check if the exchange trades on the date, i.e. it is neither a weekend nor a holiday.
+   * @param date date (string formatted YYYYMMDD) we are considering
+   * @return boolean: true if the date is a trading day, false otherwise
+   */
+  public boolean isTradingDay(final String date) {
+    return tradingCalendar.isTradingDay(LocalDate.parse(date, inFormatter));
   }
 
   /**
    * Converts a range string into a list of dates (string) in YYYYMMDD format.
-   * Will ignore weekend dates. Later, will need to also remove bank holidays.
+   * Only trading days are listed; weekends and exchange holidays are left out.
    *
    * @param range The range of time we are interested. Input options are:
    *      - "5y", "2m", "7d": x number of years(y)/months(m)/days(d)
@@ -153,14 +558,8 @@ public class IexService {
       }
     }
 
-    // Predicate for checking on weekends
-    Predicate<LocalDate> isWeekend = date -> date.getDayOfWeek() == DayOfWeek.SATURDAY
-        || date.getDayOfWeek() == DayOfWeek.SUNDAY;
-
     // List of Business Days
-    List<LocalDate> businessDays = startDate.datesUntil(endDate)
-        .filter(isWeekend.negate())
-        .collect(Collectors.toList());
+    List<LocalDate> businessDays = tradingCalendar.tradingDays(startDate, endDate);
 
     // Convert to list of strings in proper format
     List<String> dateList = new ArrayList<>();
@@ -176,25 +575,32 @@ public class IexService {
    *
    * @param symbol Stock symbol to get the historical price for.
    * @param date Input date (formatted YYYYMMDD) to get price data for.
-   *      Note: We will convert this into YYYY-MM-DD format for repository search.
-   *      - Format of Iex API output
-   * @return a list (length = 1) of IexHistoricalPrices objects.
+   * @return the IexHistoricalPrices object, or empty if Iex has no price for the date.
    */
-  public IexHistoricalPrices getHistoricalPriceBySymbolAndDate(
+  public Optional<IexHistoricalPrices> getHistoricalPriceBySymbolAndDate(
       final String symbol, final String date) {
-    //First, try the database
-    IexHistoricalPricesDB dbMatch =
-        repository.findBySymbolAndDate(symbol, convertDateFormatToOutput(date));
+    LocalDate localDate = LocalDate.parse(date, inFormatter);
+    //First, try the cached series of the symbol, then the prices waiting to be stored, and then
+    //the database
+    Optional<PriceSeries> series = priceSeriesCache.get(symbol);
+    int index = series.map(cached -> cached.indexOf(localDate)).orElse(-1);
+    if (index >= 0) {
+      return Optional.of(series.get().toPrices(index));
+    }
+    List<IexHistoricalPrices> pending =
+        historicalPricesWriter.getPending(symbol, localDate, localDate);
+    if (!pending.isEmpty()) {
+      return Optional.of(pending.get(0));
+    }
+    IexHistoricalPricesDB dbMatch = priceStore.findBySymbolAndDate(symbol, localDate);
 
     if (dbMatch != null) {
-      return new IexHistoricalPrices(dbMatch);
+      return Optional.of(new IexHistoricalPrices(dbMatch));
     } else {
       //If not in database, call from Iex, insert into database, and return
-      List<IexHistoricalPrices> call = iexClient.getHistoricalPricesForSymbolByDate(symbol, date);
-      if (!call.isEmpty()) {
-        repository.save(new IexHistoricalPricesDB(call.get(0)));
-      }
-      return call.get(0);
+      List<IexHistoricalPrices> call = fetchDateUnlessKnownEmpty(symbol, date);
+      storeMissingPrices(symbol, call);
+      return call.stream().findFirst();
     }
   }
 
@@ -224,9 +630,7 @@ public class IexService {
     List<IexHistoricalPrices> pricesFromIexApi
         = getFromIex(symbol, range, date);
 
-    for (IexHistoricalPrices entity : pricesFromIexApi) {
-      repository.save(new IexHistoricalPricesDB(entity));
-    }
+    storeMissingPrices(symbol, pricesFromIexApi);
     return pricesFromIexApi;
   }
 
@@ -244,13 +648,13 @@ public class IexService {
     public List<IexHistoricalPrices> getFromIex(final String symbol, final String range,
         final String date) {
       if (range == null && date == null) {
-        return iexClient.getHistoricalPricesForSymbolByRange(symbol, "1m");
+        return fetchByRange(symbol, "1m");
       } else if (date == null) {
         // call precedence is given to date over range
-        return iexClient.getHistoricalPricesForSymbolByRange(symbol, range);
+        return fetchByRange(symbol, range);
       } else {
-        if (!isDateWeekend(date)) {
-          return iexClient.getHistoricalPricesForSymbolByDate(symbol, date);
+        if (isTradingDay(date)) {
+          return fetchDateUnlessKnownEmpty(symbol, date);
         } else {
           return Collections.emptyList();
         }
@@ -258,14 +662,15 @@ public class IexService {
     }
 
   /**
-   * Checks in database if there are any entries with the stock.
+   * Checks if there are any entries with the stock, stored or waiting to be, without querying the
+   * database.
    *
    * @param symbol Stock symbol to get historical price for
    *
    * @return true if there is an entry of a stock in the database, false otherwise
    */
   public boolean isSymbolInDatabase(final String symbol) {
-    return repository.existsBySymbol(symbol);
+    return storedSymbolIndex.contains(symbol) || historicalPricesWriter.hasPending(symbol);
   }
 
 }
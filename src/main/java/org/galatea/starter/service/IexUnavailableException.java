@@ -0,0 +1,22 @@
+package org.galatea.starter.service;
+
+/**
+ * Thrown when Iex can't be called right now: its circuit breaker is open, too many calls to it
+ * are already in flight, or it kept failing until the retries ran out.
+ */
+public class IexUnavailableException extends RuntimeException {
+
+  /**
+   * Create an IexUnavailableException.
+   */
+  public IexUnavailableException(final String message) {
+    super(message);
+  }
+
+  /**
+   * Create an IexUnavailableException, including its cause.
+   */
+  public IexUnavailableException(final String message, final Throwable cause) {
+    super(message, cause);
+  }
+}
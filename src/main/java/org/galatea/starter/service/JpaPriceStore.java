@@ -0,0 +1,157 @@
+package org.galatea.starter.service;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceContext;
+import org.galatea.starter.domain.HistoricalPricesRepository;
+import org.galatea.starter.domain.IexHistoricalPrices;
+import org.galatea.starter.domain.IexHistoricalPricesDB;
+import org.galatea.starter.domain.PriceStore;
+import org.galatea.starter.domain.SymbolCoverage;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Stores prices in the database through HistoricalPricesRepository. Stored listeners are told of
+ * rows from a Hibernate post insert listener, so rows saved straight through the repository are
+ * seen too. A row inserted in a transaction is told of once that transaction commits, so rows
+ * that are rolled back are never told of.
+ */
+@Component
+@ConditionalOnProperty(name = "iex.price-store.type", havingValue = "jpa", matchIfMissing = true)
+public class JpaPriceStore implements PriceStore {
+
+  private final HistoricalPricesRepository repository;
+  private final TransactionTemplate readOnlyTransaction;
+  private final InsertListener insertListener = new InsertListener();
+
+  @PersistenceContext
+  private EntityManager entityManager;
+
+  /**
+   * Creates a store, and registers its insert listener with the session factory.
+   *
+   * @param repository the repository prices are stored in.
+   * @param entityManagerFactory the factory of the sessions whose inserts are listened to.
+   * @param transactionManager the transaction manager the repository stream runs in.
+   */
+  public JpaPriceStore(final HistoricalPricesRepository repository,
+      final EntityManagerFactory entityManagerFactory,
+      final PlatformTransactionManager transactionManager) {
+    this.repository = repository;
+    this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+    this.readOnlyTransaction.setReadOnly(true);
+    entityManagerFactory.unwrap(SessionFactoryImplementor.class).getServiceRegistry()
+        .getService(EventListenerRegistry.class)
+        .appendListeners(EventType.POST_INSERT, insertListener);
+  }
+
+  @Override
+  public IexHistoricalPricesDB findBySymbolAndDate(final String symbol, final LocalDate date) {
+    return repository.findBySymbolAndDate(symbol, date);
+  }
+
+  @Override
+  public List<IexHistoricalPricesDB> findBySymbolAndDateBetween(final String symbol,
+      final LocalDate startDate, final LocalDate endDate) {
+    return repository.findBySymbolAndDateBetweenOrderByDateAsc(symbol, startDate, endDate);
+  }
+
+  @Override
+  public List<IexHistoricalPricesDB> findBySymbol(final String symbol) {
+    return repository.findBySymbolOrderByDateAsc(symbol);
+  }
+
+  @Override
+  public List<LocalDate> findDatesBySymbolAndDateBetween(final String symbol,
+      final LocalDate startDate, final LocalDate endDate) {
+    return repository.findDatesBySymbolAndDateBetween(symbol, startDate, endDate);
+  }
+
+  @Override
+  public void forEachBySymbolAndDateBetween(final String symbol, final LocalDate startDate,
+      final LocalDate endDate, final Consumer<IexHistoricalPrices> consumer) {
+    readOnlyTransaction.execute(status -> {
+      try (Stream<IexHistoricalPricesDB> stored = repository
+          .streamBySymbolAndDateBetweenOrderByDateAsc(symbol, startDate, endDate)) {
+        stored.forEach(entity -> {
+          consumer.accept(new IexHistoricalPrices(entity));
+          // Nothing is read twice, so don't let the persistence context grow with the stream
+          entityManager.detach(entity);
+        });
+      }
+      return null;
+    });
+  }
+
+  @Override
+  public List<SymbolCoverage> findCoverageOfEverySymbol() {
+    return repository.findCoverageOfEverySymbol();
+  }
+
+  @Override
+  public void saveAll(final Collection<IexHistoricalPricesDB> entities) {
+    repository.saveAll(entities);
+  }
+
+  @Override
+  public void addStoredListener(final BiConsumer<String, LocalDate> listener) {
+    insertListener.listeners.add(listener);
+  }
+
+  /**
+   * Tells the stored listeners of every committed IexHistoricalPricesDB row.
+   */
+  private static final class InsertListener implements PostInsertEventListener {
+
+    private final transient List<BiConsumer<String, LocalDate>> listeners =
+        new CopyOnWriteArrayList<>();
+
+    @Override
+    public void onPostInsert(final PostInsertEvent event) {
+      if (event.getEntity() instanceof IexHistoricalPricesDB) {
+        IexHistoricalPricesDB price = (IexHistoricalPricesDB) event.getEntity();
+        if (price.getDate() == null) {
+          return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+          TransactionSynchronizationManager.registerSynchronization(
+              new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                  tell(price);
+                }
+              });
+        } else {
+          tell(price);
+        }
+      }
+    }
+
+    private void tell(final IexHistoricalPricesDB price) {
+      listeners.forEach(listener -> listener.accept(price.getSymbol(), price.getDate()));
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(final EntityPersister persister) {
+      return false;
+    }
+  }
+}
@@ -0,0 +1,198 @@
+package org.galatea.starter.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.domain.IexLastTradedPrice;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Collects the symbols asked for by concurrent last traded price requests into batches, and makes
+ * one Iex call per batch instead of one per request. A batch is sent once the first symbol in it
+ * has waited windowMs, or as soon as it holds maxBatchSize symbols; a symbol already waiting in a
+ * batch is shared rather than added twice. Each caller then gets back the prices of its own
+ * symbols.
+ *
+ * <p>Batches are sent with the non-blocking Iex client, so no thread waits on Iex; the threads
+ * only close and send the batches.
+ */
+@Slf4j
+@Component
+public class LastTradedPriceBatcher implements DisposableBean {
+
+  private final IexAsyncClient iexAsyncClient;
+  private final long windowMs;
+  private final int maxBatchSize;
+  private final ScheduledExecutorService scheduler;
+
+  private final Object lock = new Object();
+  private Batch current = new Batch();
+
+  /**
+   * Creates a batcher.
+   *
+   * @param iexAsyncClient the client the batches are sent with.
+   * @param windowMs how long the first symbol of a batch waits for others to join it.
+   * @param maxBatchSize the most symbols sent in one call.
+   * @param threads the number of threads sending batches.
+   */
+  public LastTradedPriceBatcher(final IexAsyncClient iexAsyncClient,
+      @Value("${iex.last-traded-price.window-ms}") final long windowMs,
+      @Value("${iex.last-traded-price.max-batch-size}") final int maxBatchSize,
+      @Value("${iex.last-traded-price.threads}") final int threads) {
+    this.iexAsyncClient = iexAsyncClient;
+    this.windowMs = windowMs;
+    this.maxBatchSize = maxBatchSize;
+    this.scheduler = Executors.newScheduledThreadPool(threads,
+        new CustomizableThreadFactory("iex-last-traded-price-"));
+  }
+
+  /**
+   * Get the last traded price of each symbol, as part of the next batch sent to Iex.
+   *
+   * @param symbols the symbols to get a last traded price for, in any case.
+   * @return the last traded price of each symbol Iex knows, in the order they were asked for.
+   */
+  public List<IexLastTradedPrice> getLastTradedPrices(final List<String> symbols) {
+    try {
+      return getLastTradedPricesAsync(symbols).toCompletableFuture().join();
+    } catch (CompletionException e) {
+      // Rethrow what the Iex call threw, as if it had been made by this caller
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Get the last traded price of each symbol, as part of the next batch sent to Iex, without
+   * blocking.
+   *
+   * @param symbols the symbols to get a last traded price for, in any case.
+   * @return a stage completed with the last traded price of each symbol Iex knows, in the order
+   *     they were asked for, once every batch they were sent in has been answered.
+   */
+  public CompletionStage<List<IexLastTradedPrice>> getLastTradedPricesAsync(
+      final List<String> symbols) {
+    Map<String, CompletableFuture<Optional<IexLastTradedPrice>>> futures = new LinkedHashMap<>();
+    List<Batch> fullBatches = new ArrayList<>();
+    synchronized (lock) {
+      for (String symbol : symbols) {
+        String key = symbol.trim().toUpperCase(Locale.ROOT);
+        if (!key.isEmpty() && !futures.containsKey(key)) {
+          futures.put(key, join(key, fullBatches));
+        }
+      }
+    }
+    for (Batch batch : fullBatches) {
+      scheduler.execute(() -> send(batch));
+    }
+
+    return CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0]))
+        .thenApply(done -> {
+          List<IexLastTradedPrice> prices = new ArrayList<>();
+          for (CompletableFuture<Optional<IexLastTradedPrice>> future : futures.values()) {
+            future.join().ifPresent(prices::add);
+          }
+          return prices;
+        });
+  }
+
+  @Override
+  public void destroy() {
+    scheduler.shutdownNow();
+  }
+
+  /**
+   * Add a symbol to the current batch, or get its future if it is already waiting there. Must be
+   * called while holding the lock.
+   */
+  private CompletableFuture<Optional<IexLastTradedPrice>> join(final String symbol,
+      final List<Batch> fullBatches) {
+    CompletableFuture<Optional<IexLastTradedPrice>> future = current.prices.get(symbol);
+    if (future != null) {
+      return future;
+    }
+
+    Batch batch = current;
+    if (batch.prices.isEmpty()) {
+      scheduler.schedule(() -> sendIfOpen(batch), windowMs, TimeUnit.MILLISECONDS);
+    }
+    future = new CompletableFuture<>();
+    batch.prices.put(symbol, future);
+    if (batch.prices.size() >= maxBatchSize) {
+      // Send it right away rather than waiting for the window to end
+      batch.closed = true;
+      fullBatches.add(batch);
+      current = new Batch();
+    }
+    return future;
+  }
+
+  private void sendIfOpen(final Batch batch) {
+    synchronized (lock) {
+      if (batch.closed) {
+        return;
+      }
+      batch.closed = true;
+      if (current == batch) {
+        current = new Batch();
+      }
+    }
+    send(batch);
+  }
+
+  private void send(final Batch batch) {
+    List<String> symbols = new ArrayList<>(batch.prices.keySet());
+    log.debug("Getting the last traded price of {} symbol(s) in one call", symbols.size());
+    CompletableFuture<List<IexLastTradedPrice>> call;
+    try {
+      call = iexAsyncClient.getLastTradedPriceForSymbols(symbols);
+    } catch (RuntimeException | Error e) {
+      call = CompletableFuture.failedFuture(e);
+    }
+    call.whenComplete((prices, error) -> {
+      if (error != null) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null
+            ? error.getCause() : error;
+        batch.prices.values().forEach(future -> future.completeExceptionally(cause));
+        return;
+      }
+      Map<String, IexLastTradedPrice> pricesBySymbol = new HashMap<>();
+      if (prices != null) {
+        for (IexLastTradedPrice price : prices) {
+          if (price.getSymbol() != null) {
+            pricesBySymbol.put(price.getSymbol().toUpperCase(Locale.ROOT), price);
+          }
+        }
+      }
+      batch.prices.forEach((symbol, future) ->
+          future.complete(Optional.ofNullable(pricesBySymbol.get(symbol))));
+    });
+  }
+
+  /**
+   * The symbols of one call to Iex. Once closed no symbol is added to it.
+   */
+  private static final class Batch {
+
+    private final Map<String, CompletableFuture<Optional<IexLastTradedPrice>>> prices =
+        new LinkedHashMap<>();
+    private boolean closed;
+  }
+}
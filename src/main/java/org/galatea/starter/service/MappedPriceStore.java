@@ -0,0 +1,465 @@
+package org.galatea.starter.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.domain.IexHistoricalPrices;
+import org.galatea.starter.domain.IexHistoricalPricesDB;
+import org.galatea.starter.domain.PriceStore;
+import org.galatea.starter.domain.SymbolCoverage;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Stores prices in one memory mapped file per symbol, so the history survives a restart without a
+ * database server. A file is a 16 byte header (magic, version, row count) followed by fixed width
+ * 44 byte rows (epoch day, then scaled open, high, low and close, then volume) sorted by date, so
+ * a date window is found with a binary search and read straight from the mapping.
+ *
+ * <p>Prices newer than the last stored date, which is what is fetched day to day, are appended:
+ * the rows are written past the end, then the row count in the header, and the mapping is forced
+ * to disk, so a crash loses at most the rows whose count was not written. Older prices (a backfill
+ * further into the past) are merged into the next generation of the file, a new file named with
+ * its generation number, which takes over once it is complete. Writes to a symbol are serialized,
+ * while reads take no lock: each read works on the mapping and row count published when it
+ * started, which a later append never changes and a new generation never touches. The file of an
+ * older generation is deleted once replaced, and its mapping released once no read holds it.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "iex.price-store.type", havingValue = "mapped")
+public class MappedPriceStore implements PriceStore {
+
+  static final int HEADER_BYTES = 16;
+  static final int ROW_BYTES = Integer.BYTES + 5 * Long.BYTES;
+  private static final int MAGIC = 0x49455850;
+  private static final int VERSION = 1;
+  private static final int ROW_COUNT_OFFSET = 8;
+  private static final String SUFFIX = ".prices";
+
+  private final Path directory;
+  private final int growthRows;
+  private final ConcurrentMap<String, SymbolFile> files = new ConcurrentHashMap<>();
+  private final List<BiConsumer<String, LocalDate>> storedListeners = new CopyOnWriteArrayList<>();
+
+  /**
+   * Creates a store, and opens every symbol file already in its directory.
+   *
+   * @param directory the directory the symbol files are kept in; created if missing.
+   * @param growthRows the rows a file is grown by beyond what an append needs.
+   */
+  public MappedPriceStore(@Value("${iex.price-store.directory}") final String directory,
+      @Value("${iex.price-store.growth-rows}") final int growthRows) {
+    this.directory = Paths.get(directory);
+    this.growthRows = Math.max(1, growthRows);
+    Map<String, NavigableMap<Integer, Path>> generations = new TreeMap<>();
+    try {
+      Files.createDirectories(this.directory);
+      try (DirectoryStream<Path> paths = Files.newDirectoryStream(this.directory, "*" + SUFFIX)) {
+        for (Path path : paths) {
+          String fileName = path.getFileName().toString();
+          String name = fileName.substring(0, fileName.length() - SUFFIX.length());
+          // Encoded symbols have no '.', so one separates the generation of the file
+          int dot = name.lastIndexOf('.');
+          String symbol = decode(dot < 0 ? name : name.substring(0, dot));
+          int generation = dot < 0 ? 0 : Integer.parseInt(name.substring(dot + 1));
+          generations.computeIfAbsent(symbol, key -> new TreeMap<>()).put(generation, path);
+        }
+      }
+      for (Map.Entry<String, NavigableMap<Integer, Path>> symbol : generations.entrySet()) {
+        // Older generations are only left behind by a crash before they were deleted
+        Map.Entry<Integer, Path> latest = symbol.getValue().pollLastEntry();
+        for (Path older : symbol.getValue().values()) {
+          Files.delete(older);
+        }
+        files.put(symbol.getKey(), SymbolFile.open(symbol.getKey(), this.directory,
+            latest.getKey(), latest.getValue()));
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not open the price store in " + directory, e);
+    }
+    log.info("Opened the price files of {} symbols in {}", files.size(), this.directory);
+  }
+
+  @Override
+  public IexHistoricalPricesDB findBySymbolAndDate(final String symbol, final LocalDate date) {
+    List<IexHistoricalPricesDB> found = findBySymbolAndDateBetween(symbol, date, date);
+    return found.isEmpty() ? null : found.get(0);
+  }
+
+  @Override
+  public List<IexHistoricalPricesDB> findBySymbolAndDateBetween(final String symbol,
+      final LocalDate startDate, final LocalDate endDate) {
+    List<IexHistoricalPricesDB> found = new ArrayList<>();
+    View view = view(symbol);
+    for (int row = view.lowerBound(startDate.toEpochDay()), end = view.upperBound(endDate);
+        row < end; row++) {
+      found.add(view.toEntity(symbol, row));
+    }
+    return found;
+  }
+
+  @Override
+  public List<IexHistoricalPricesDB> findBySymbol(final String symbol) {
+    return findBySymbolAndDateBetween(symbol, LocalDate.MIN, LocalDate.MAX);
+  }
+
+  @Override
+  public List<LocalDate> findDatesBySymbolAndDateBetween(final String symbol,
+      final LocalDate startDate, final LocalDate endDate) {
+    List<LocalDate> found = new ArrayList<>();
+    View view = view(symbol);
+    for (int row = view.lowerBound(startDate.toEpochDay()), end = view.upperBound(endDate);
+        row < end; row++) {
+      found.add(LocalDate.ofEpochDay(view.epochDay(row)));
+    }
+    return found;
+  }
+
+  @Override
+  public void forEachBySymbolAndDateBetween(final String symbol, final LocalDate startDate,
+      final LocalDate endDate, final Consumer<IexHistoricalPrices> consumer) {
+    View view = view(symbol);
+    for (int row = view.lowerBound(startDate.toEpochDay()), end = view.upperBound(endDate);
+        row < end; row++) {
+      // Read from the mapping as the row is handed out, with no entity in between
+      consumer.accept(view.toPrices(symbol, row));
+    }
+  }
+
+  @Override
+  public List<SymbolCoverage> findCoverageOfEverySymbol() {
+    List<SymbolCoverage> coverage = new ArrayList<>();
+    files.forEach((symbol, file) -> {
+      View view = file.view;
+      if (view.rowCount > 0) {
+        coverage.add(new SymbolCoverage(symbol, LocalDate.ofEpochDay(view.epochDay(0)),
+            LocalDate.ofEpochDay(view.epochDay(view.rowCount - 1)), view.rowCount));
+      }
+    });
+    return coverage;
+  }
+
+  @Override
+  public void saveAll(final Collection<IexHistoricalPricesDB> entities) {
+    Map<String, NavigableMap<Long, IexHistoricalPricesDB>> bySymbol = new TreeMap<>();
+    for (IexHistoricalPricesDB entity : entities) {
+      bySymbol.computeIfAbsent(entity.getSymbol(), symbol -> new TreeMap<>())
+          .putIfAbsent(entity.getDate().toEpochDay(), entity);
+    }
+    bySymbol.forEach((symbol, rows) -> {
+      List<IexHistoricalPricesDB> stored = file(symbol).store(rows, growthRows);
+      for (IexHistoricalPricesDB entity : stored) {
+        storedListeners.forEach(listener -> listener.accept(symbol, entity.getDate()));
+      }
+    });
+  }
+
+  @Override
+  public void addStoredListener(final BiConsumer<String, LocalDate> listener) {
+    storedListeners.add(listener);
+  }
+
+  private View view(final String symbol) {
+    SymbolFile file = files.get(symbol);
+    return file == null ? View.EMPTY : file.view;
+  }
+
+  private SymbolFile file(final String symbol) {
+    return files.computeIfAbsent(symbol, key -> {
+      try {
+        return SymbolFile.create(symbol, directory);
+      } catch (IOException e) {
+        throw new UncheckedIOException("Could not create the price file of " + symbol, e);
+      }
+    });
+  }
+
+  /**
+   * Turns a symbol into a file name that is the same on every file system: upper case letters,
+   * digits and '-' are kept, and any other character becomes '_' and its four hex digits.
+   */
+  static String encode(final String symbol) {
+    StringBuilder name = new StringBuilder(symbol.length());
+    for (char c : symbol.toCharArray()) {
+      if (c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '-') {
+        name.append(c);
+      } else {
+        name.append('_').append(String.format("%04x", (int) c));
+      }
+    }
+    return name.toString();
+  }
+
+  static String decode(final String name) {
+    StringBuilder symbol = new StringBuilder(name.length());
+    for (int i = 0; i < name.length(); i++) {
+      char c = name.charAt(i);
+      if (c == '_') {
+        symbol.append((char) Integer.parseInt(name.substring(i + 1, i + 5), 16));
+        i += 4;
+      } else {
+        symbol.append(c);
+      }
+    }
+    return symbol.toString();
+  }
+
+  /**
+   * A mapping of a symbol file and the number of rows it held when it was published.
+   */
+  private static final class View {
+
+    private static final View EMPTY = new View(null, 0);
+
+    private final MappedByteBuffer buffer;
+    private final int rowCount;
+
+    private View(final MappedByteBuffer buffer, final int rowCount) {
+      this.buffer = buffer;
+      this.rowCount = rowCount;
+    }
+
+    private long epochDay(final int row) {
+      return buffer.getInt(HEADER_BYTES + row * ROW_BYTES);
+    }
+
+    private long column(final int row, final int column) {
+      return buffer.getLong(HEADER_BYTES + row * ROW_BYTES + Integer.BYTES + column * Long.BYTES);
+    }
+
+    /**
+     * Find the first row dated on or after an epoch day.
+     */
+    private int lowerBound(final long epochDay) {
+      int low = 0;
+      int high = rowCount;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (epochDay(mid) < epochDay) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+
+    private int upperBound(final LocalDate endDate) {
+      return lowerBound(endDate.toEpochDay() + 1);
+    }
+
+    private IexHistoricalPricesDB toEntity(final String symbol, final int row) {
+      return IexHistoricalPricesDB.ofScaled(symbol, column(row, 3), column(row, 1),
+          column(row, 2), column(row, 0), column(row, 4), LocalDate.ofEpochDay(epochDay(row)));
+    }
+
+    private IexHistoricalPrices toPrices(final String symbol, final int row) {
+      return IexHistoricalPrices.ofScaled(symbol, column(row, 3), column(row, 1),
+          column(row, 2), column(row, 0), column(row, 4),
+          LocalDate.ofEpochDay(epochDay(row)).toString());
+    }
+  }
+
+  /**
+   * The file of one symbol, with its latest published view. The generation and path change only
+   * under the lock of the file, as a merge moves on to a new generation.
+   */
+  private static final class SymbolFile {
+
+    private final String symbol;
+    private final Path directory;
+    private int generation;
+    private Path path;
+    private volatile View view;
+
+    private SymbolFile(final String symbol, final Path directory, final int generation,
+        final Path path, final View view) {
+      this.symbol = symbol;
+      this.directory = directory;
+      this.generation = generation;
+      this.path = path;
+      this.view = view;
+    }
+
+    static SymbolFile open(final String symbol, final Path directory, final int generation,
+        final Path path) throws IOException {
+      MappedByteBuffer buffer = map(path, Files.size(path));
+      if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC
+          || buffer.getInt(Integer.BYTES) != VERSION) {
+        throw new IllegalStateException(path + " is not a price file of version " + VERSION);
+      }
+      long rowCount = buffer.getLong(ROW_COUNT_OFFSET);
+      if (rowCount < 0 || HEADER_BYTES + rowCount * ROW_BYTES > buffer.capacity()) {
+        throw new IllegalStateException(path + " holds fewer rows than its header says");
+      }
+      return new SymbolFile(symbol, directory, generation, path, new View(buffer, (int) rowCount));
+    }
+
+    static SymbolFile create(final String symbol, final Path directory) throws IOException {
+      Path path = path(directory, symbol, 0);
+      MappedByteBuffer buffer = map(path, HEADER_BYTES);
+      buffer.putInt(0, MAGIC);
+      buffer.putInt(Integer.BYTES, VERSION);
+      buffer.putLong(ROW_COUNT_OFFSET, 0);
+      buffer.force();
+      return new SymbolFile(symbol, directory, 0, path, new View(buffer, 0));
+    }
+
+    /**
+     * Get the path of a generation of the file of a symbol; the first generation has no number.
+     */
+    static Path path(final Path directory, final String symbol, final int generation) {
+      return directory.resolve(encode(symbol) + (generation == 0 ? "" : "." + generation) + SUFFIX);
+    }
+
+    /**
+     * Store the rows whose date is not stored yet.
+     *
+     * @param rows rows of this symbol keyed by epoch day.
+     * @param growthRows the rows the file is grown by beyond what is needed.
+     * @return the rows that were stored.
+     */
+    synchronized List<IexHistoricalPricesDB> store(
+        final NavigableMap<Long, IexHistoricalPricesDB> rows, final int growthRows) {
+      View current = view;
+      List<IexHistoricalPricesDB> added = new ArrayList<>();
+      for (Map.Entry<Long, IexHistoricalPricesDB> row : rows.entrySet()) {
+        int index = current.lowerBound(row.getKey());
+        if (index == current.rowCount || current.epochDay(index) != row.getKey()) {
+          added.add(row.getValue());
+        }
+      }
+      if (added.isEmpty()) {
+        return added;
+      }
+      try {
+        if (current.rowCount == 0 || current.epochDay(current.rowCount - 1)
+            < added.get(0).getDate().toEpochDay()) {
+          view = append(current, added, growthRows);
+        } else {
+          view = replace(current, added);
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException("Could not store the prices of " + symbol, e);
+      }
+      return added;
+    }
+
+    private View append(final View current, final List<IexHistoricalPricesDB> added,
+        final int growthRows) throws IOException {
+      int rowCount = current.rowCount + added.size();
+      MappedByteBuffer buffer = current.buffer;
+      if (HEADER_BYTES + (long) rowCount * ROW_BYTES > buffer.capacity()) {
+        // Grown by more than needed, so appending a day at a time does not remap every time
+        buffer = map(path, HEADER_BYTES + ((long) rowCount + growthRows) * ROW_BYTES);
+      }
+      int position = HEADER_BYTES + current.rowCount * ROW_BYTES;
+      for (IexHistoricalPricesDB row : added) {
+        put(buffer, position, row);
+        position += ROW_BYTES;
+      }
+      // Only now are the rows part of the file
+      buffer.putLong(ROW_COUNT_OFFSET, rowCount);
+      buffer.force();
+      return new View(buffer, rowCount);
+    }
+
+    private View replace(final View current, final List<IexHistoricalPricesDB> added)
+        throws IOException {
+      int rowCount = current.rowCount + added.size();
+      ByteBuffer merged = ByteBuffer.allocate(HEADER_BYTES + rowCount * ROW_BYTES);
+      merged.putInt(0, MAGIC);
+      merged.putInt(Integer.BYTES, VERSION);
+      merged.putLong(ROW_COUNT_OFFSET, rowCount);
+      int from = 0;
+      int to = 0;
+      for (IexHistoricalPricesDB row : added) {
+        for (int end = current.lowerBound(row.getDate().toEpochDay()); from < end; from++, to++) {
+          copyRow(current.buffer, from, merged, to);
+        }
+        put(merged, HEADER_BYTES + to++ * ROW_BYTES, row);
+      }
+      for (; from < current.rowCount; from++, to++) {
+        copyRow(current.buffer, from, merged, to);
+      }
+
+      // The next generation is a new file, so the mapping of the current one, which reads may
+      // still be on, is never written to, truncated or moved
+      Path next = path(directory, symbol, generation + 1);
+      Path copy = next.resolveSibling(next.getFileName() + ".tmp");
+      try (FileChannel channel = FileChannel.open(copy, StandardOpenOption.CREATE,
+          StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+        while (merged.hasRemaining()) {
+          channel.write(merged);
+        }
+        channel.force(true);
+      }
+      // Only a complete file ever has the name of a generation
+      Files.move(copy, next, StandardCopyOption.ATOMIC_MOVE);
+      View replaced = new View(map(next, Files.size(next)), rowCount);
+
+      Path previous = path;
+      generation++;
+      path = next;
+      try {
+        // Its mapping stays valid until the reads holding it are done, and is released with it
+        Files.delete(previous);
+      } catch (IOException e) {
+        // Some file systems refuse to delete a mapped file; it is deleted on the next start
+        log.warn("Could not delete {}, replaced by {}", previous, next, e);
+      }
+      return replaced;
+    }
+
+    private static void put(final ByteBuffer buffer, final int position,
+        final IexHistoricalPricesDB row) {
+      buffer.putInt(position, (int) row.getDate().toEpochDay());
+      int column = position + Integer.BYTES;
+      buffer.putLong(column, row.getScaledOpen());
+      buffer.putLong(column + Long.BYTES, row.getScaledHigh());
+      buffer.putLong(column + 2 * Long.BYTES, row.getScaledLow());
+      buffer.putLong(column + 3 * Long.BYTES, row.getScaledClose());
+      buffer.putLong(column + 4 * Long.BYTES, row.getVolume());
+    }
+
+    private static void copyRow(final ByteBuffer from, final int fromRow, final ByteBuffer to,
+        final int toRow) {
+      int source = HEADER_BYTES + fromRow * ROW_BYTES;
+      int target = HEADER_BYTES + toRow * ROW_BYTES;
+      for (int i = 0; i < ROW_BYTES; i += Integer.BYTES) {
+        to.putInt(target + i, from.getInt(source + i));
+      }
+    }
+
+    private static MappedByteBuffer map(final Path path, final long size) throws IOException {
+      try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+          StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+        // Mapping past the end of the file grows it; the mapping outlives the channel
+        return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+      }
+    }
+  }
+}
@@ -0,0 +1,132 @@
+package org.galatea.starter.service;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.domain.IexHistoricalPrices;
+import org.galatea.starter.domain.PriceSeries;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the full stored price series of the most used symbols in memory, so their date windows
+ * can be read without going through the repository. Series are evicted least recently used first
+ * once there are more than maxSymbols of them or they hold more than maxRows rows in total.
+ *
+ * <p>A symbol is only admitted once it has been asked for admitAfter times, so that symbols
+ * requested once do not load their whole history and push the hot ones out.
+ */
+@Slf4j
+@Component
+public class PriceSeriesCache {
+
+  private final int maxSymbols;
+  private final long maxRows;
+  private final int admitAfter;
+
+  // Access ordered, so iteration starts at the least recently used symbol
+  private final LinkedHashMap<String, PriceSeries> seriesBySymbol =
+      new LinkedHashMap<>(16, 0.75f, true);
+  private final LinkedHashMap<String, Integer> missesBySymbol =
+      new LinkedHashMap<>(16, 0.75f, true);
+  private long rows;
+
+  /**
+   * Creates a cache.
+   *
+   * @param maxSymbols the most symbols to keep series for.
+   * @param maxRows the most rows to keep across every series.
+   * @param admitAfter the number of times a symbol must be asked for before its series is kept.
+   */
+  public PriceSeriesCache(
+      @Value("${iex.price-cache.max-symbols}") final int maxSymbols,
+      @Value("${iex.price-cache.max-rows}") final long maxRows,
+      @Value("${iex.price-cache.admit-after}") final int admitAfter) {
+    this.maxSymbols = maxSymbols;
+    this.maxRows = maxRows;
+    this.admitAfter = admitAfter;
+  }
+
+  /**
+   * Get the cached series of a symbol.
+   *
+   * @param symbol the symbol to look for.
+   * @return the series, or empty if it is not cached.
+   */
+  public synchronized Optional<PriceSeries> get(final String symbol) {
+    return Optional.ofNullable(seriesBySymbol.get(symbol));
+  }
+
+  /**
+   * Record that a symbol was asked for but not cached, and decide whether its series should be
+   * loaded into the cache.
+   *
+   * @param symbol the symbol that was asked for.
+   * @return true once the symbol has been asked for often enough to be admitted.
+   */
+  public synchronized boolean recordMiss(final String symbol) {
+    int misses = missesBySymbol.merge(symbol, 1, Integer::sum);
+    if (misses >= admitAfter) {
+      missesBySymbol.remove(symbol);
+      return true;
+    }
+    // Only the recent misses matter for admission, so forget the oldest ones
+    if (missesBySymbol.size() > 4 * maxSymbols) {
+      missesBySymbol.remove(missesBySymbol.keySet().iterator().next());
+    }
+    return false;
+  }
+
+  /**
+   * Cache the series of a symbol, replacing any series already cached for it.
+   *
+   * @param series the full stored series of the symbol.
+   */
+  public synchronized void put(final PriceSeries series) {
+    if (series.size() > maxRows) {
+      // Never leave an older copy behind, since it would be missing rows that are stored
+      log.debug("Not caching {} rows for {}", series.size(), series.getSymbol());
+      PriceSeries previous = seriesBySymbol.remove(series.getSymbol());
+      rows -= previous == null ? 0 : previous.size();
+      return;
+    }
+    PriceSeries previous = seriesBySymbol.put(series.getSymbol(), series);
+    rows += series.size() - (previous == null ? 0 : previous.size());
+    evict();
+  }
+
+  /**
+   * Add newly stored prices to the cached series of a symbol. Nothing happens if the symbol is not
+   * cached, since its series will be read in full when it is admitted.
+   *
+   * @param symbol the symbol the prices are for.
+   * @param prices the prices that were stored.
+   */
+  public synchronized void merge(final String symbol,
+      final Collection<IexHistoricalPrices> prices) {
+    PriceSeries cached = seriesBySymbol.get(symbol);
+    if (cached != null && !prices.isEmpty()) {
+      put(cached.merge(prices));
+    }
+  }
+
+  /**
+   * Get the number of rows held across every cached series.
+   *
+   * @return the number of rows.
+   */
+  public synchronized long rowCount() {
+    return rows;
+  }
+
+  private void evict() {
+    while (seriesBySymbol.size() > maxSymbols || rows > maxRows) {
+      Map.Entry<String, PriceSeries> eldest = seriesBySymbol.entrySet().iterator().next();
+      seriesBySymbol.remove(eldest.getKey());
+      rows -= eldest.getValue().size();
+      log.debug("Evicted the price series of {}", eldest.getKey());
+    }
+  }
+}
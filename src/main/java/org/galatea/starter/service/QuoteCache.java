@@ -0,0 +1,86 @@
+package org.galatea.starter.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Clock;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.Value;
+import org.galatea.starter.domain.IexLastTradedPrice;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the last traded price most recently fetched from Iex for each symbol, with the time it
+ * was fetched. A request states how old a quote it accepts, so identical requests within that
+ * bound are answered without calling Iex. Freshness is measured from when the quote was fetched
+ * rather than from its trade time, since the trade time of a quiet symbol (or of any symbol
+ * outside market hours) can be old while still being the latest there is.
+ *
+ * <p>Only symbols Iex returned a quote for are kept, so the cache is bounded by the number of
+ * symbols Iex supports. Hits and misses are counted in the iex.quote.cache meter.
+ */
+@Component
+public class QuoteCache {
+
+  private final Clock clock;
+  private final Map<String, CachedQuote> quotes = new ConcurrentHashMap<>();
+  private final Counter hits;
+  private final Counter misses;
+
+  /**
+   * Creates a cache.
+   *
+   * @param clock the clock quotes are timed with.
+   * @param meterRegistry the registry the hit and miss counters are registered with.
+   */
+  public QuoteCache(final Clock clock, final MeterRegistry meterRegistry) {
+    this.clock = clock;
+    this.hits = Counter.builder("iex.quote.cache").tag("result", "hit")
+        .description("Last traded prices served from the quote cache")
+        .register(meterRegistry);
+    this.misses = Counter.builder("iex.quote.cache").tag("result", "miss")
+        .description("Last traded prices that had to be fetched from Iex")
+        .register(meterRegistry);
+  }
+
+  /**
+   * Get the cached quote of a symbol if it is recent enough, counting a hit or a miss.
+   *
+   * @param symbol the symbol to get the quote of, in any case.
+   * @param maxAgeMs the oldest quote accepted, in milliseconds since it was fetched.
+   * @return the quote, or empty if there is none fetched within maxAgeMs.
+   */
+  public Optional<IexLastTradedPrice> get(final String symbol, final long maxAgeMs) {
+    CachedQuote cached = quotes.get(symbol.toUpperCase(Locale.ROOT));
+    if (cached != null && clock.millis() - cached.getFetchedAtMillis() <= maxAgeMs) {
+      hits.increment();
+      return Optional.of(cached.getQuote());
+    }
+    misses.increment();
+    return Optional.empty();
+  }
+
+  /**
+   * Cache quotes that were just fetched from Iex.
+   *
+   * @param fetched the quotes Iex returned.
+   */
+  public void putAll(final List<IexLastTradedPrice> fetched) {
+    long now = clock.millis();
+    for (IexLastTradedPrice quote : fetched) {
+      if (quote.getSymbol() != null) {
+        quotes.put(quote.getSymbol().toUpperCase(Locale.ROOT), new CachedQuote(quote, now));
+      }
+    }
+  }
+
+  @Value
+  private static class CachedQuote {
+
+    private IexLastTradedPrice quote;
+    private long fetchedAtMillis;
+  }
+}
@@ -0,0 +1,156 @@
+package org.galatea.starter.service;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import javax.validation.ConstraintViolationException;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.domain.SettlementJob;
+import org.galatea.starter.domain.SettlementJob.Status;
+import org.galatea.starter.domain.TradeAgreement;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Spawns the missions of posted agreements in the background, so that a large post is answered
+ * as soon as it is queued rather than once every mission is stored. Jobs run on a bounded
+ * executor: once its queue is full, submissions are turned away instead of piling up, holding
+ * their agreements in memory. The state of each job is kept in memory, for at least retentionMs
+ * after it finished, so it is lost on restart.
+ */
+@Slf4j
+@Service
+public class SettlementJobService {
+
+  private final SettlementService settlementService;
+  private final TaskExecutor executor;
+  private final Clock clock;
+  private final long retentionMs;
+  private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+
+  /**
+   * Creates the service.
+   *
+   * @param settlementService the service the missions of each job are spawned with.
+   * @param executor the bounded executor jobs run on.
+   * @param clock the clock the end of jobs is timed with.
+   * @param retentionMs how long the state of a finished job is kept at least.
+   */
+  public SettlementJobService(final SettlementService settlementService,
+      @Qualifier("settlementJobExecutor") final TaskExecutor executor, final Clock clock,
+      @Value("${settlement.jobs.retention-ms}") final long retentionMs) {
+    this.settlementService = settlementService;
+    this.executor = executor;
+    this.clock = clock;
+    this.retentionMs = retentionMs;
+  }
+
+  /**
+   * Queue a job spawning the missions of agreements. The agreements are validated once, before
+   * the job is queued, as they are for a synchronous post, and then stored in batches, as by
+   * SettlementService.spawnValidatedMissions, so the job reports progress as it goes.
+   *
+   * @param agreements the agreements used to generate missions.
+   * @return the job, as queued.
+   * @throws ConstraintViolationException if an agreement is not valid; no job is queued.
+   * @throws RejectedExecutionException if too many jobs are queued already.
+   */
+  public SettlementJob submit(final List<TradeAgreement> agreements) {
+    settlementService.validate(agreements);
+    Job job = new Job(UUID.randomUUID().toString(), agreements.size());
+    jobs.put(job.id, job);
+    try {
+      executor.execute(() -> run(job, agreements));
+    } catch (RejectedExecutionException e) {
+      jobs.remove(job.id);
+      throw e;
+    }
+    log.info("Queued settlement job {} of {} agreement(s)", job.id, agreements.size());
+
+    return job.snapshot();
+  }
+
+  /**
+   * Get the current state of a job.
+   *
+   * @param id the id of the job.
+   * @return the job, or empty if there is no such job or it finished more than retentionMs ago.
+   */
+  public Optional<SettlementJob> getJob(final String id) {
+    return Optional.ofNullable(jobs.get(id)).map(Job::snapshot);
+  }
+
+  /**
+   * Forget the jobs that finished more than retentionMs ago. Runs on a schedule.
+   */
+  @Scheduled(initialDelayString = "${settlement.jobs.retention-ms}",
+      fixedDelayString = "${settlement.jobs.retention-ms}")
+  public void evictFinished() {
+    long finishedBefore = clock.millis() - retentionMs;
+    jobs.values().removeIf(job -> job.isFinishedBefore(finishedBefore));
+  }
+
+  private void run(final Job job, final List<TradeAgreement> agreements) {
+    job.start();
+    try {
+      // Validated by submit already
+      long missions = settlementService.spawnValidatedMissions(agreements.iterator(),
+          job::addMissionIds);
+      log.info("Settlement job {} spawned {} mission(s)", job.id, missions);
+      job.finish(Status.SUCCEEDED, null, clock.millis());
+    } catch (RuntimeException e) {
+      log.error("Settlement job {} failed", job.id, e);
+      job.finish(Status.FAILED, "An internal application error occurred.", clock.millis());
+    }
+  }
+
+  /**
+   * The changing state of a job, updated by the thread running it and read by status requests.
+   */
+  private static final class Job {
+
+    private final String id;
+    private final int agreementCount;
+    private final List<Long> missionIds = new ArrayList<>();
+    private Status status = Status.QUEUED;
+    private String error;
+    private long finishedAtMillis;
+
+    private Job(final String id, final int agreementCount) {
+      this.id = id;
+      this.agreementCount = agreementCount;
+    }
+
+    private synchronized void start() {
+      status = Status.RUNNING;
+    }
+
+    private synchronized void addMissionIds(final List<Long> spawned) {
+      missionIds.addAll(spawned);
+    }
+
+    private synchronized void finish(final Status finalStatus, final String finalError,
+        final long atMillis) {
+      status = finalStatus;
+      error = finalError;
+      finishedAtMillis = atMillis;
+    }
+
+    private synchronized boolean isFinishedBefore(final long millis) {
+      return (status == Status.SUCCEEDED || status == Status.FAILED) && finishedAtMillis < millis;
+    }
+
+    private synchronized SettlementJob snapshot() {
+      return SettlementJob.builder().id(id).status(status).agreementCount(agreementCount)
+          .missionIds(new ArrayList<>(missionIds)).error(error).build();
+    }
+  }
+}
@@ -2,25 +2,34 @@ package org.galatea.starter.service;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
-import javax.validation.Valid;
+import javax.validation.ConstraintViolation;
+import javax.validation.ConstraintViolationException;
+import javax.validation.Validator;
 import lombok.NonNull;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.sf.aspect4log.Log;
 import org.galatea.starter.domain.SettlementMission;
 import org.galatea.starter.domain.TradeAgreement;
 import org.galatea.starter.domain.rpsy.ISettlementMissionRpsy;
 import org.galatea.starter.entrypoint.exception.EntityNotFoundException;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.validation.annotation.Validated;
 
-@RequiredArgsConstructor
 @Slf4j
 @Log
 @Validated
@@ -33,28 +42,202 @@ public class SettlementService {
   @NonNull
   IAgreementTransformer agreementTransformer;
 
+  @NonNull
+  Validator validator;
+
+  @NonNull
+  Executor executor;
+
+  int chunkSize;
+
+  int ingestBatchSize;
+
   /**
-   * Create missions based on the agreements provided.
+   * Creates the service.
+   *
+   * @param missionrpsy the repository missions are stored in.
+   * @param agreementTransformer transforms each agreement into its mission.
+   * @param validator validates the agreements before any of their missions is stored.
+   * @param executor the executor the chunks of a large spawn are validated and transformed on.
+   * @param chunkSize the most agreements validated and transformed together.
+   * @param ingestBatchSize the agreements of a stream held in memory and stored at once.
+   */
+  public SettlementService(@NonNull final ISettlementMissionRpsy missionrpsy,
+      @NonNull final IAgreementTransformer agreementTransformer,
+      @NonNull final Validator validator,
+      @NonNull @Qualifier("settlementExecutor") final Executor executor,
+      @Value("${settlement.spawn.chunk-size}") final int chunkSize,
+      @Value("${settlement.ingest.batch-size}") final int ingestBatchSize) {
+    if (chunkSize < 1 || ingestBatchSize < 1) {
+      throw new IllegalArgumentException("The chunk and ingest batch sizes must be positive, were "
+          + chunkSize + " and " + ingestBatchSize);
+    }
+    this.missionrpsy = missionrpsy;
+    this.agreementTransformer = agreementTransformer;
+    this.validator = validator;
+    this.executor = executor;
+    this.chunkSize = chunkSize;
+    this.ingestBatchSize = ingestBatchSize;
+  }
+
+  /**
+   * Create missions based on the agreements provided. Up to chunkSize agreements are validated and
+   * transformed on the calling thread; more are split into chunks of chunkSize validated and
+   * transformed in parallel on the executor. Every mission is then stored on the calling thread,
+   * in one transaction, so either all of the missions are stored or none is.
    *
    * @param agreements the agreements used to generate missions
-   * @return the ids of the missions that were created
+   * @return the ids of the missions that were created, in the order of their agreements
+   * @throws ConstraintViolationException if an agreement is not valid
+   */
+  public List<Long> spawnMissions(final List<TradeAgreement> agreements) {
+    return spawnMissions(agreements, this::toMissions);
+  }
+
+  private List<Long> spawnMissions(final List<TradeAgreement> agreements,
+      final Function<List<TradeAgreement>, List<SettlementMission>> toMissions) {
+    List<SettlementMission> missions;
+    if (agreements.size() <= chunkSize) {
+      missions = toMissions.apply(agreements);
+    } else {
+      missions = inParallel(Lists.partition(agreements, chunkSize), toMissions).stream()
+          .flatMap(List::stream)
+          .collect(Collectors.toList());
+    }
+    List<Long> missionIds = saveMissions(missions);
+    log.info("Returning {} mission id(s)", missionIds.size());
+
+    return missionIds;
+  }
+
+  /**
+   * Create missions for agreements read one at a time, such as from a request body, so that only
+   * ingestBatchSize of them are held in memory however many there are. Each batch is spawned as
+   * by spawnMissions(List), and its ids handed on before the next agreement is read. A failure
+   * stops the stream, but leaves the batches already handed on stored.
+   *
+   * @param agreements the agreements, read as they are iterated.
+   * @param spawned told of the ids of the missions of each stored batch, in the order of their
+   *     agreements.
+   * @return the number of missions created.
+   * @throws ConstraintViolationException if an agreement is not valid
+   */
+  public long spawnMissions(final Iterator<TradeAgreement> agreements,
+      final Consumer<List<Long>> spawned) {
+    return spawnMissions(agreements, spawned, this::toMissions);
+  }
+
+  /**
+   * Create missions for agreements read one at a time, as spawnMissions(Iterator, Consumer) does,
+   * but without validating them again, for agreements that already went through validate.
+   *
+   * @param agreements the agreements, read as they are iterated.
+   * @param spawned told of the ids of the missions of each stored batch, in the order of their
+   *     agreements.
+   * @return the number of missions created.
+   */
+  public long spawnValidatedMissions(final Iterator<TradeAgreement> agreements,
+      final Consumer<List<Long>> spawned) {
+    return spawnMissions(agreements, spawned, this::transform);
+  }
+
+  private long spawnMissions(final Iterator<TradeAgreement> agreements,
+      final Consumer<List<Long>> spawned,
+      final Function<List<TradeAgreement>, List<SettlementMission>> toMissions) {
+    long missions = 0;
+    List<TradeAgreement> batch = new ArrayList<>(ingestBatchSize);
+    while (agreements.hasNext()) {
+      batch.add(agreements.next());
+      if (batch.size() == ingestBatchSize || !agreements.hasNext()) {
+        List<Long> missionIds = spawnMissions(batch, toMissions);
+        spawned.accept(missionIds);
+        missions += missionIds.size();
+        batch = new ArrayList<>(ingestBatchSize);
+      }
+    }
+    log.info("Spawned {} mission(s) from a stream of agreements", missions);
+
+    return missions;
+  }
+
+  /**
+   * Check agreements the way spawnMissions does before storing anything, e.g. to turn an invalid
+   * post away before it is queued, and then spawn its missions with spawnValidatedMissions.
+   *
+   * @param agreements the agreements to check.
+   * @throws ConstraintViolationException if an agreement is not valid
    */
-  public Set<Long> spawnMissions(@Valid final List<TradeAgreement> agreements) {
+  public void validate(final List<TradeAgreement> agreements) {
+    Set<ConstraintViolation<TradeAgreement>> violations = new HashSet<>();
+    for (TradeAgreement agreement : agreements) {
+      violations.addAll(validator.validate(agreement));
+    }
+    if (!violations.isEmpty()) {
+      throw new ConstraintViolationException(violations);
+    }
+  }
+
+  /**
+   * Validates agreements and transforms each into its mission.
+   */
+  private List<SettlementMission> toMissions(final List<TradeAgreement> agreements) {
+    validate(agreements);
 
-    // Map each agreement to a mission, collect to a list, and then same in bulk
-    Iterable<SettlementMission> savedMissions = missionrpsy.saveAll(agreements.stream()
-        .map(agr -> agreementTransformer.transform(agr)).collect(Collectors.toList()));
+    return transform(agreements);
+  }
+
+  /**
+   * Transforms each agreement into its mission.
+   */
+  private List<SettlementMission> transform(final List<TradeAgreement> agreements) {
+    return agreements.stream()
+        .map(agr -> agreementTransformer.transform(agr)).collect(Collectors.toList());
+  }
+
+  /**
+   * Saves missions in bulk, in one transaction.
+   *
+   * @return the ids of the saved missions, in the order of the missions.
+   */
+  private List<Long> saveMissions(final List<SettlementMission> missions) {
+    Iterable<SettlementMission> savedMissions = missionrpsy.saveAll(missions);
     log.debug("The following missions were saved: {}", savedMissions);
 
     // We have to do all of this StreamSupport crap since the repository returns an iterable instead
     // of a normal collection
-    Set<Long> idSet = StreamSupport.stream(savedMissions.spliterator(), false)
-        .map(SettlementMission::getId).collect(Collectors.toSet());
-    log.info("Returning {} mission id(s)", idSet.size());
-
-    return idSet;
+    return StreamSupport.stream(savedMissions.spliterator(), false)
+        .map(SettlementMission::getId).collect(Collectors.toList());
   }
 
+  /**
+   * Applies a function to every chunk on the executor, and waits for all of them.
+   *
+   * @return the results, in the order of the chunks.
+   * @throws RuntimeException the failure of the first failed chunk, in the order of the chunks.
+   */
+  private <T, R> List<R> inParallel(final List<T> chunks, final Function<T, R> function) {
+    List<CompletableFuture<R>> futures = chunks.stream()
+        .map(chunk -> CompletableFuture.supplyAsync(() -> function.apply(chunk), executor))
+        .collect(Collectors.toList());
+
+    List<R> results = new ArrayList<>(futures.size());
+    RuntimeException failure = null;
+    for (CompletableFuture<R> future : futures) {
+      // Wait for every chunk, so none is still running once the spawn has failed
+      try {
+        results.add(future.join());
+      } catch (CompletionException e) {
+        if (failure == null) {
+          failure = e.getCause() instanceof RuntimeException
+              ? (RuntimeException) e.getCause() : e;
+        }
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+    return results;
+  }
 
   /**
    * Retrieve a previously-generated settlement mission from the database.
@@ -0,0 +1,112 @@
+package org.galatea.starter.service;
+
+import java.time.LocalDate;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.domain.PriceStore;
+import org.galatea.starter.domain.SymbolCoverage;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the coverage of every symbol with stored prices in memory: its first and last stored
+ * dates and its number of rows. It is loaded from the price store once the application is ready,
+ * with one aggregate query, and then updated as the store tells of each stored row, so whether a
+ * symbol is stored, and whether a window of its dates can have a gap, are answered without a query.
+ * Loading waits for the application runners, HistoricalPricesDateMigration among them, so rows
+ * stored before the date became a typed column are counted with their migrated dates. Until then
+ * the index is empty, so no symbol looks stored, and IexService sends every request straight to
+ * Iex, as for a new symbol; HistoricalPricesWriter skips the returned rows that are already stored.
+ *
+ * <p>The stores tell of a row only once it is committed, and rows are never deleted by the
+ * application, so the index never claims more than is stored: a complete window is served with no
+ * read at all, and must really be complete. It may claim less, which only costs a call to Iex for
+ * a symbol it does not know of, or a read of the price store for a window it does not know to be
+ * complete.
+ */
+@Slf4j
+@Component
+public class StoredSymbolIndex {
+
+  private final PriceStore priceStore;
+  private final TradingCalendar tradingCalendar;
+  private final ConcurrentMap<String, SymbolCoverage> coverageBySymbol = new ConcurrentHashMap<>();
+
+  /**
+   * Creates an empty index.
+   *
+   * @param priceStore the store the coverage is loaded from, and kept up to date with.
+   * @param tradingCalendar the calendar gaps are counted with.
+   */
+  public StoredSymbolIndex(final PriceStore priceStore, final TradingCalendar tradingCalendar) {
+    this.priceStore = priceStore;
+    this.tradingCalendar = tradingCalendar;
+  }
+
+  /**
+   * Load the coverage of every stored symbol, once the application runners have migrated the
+   * stored prices, and keep it up to date with the rows stored from then on.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public void load() {
+    for (SymbolCoverage coverage : priceStore.findCoverageOfEverySymbol()) {
+      coverageBySymbol.put(coverage.getSymbol(), coverage);
+    }
+    log.info("Loaded the stored coverage of {} symbols", coverageBySymbol.size());
+    // Listening only after the load never records a row twice; a row stored in between is missed,
+    // which only leaves its symbol looking less complete than it is
+    priceStore.addStoredListener(this::record);
+  }
+
+  /**
+   * Record that a price of a symbol was stored for a date.
+   *
+   * @param symbol Stock symbol of the stored price.
+   * @param date the date of the stored price.
+   */
+  public void record(final String symbol, final LocalDate date) {
+    coverageBySymbol.compute(symbol, (key, coverage) -> coverage == null
+        ? new SymbolCoverage(symbol, date, date, 1) : coverage.withDate(date));
+  }
+
+  /**
+   * Check whether any price of a symbol is stored.
+   *
+   * @param symbol Stock symbol to check.
+   * @return true if the symbol has stored prices.
+   */
+  public boolean contains(final String symbol) {
+    return coverageBySymbol.containsKey(symbol);
+  }
+
+  /**
+   * Get the coverage of a symbol.
+   *
+   * @param symbol Stock symbol to get the coverage of.
+   * @return the coverage, or empty if no price of the symbol is stored.
+   */
+  public Optional<SymbolCoverage> getCoverage(final String symbol) {
+    return Optional.ofNullable(coverageBySymbol.get(symbol));
+  }
+
+  /**
+   * Check whether a price of a symbol is stored for every trading day of a window. True only when
+   * the window lies within the stored dates of the symbol and those have no gap; a window with a
+   * date Iex has no price for is never complete.
+   *
+   * @param symbol Stock symbol to check.
+   * @param startDate the first date of the window.
+   * @param endDate the last date of the window, included.
+   * @return true if every trading day of the window is stored.
+   */
+  public boolean isComplete(final String symbol, final LocalDate startDate,
+      final LocalDate endDate) {
+    SymbolCoverage coverage = coverageBySymbol.get(symbol);
+    return coverage != null && coverage.spans(startDate, endDate)
+        && coverage.getRowCount() >= tradingCalendar.tradingDaysBetween(
+            coverage.getFirstDate(), coverage.getLastDate().plusDays(1));
+  }
+}
@@ -0,0 +1,198 @@
+package org.galatea.starter.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.domain.IexSymbol;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the list of symbols Iex supports in memory, so requests are served from an immutable
+ * snapshot instead of calling Iex for the whole list each time. The snapshot is loaded on first
+ * use and replaced in the background on a schedule; if a refresh fails the previous snapshot is
+ * kept.
+ *
+ * <p>Each snapshot also holds two sorted indexes of search keys, one of the tickers and one of
+ * every word of the names, so a prefix search is a binary search followed by a scan over the
+ * matching keys that stops as soon as it has found limit symbols.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SymbolDirectory {
+
+  @NonNull
+  private IexClient iexClient;
+
+  private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+
+  /**
+   * Get every symbol Iex supports.
+   *
+   * @return an unmodifiable list of the symbols, in the order Iex returned them.
+   */
+  public List<IexSymbol> getAllSymbols() {
+    return getSnapshot().symbols;
+  }
+
+  /**
+   * Find the symbols whose ticker, or any word of whose name, starts with the query. Exact ticker
+   * matches come first, then ticker prefix matches, then name matches.
+   *
+   * @param query the prefix to look for, in any case.
+   * @param limit the most symbols to return.
+   * @return the matching symbols, best match first.
+   */
+  public List<IexSymbol> search(final String query, final int limit) {
+    String prefix = query.trim().toUpperCase(Locale.ROOT);
+    if (prefix.isEmpty() || limit <= 0) {
+      return Collections.emptyList();
+    }
+    Snapshot current = getSnapshot();
+
+    // Keys are sorted, so an exact ticker match is already first among the ticker matches, and
+    // every ticker match ranks before every name match
+    Set<Integer> ranked = new LinkedHashSet<>();
+    current.tickers.collect(prefix, limit, ranked);
+    if (ranked.size() < limit) {
+      // Every ticker match is in already, so a name match of one of them is skipped
+      current.names.collect(prefix, limit, ranked);
+    }
+
+    List<IexSymbol> results = new ArrayList<>(ranked.size());
+    for (int index : ranked) {
+      results.add(current.symbols.get(index));
+    }
+    return results;
+  }
+
+  /**
+   * Replace the snapshot with a fresh list from Iex. Runs on a schedule once the first snapshot
+   * is due for a refresh; a failure is logged and the current snapshot is kept.
+   */
+  @Scheduled(initialDelayString = "${iex.symbols.refresh-ms}",
+      fixedDelayString = "${iex.symbols.refresh-ms}")
+  public void refresh() {
+    try {
+      snapshot.set(load());
+    } catch (RuntimeException e) {
+      log.warn("Could not refresh the symbol directory, keeping the current one", e);
+    }
+  }
+
+  private Snapshot getSnapshot() {
+    Snapshot current = snapshot.get();
+    if (current != null) {
+      return current;
+    }
+    synchronized (this) {
+      // Only the first of the requests arriving before anything is loaded calls Iex
+      current = snapshot.get();
+      if (current == null) {
+        current = load();
+        snapshot.set(current);
+      }
+      return current;
+    }
+  }
+
+  private Snapshot load() {
+    List<IexSymbol> symbols = iexClient.getAllSymbols();
+    Snapshot loaded = new Snapshot(symbols == null ? Collections.emptyList() : symbols);
+    log.info("Loaded {} symbols into the symbol directory", loaded.symbols.size());
+    return loaded;
+  }
+
+  /**
+   * An immutable list of symbols, with its search indexes.
+   */
+  private static final class Snapshot {
+
+    private final List<IexSymbol> symbols;
+    private final SearchIndex tickers;
+    private final SearchIndex names;
+
+    private Snapshot(final List<IexSymbol> symbols) {
+      this.symbols = Collections.unmodifiableList(new ArrayList<>(symbols));
+
+      List<SearchKey> tickerKeys = new ArrayList<>();
+      List<SearchKey> nameKeys = new ArrayList<>();
+      for (int i = 0; i < this.symbols.size(); i++) {
+        IexSymbol symbol = this.symbols.get(i);
+        if (symbol.getSymbol() != null) {
+          tickerKeys.add(new SearchKey(symbol.getSymbol().toUpperCase(Locale.ROOT), i));
+        }
+        if (symbol.getName() != null) {
+          for (String word : symbol.getName().toUpperCase(Locale.ROOT).split("[^\\p{Alnum}]+")) {
+            if (!word.isEmpty()) {
+              nameKeys.add(new SearchKey(word, i));
+            }
+          }
+        }
+      }
+      this.tickers = new SearchIndex(tickerKeys);
+      this.names = new SearchIndex(nameKeys);
+    }
+  }
+
+  /**
+   * Search keys in ascending order, with the index of the symbol each belongs to.
+   */
+  private static final class SearchIndex {
+
+    private final String[] keys;
+    private final int[] keySymbols;
+
+    private SearchIndex(final List<SearchKey> searchKeys) {
+      // Ties on the key keep the symbols in Iex order
+      searchKeys.sort(Comparator.comparing((SearchKey key) -> key.key)
+          .thenComparingInt(key -> key.symbolIndex));
+
+      this.keys = new String[searchKeys.size()];
+      this.keySymbols = new int[searchKeys.size()];
+      for (int i = 0; i < searchKeys.size(); i++) {
+        keys[i] = searchKeys.get(i).key;
+        keySymbols[i] = searchKeys.get(i).symbolIndex;
+      }
+    }
+
+    /**
+     * Add the symbols of the keys starting with the prefix, in key order, until there are limit.
+     */
+    private void collect(final String prefix, final int limit, final Set<Integer> matches) {
+      for (int i = lowerBound(prefix);
+          i < keys.length && matches.size() < limit && keys[i].startsWith(prefix); i++) {
+        matches.add(keySymbols[i]);
+      }
+    }
+
+    private int lowerBound(final String prefix) {
+      int index = Arrays.binarySearch(keys, prefix);
+      if (index < 0) {
+        return -index - 1;
+      }
+      // The prefix itself may be a key more than once; start at its first occurrence
+      while (index > 0 && keys[index - 1].equals(prefix)) {
+        index--;
+      }
+      return index;
+    }
+  }
+
+  @RequiredArgsConstructor
+  private static final class SearchKey {
+
+    private final String key;
+    private final int symbolIndex;
+  }
+}
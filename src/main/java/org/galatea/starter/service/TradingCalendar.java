@@ -0,0 +1,157 @@
+package org.galatea.starter.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+
+/**
+ * Knows which days the exchange trades on, so that weekends and holidays are never looked up in
+ * the database or requested from Iex. Each year is held as a bit set with one bit per day of the
+ * year, set on trading days, so checking a day is a bit lookup and counting or listing the trading
+ * days of a range scans words of 64 days at a time.
+ *
+ * <p>Holidays are read from a bundled file covering a span of years. Years outside that span are
+ * treated as trading on every weekday.
+ */
+@Slf4j
+@Component
+public class TradingCalendar {
+
+  private final int firstHolidayYear;
+  private final int lastHolidayYear;
+  private final Map<Integer, BitSet> tradingDaysByYear = new ConcurrentHashMap<>();
+
+  /**
+   * Creates a calendar from a holiday file on the classpath: one ISO date per line, with blank
+   * lines and lines starting with # ignored.
+   *
+   * @param holidaysFile the classpath location of the holiday file.
+   */
+  @Autowired
+  public TradingCalendar(@Value("${iex.calendar.holidays-file}") final String holidaysFile) {
+    this(readHolidays(holidaysFile));
+    log.info("Loaded the trading calendar for {} to {} from {}", firstHolidayYear,
+        lastHolidayYear, holidaysFile);
+  }
+
+  /**
+   * Creates a calendar from a list of holidays, which must list every holiday of each year from
+   * the first to the last one given.
+   *
+   * @param holidays the weekdays the exchange is closed on.
+   */
+  public TradingCalendar(final Collection<LocalDate> holidays) {
+    TreeSet<LocalDate> sorted = new TreeSet<>(holidays);
+    this.firstHolidayYear = sorted.isEmpty() ? Integer.MAX_VALUE : sorted.first().getYear();
+    this.lastHolidayYear = sorted.isEmpty() ? Integer.MIN_VALUE : sorted.last().getYear();
+    for (int year = firstHolidayYear; year <= lastHolidayYear; year++) {
+      tradingDaysByYear.put(year, weekdays(year));
+    }
+    for (LocalDate holiday : sorted) {
+      tradingDaysByYear.get(holiday.getYear()).clear(holiday.getDayOfYear() - 1);
+    }
+  }
+
+  /**
+   * Check whether the exchange trades on a day.
+   *
+   * @param date the day to check.
+   * @return true if the day is neither a weekend nor a holiday.
+   */
+  public boolean isTradingDay(final LocalDate date) {
+    return tradingDays(date.getYear()).get(date.getDayOfYear() - 1);
+  }
+
+  /**
+   * Count the trading days in a range.
+   *
+   * @param start the first day of the range.
+   * @param endExclusive the day after the last day of the range.
+   * @return the number of trading days from start, included, to endExclusive, excluded.
+   */
+  public int tradingDaysBetween(final LocalDate start, final LocalDate endExclusive) {
+    int count = 0;
+    for (int year = start.getYear(); year <= endExclusive.getYear(); year++) {
+      BitSet days = tradingDays(year);
+      int from = year == start.getYear() ? start.getDayOfYear() - 1 : 0;
+      int to = year == endExclusive.getYear()
+          ? endExclusive.getDayOfYear() - 1 : Year.of(year).length();
+      if (from < to) {
+        count += days.get(from, to).cardinality();
+      }
+    }
+    return count;
+  }
+
+  /**
+   * List the trading days in a range.
+   *
+   * @param start the first day of the range.
+   * @param endExclusive the day after the last day of the range.
+   * @return the trading days from start, included, to endExclusive, excluded, in ascending order.
+   */
+  public List<LocalDate> tradingDays(final LocalDate start, final LocalDate endExclusive) {
+    List<LocalDate> dates = new ArrayList<>();
+    for (int year = start.getYear(); year <= endExclusive.getYear(); year++) {
+      BitSet days = tradingDays(year);
+      int from = year == start.getYear() ? start.getDayOfYear() - 1 : 0;
+      int to = year == endExclusive.getYear()
+          ? endExclusive.getDayOfYear() - 1 : Year.of(year).length();
+      for (int day = days.nextSetBit(from); day >= 0 && day < to; day = days.nextSetBit(day + 1)) {
+        dates.add(LocalDate.ofYearDay(year, day + 1));
+      }
+    }
+    return dates;
+  }
+
+  private BitSet tradingDays(final int year) {
+    // Years without holiday data trade on every weekday
+    return tradingDaysByYear.computeIfAbsent(year, TradingCalendar::weekdays);
+  }
+
+  private static BitSet weekdays(final int year) {
+    LocalDate first = LocalDate.ofYearDay(year, 1);
+    BitSet days = new BitSet(Year.of(year).length());
+    for (int day = 0; day < Year.of(year).length(); day++) {
+      DayOfWeek dayOfWeek = first.plusDays(day).getDayOfWeek();
+      if (dayOfWeek != DayOfWeek.SATURDAY && dayOfWeek != DayOfWeek.SUNDAY) {
+        days.set(day);
+      }
+    }
+    return days;
+  }
+
+  private static List<LocalDate> readHolidays(final String holidaysFile) {
+    List<LocalDate> holidays = new ArrayList<>();
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+        new ClassPathResource(holidaysFile).getInputStream(), StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        line = line.trim();
+        if (!line.isEmpty() && !line.startsWith("#")) {
+          holidays.add(LocalDate.parse(line));
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not read the holiday file " + holidaysFile, e);
+    }
+    return holidays;
+  }
+}
@@ -0,0 +1,72 @@
+package org.galatea.starter.utils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls for the same key: the first caller runs the call, and every caller
+ * arriving with the same key while it is in flight waits for and shares its result (or
+ * exception) instead of making the call again. Once the call completes the key is forgotten, so
+ * later callers run it afresh; nothing is cached.
+ *
+ * <p>Since the result is shared, callers must not modify it.
+ *
+ * @param <K> the type of key identifying identical calls.
+ * @param <V> the type of result of a call.
+ */
+public class SingleFlight<K, V> {
+
+  private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+  /**
+   * Run the call for a key, or wait for the one already in flight for it.
+   *
+   * @param key identifies the call; equal keys must mean identical calls.
+   * @param call the call to run if none is in flight for the key.
+   * @return the result of the call.
+   */
+  public V execute(final K key, final Supplier<V> call) {
+    CompletableFuture<V> flight = new CompletableFuture<>();
+    CompletableFuture<V> existing = inFlight.putIfAbsent(key, flight);
+    if (existing != null) {
+      return await(existing);
+    }
+
+    try {
+      V result = call.get();
+      flight.complete(result);
+      return result;
+    } catch (RuntimeException | Error e) {
+      flight.completeExceptionally(e);
+      throw e;
+    } finally {
+      inFlight.remove(key, flight);
+    }
+  }
+
+  /**
+   * Get the number of calls in flight.
+   *
+   * @return the number of keys with a call running.
+   */
+  public int inFlightCount() {
+    return inFlight.size();
+  }
+
+  private static <V> V await(final CompletableFuture<V> flight) {
+    try {
+      return flight.join();
+    } catch (CompletionException e) {
+      // Rethrow what the call threw, so waiting callers see the same exception as the first one
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      } else if (e.getCause() instanceof Error) {
+        throw (Error) e.getCause();
+      }
+      throw e;
+    }
+  }
+}
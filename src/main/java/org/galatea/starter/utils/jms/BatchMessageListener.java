@@ -0,0 +1,35 @@
+package org.galatea.starter.utils.jms;
+
+import java.util.Collections;
+import java.util.List;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageListener;
+import org.springframework.jms.support.JmsUtils;
+
+/**
+ * A listener that handles the messages a FuseMessageListenerContainer drains from its destination
+ * together, e.g. to store them with one bulk insert. Outside of a batching container, it is handed
+ * one message at a time.
+ */
+@FunctionalInterface
+public interface BatchMessageListener extends MessageListener {
+
+  /**
+   * Handle messages received together. If this throws on a poison message, one that can never be
+   * handled, the container hands the messages back one at a time, so it does not fail the others.
+   *
+   * @param messages the messages, in the order they were received.
+   * @throws JMSException if a message cannot be read.
+   */
+  void onMessages(List<Message> messages) throws JMSException;
+
+  @Override
+  default void onMessage(final Message message) {
+    try {
+      onMessages(Collections.singletonList(message));
+    } catch (JMSException e) {
+      throw JmsUtils.convertJmsAccessException(e);
+    }
+  }
+}
@@ -5,6 +5,7 @@ import javax.jms.Message;
 import lombok.EqualsAndHashCode;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.jms.config.DefaultJmsListenerContainerFactory;
@@ -20,9 +21,20 @@ public class FuseJmsListenerContainerFactory extends DefaultJmsListenerContainer
   @NonNull
   protected BiConsumer<Message, Exception> failedMessageConsumer;
 
+  // Applied to the containers of BatchMessageListener endpoints; see FuseMessageListenerContainer
+  @Setter
+  private int batchSize = 1;
+
+  @Setter
+  private long batchTimeoutMs;
+
   @Override
   protected DefaultMessageListenerContainer createContainerInstance() {
-    return new FuseMessageListenerContainer(failedMessageConsumer);
+    FuseMessageListenerContainer container =
+        new FuseMessageListenerContainer(failedMessageConsumer);
+    container.setBatchSize(batchSize);
+    container.setBatchTimeoutMs(batchTimeoutMs);
+    return container;
   }
 
 }
@@ -1,17 +1,46 @@
 package org.galatea.starter.utils.jms;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
 import javax.jms.JMSException;
 import javax.jms.Message;
+import javax.jms.MessageConsumer;
 import javax.jms.Session;
+import javax.validation.ValidationException;
 import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 import lombok.SneakyThrows;
 import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.utils.translation.TranslationException;
 import org.springframework.jms.listener.DefaultMessageListenerContainer;
+import org.springframework.jms.support.converter.MessageConversionException;
+import org.springframework.transaction.TransactionStatus;
 
+/**
+ * A listener container that routes messages which fail processing to failedMessageConsumer.
+ *
+ * <p>When its listener is a BatchMessageListener and batchSize is above 1, the container drains up
+ * to batchSize messages per session, waiting at most batchTimeoutMs after the first one, hands
+ * them to the listener together, and then commits the session (or acknowledges the last message)
+ * once for the whole batch. Acknowledging per batch needs a transacted session, which is what
+ * Boot sets up without a transaction manager, or client acknowledgement; with auto acknowledgement
+ * each message is acknowledged as it is received. Any failure of a batch rolls the session back,
+ * so the broker redelivers the whole batch.
+ *
+ * <p>If the failure is a poison message, one that can never be handled (it cannot be read,
+ * translated or validated), the next messages, as many as were in the batch, are received one at
+ * a time, each committed on its own, and only the poison ones go to failedMessageConsumer. A
+ * message handled on its own is never redelivered by the failure of a later one, so its missions
+ * are not stored twice. With auto acknowledgement the messages cannot be redelivered, so they are
+ * handed to the listener one at a time straight away instead.
+ */
 @RequiredArgsConstructor
 @Slf4j
 @ToString(callSuper = true)
@@ -21,6 +50,17 @@ public class FuseMessageListenerContainer extends DefaultMessageListenerContaine
   @NonNull
   protected BiConsumer<Message, Exception> failedMessageConsumer;
 
+  @Getter
+  @Setter
+  private int batchSize = 1;
+
+  @Getter
+  @Setter
+  private long batchTimeoutMs;
+
+  // Messages still to be received one at a time, after a batch failed on a poison message
+  private final AtomicInteger isolatedMessages = new AtomicInteger();
+
   @Override
   @SneakyThrows
   protected void invokeListener(final Session session, final Message message) {
@@ -37,4 +77,147 @@ public class FuseMessageListenerContainer extends DefaultMessageListenerContaine
       failedMessageConsumer.accept(message, e);
     }
   }
+
+  @Override
+  protected boolean doReceiveAndExecute(final Object invoker, final Session session,
+      final MessageConsumer consumer, final TransactionStatus status) throws JMSException {
+    if (batchSize <= 1 || session == null || consumer == null
+        || !(getMessageListener() instanceof BatchMessageListener)) {
+      // Without a cached session and consumer, a batch could not share one commit
+      return super.doReceiveAndExecute(invoker, session, consumer, status);
+    }
+
+    boolean isolating = isolatedMessages.getAndUpdate(count -> Math.max(0, count - 1)) > 0;
+    List<Message> batch = receiveBatch(consumer, isolating ? 1 : batchSize);
+    if (batch.isEmpty()) {
+      noMessageReceived(invoker, session);
+      return false;
+    }
+    messageReceived(invoker, session);
+    if (!isAcceptMessagesWhileStopping() && !isRunning()) {
+      // Leave the messages for the next consumer
+      rollbackIfNecessary(session);
+      return false;
+    }
+
+    boolean handled;
+    try {
+      handled = invokeBatchListener(session, batch);
+    } catch (JMSException | RuntimeException | Error ex) {
+      // As AbstractPollingMessageListenerContainer does for a single message: a failed listener
+      // is reported to the error handler, and only a JMSException is an infrastructure problem
+      // the invoker has to recover from
+      rollbackOnExceptionIfNecessary(session, ex);
+      if (status != null) {
+        status.setRollbackOnly();
+      }
+      handleListenerException(ex);
+      if (ex instanceof JMSException) {
+        throw (JMSException) ex;
+      }
+      return true;
+    }
+    if (handled) {
+      commitIfNecessary(session, batch.get(batch.size() - 1));
+    } else {
+      // Redelivered, to be received one at a time
+      rollbackIfNecessary(session);
+      if (status != null) {
+        status.setRollbackOnly();
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Receive the next batch of messages: the first one waits up to the receive timeout, and the
+   * others up to batchTimeoutMs after the first was received, or not at all if it is 0.
+   *
+   * @param consumer the consumer of the session to receive with.
+   * @param maxMessages the most messages to receive.
+   * @return up to maxMessages messages, or none if no message arrived.
+   */
+  List<Message> receiveBatch(final MessageConsumer consumer, final int maxMessages)
+      throws JMSException {
+    List<Message> batch = new ArrayList<>();
+    Message message = receiveMessage(consumer);
+    if (message == null) {
+      return batch;
+    }
+    batch.add(message);
+    long deadline = System.currentTimeMillis() + batchTimeoutMs;
+    while (batch.size() < maxMessages) {
+      long remaining = deadline - System.currentTimeMillis();
+      message = remaining > 0 ? consumer.receive(remaining) : consumer.receiveNoWait();
+      if (message == null) {
+        break;
+      }
+      batch.add(message);
+    }
+    return batch;
+  }
+
+  /**
+   * Hand a batch to the listener. A poison message on its own goes to failedMessageConsumer and,
+   * as with single messages, is not retried. A batch holding a poison message is left to be
+   * redelivered and received one message at a time, or, if the session cannot redeliver it, each
+   * of its messages is handed to the listener on its own.
+   *
+   * @param session the session the batch was received with.
+   * @param batch the messages to hand to the listener.
+   * @return true if the batch is done with and can be committed, false if it must be rolled back
+   *     to be received again one message at a time.
+   * @throws JMSException if the listener fails for any other reason, e.g. the database is down;
+   *     as with a RuntimeException, the batch is rolled back to be redelivered.
+   */
+  boolean invokeBatchListener(final Session session, final List<Message> batch)
+      throws JMSException {
+    BatchMessageListener listener = (BatchMessageListener) getMessageListener();
+    try {
+      listener.onMessages(batch);
+      return true;
+    } catch (JMSException | RuntimeException e) {
+      if (!isPoison(e)) {
+        throw e;
+      }
+      if (batch.size() == 1) {
+        failedMessageConsumer.accept(batch.get(0), e);
+        return true;
+      }
+      if (session.getTransacted() || isClientAcknowledge(session)) {
+        // Handling the messages here would store some of them before the session could be
+        // rolled back by a later one, and then stored again once they are redelivered
+        log.warn("A batch of {} messages holds a poison message, receiving them one at a time",
+            batch.size(), e);
+        isolatedMessages.addAndGet(batch.size());
+        return false;
+      }
+      log.warn("A batch of {} messages holds a poison message, handling them one at a time",
+          batch.size(), e);
+    }
+    // Acknowledged as they were received, so the messages can only be handled here
+    for (Message message : batch) {
+      try {
+        listener.onMessages(Collections.singletonList(message));
+      } catch (JMSException | RuntimeException e) {
+        if (!isPoison(e)) {
+          throw e;
+        }
+        failedMessageConsumer.accept(message, e);
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Check whether a listener failed on a message that would fail the same way however often it is
+   * redelivered.
+   *
+   * @param e what the listener threw.
+   * @return true if the message cannot be read, translated or validated.
+   */
+  protected boolean isPoison(final Exception e) {
+    return e instanceof MessageConversionException || e instanceof TranslationException
+        || e instanceof ValidationException;
+  }
 }
@@ -0,0 +1,67 @@
+package org.galatea.starter.utils.resilience;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the number of concurrent calls to a dependency. A caller waits at most maxWaitMs for a
+ * permit and is turned away after that, so a slow dependency can hold at most maxConcurrentCalls
+ * of our threads.
+ */
+public class Bulkhead {
+
+  private final Semaphore permits;
+  private final long maxWaitMs;
+
+  /**
+   * Creates a bulkhead.
+   *
+   * @param maxConcurrentCalls the most calls allowed in flight at once.
+   * @param maxWaitMs how long a call waits for another to finish before being turned away.
+   */
+  public Bulkhead(final int maxConcurrentCalls, final long maxWaitMs) {
+    this.permits = new Semaphore(maxConcurrentCalls, true);
+    this.maxWaitMs = maxWaitMs;
+  }
+
+  /**
+   * Take a permit for a call, waiting up to maxWaitMs for one. A caller that gets a permit must
+   * release it once its call is done.
+   *
+   * @return true if the call may go ahead.
+   */
+  public boolean tryAcquire() {
+    try {
+      return permits.tryAcquire(maxWaitMs, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  /**
+   * Take a permit for a call only if one is free right now, for callers that must not block. A
+   * caller that gets a permit must release it once its call is done.
+   *
+   * @return true if the call may go ahead.
+   */
+  public boolean tryAcquireNow() {
+    return permits.tryAcquire();
+  }
+
+  /**
+   * Give back the permit of a finished call.
+   */
+  public void release() {
+    permits.release();
+  }
+
+  /**
+   * Get the number of calls that could start right now.
+   *
+   * @return the number of free permits.
+   */
+  public int availablePermits() {
+    return permits.availablePermits();
+  }
+}
@@ -0,0 +1,99 @@
+package org.galatea.starter.utils.resilience;
+
+import java.time.Clock;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Stops calling a dependency that keeps failing. After failureThreshold consecutive failures the
+ * breaker opens and every call is refused for openMs. Then one trial call is let through: if it
+ * succeeds the breaker closes again, otherwise it stays open for another openMs.
+ */
+@Slf4j
+public class CircuitBreaker {
+
+  /**
+   * The states of a circuit breaker.
+   */
+  public enum State {
+    CLOSED, OPEN, HALF_OPEN
+  }
+
+  private final String name;
+  private final int failureThreshold;
+  private final long openMs;
+  private final Clock clock;
+
+  private State state = State.CLOSED;
+  private int consecutiveFailures;
+  private long openedAtMillis;
+
+  /**
+   * Creates a circuit breaker, closed.
+   *
+   * @param name the name of the dependency, for logging.
+   * @param failureThreshold the number of consecutive failures that opens the breaker.
+   * @param openMs how long the breaker stays open before a trial call is let through.
+   * @param clock the clock the open time is measured with.
+   */
+  public CircuitBreaker(final String name, final int failureThreshold, final long openMs,
+      final Clock clock) {
+    this.name = name;
+    this.failureThreshold = failureThreshold;
+    this.openMs = openMs;
+    this.clock = clock;
+  }
+
+  /**
+   * Ask whether a call may be made. A caller that is allowed must report how the call went
+   * with onSuccess or onFailure.
+   *
+   * @return true if the breaker is closed, or if this call is the trial of a half open breaker.
+   */
+  public synchronized boolean tryAcquirePermission() {
+    if (state == State.CLOSED) {
+      return true;
+    } else if (state == State.OPEN && clock.millis() - openedAtMillis >= openMs) {
+      log.info("Letting a trial call through to {}", name);
+      state = State.HALF_OPEN;
+      return true;
+    }
+    // Open, or half open with the trial call still in flight
+    return false;
+  }
+
+  /**
+   * Report that an allowed call succeeded.
+   */
+  public synchronized void onSuccess() {
+    if (state != State.CLOSED) {
+      log.info("Closing the circuit breaker of {}", name);
+    }
+    state = State.CLOSED;
+    consecutiveFailures = 0;
+  }
+
+  /**
+   * Report that an allowed call failed.
+   */
+  public synchronized void onFailure() {
+    consecutiveFailures++;
+    if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+      if (state != State.OPEN) {
+        log.warn("Opening the circuit breaker of {} for {} ms after {} failure(s)", name, openMs,
+            consecutiveFailures);
+      }
+      state = State.OPEN;
+      openedAtMillis = clock.millis();
+      consecutiveFailures = 0;
+    }
+  }
+
+  /**
+   * Get the state of the breaker.
+   *
+   * @return the current state.
+   */
+  public synchronized State getState() {
+    return state;
+  }
+}
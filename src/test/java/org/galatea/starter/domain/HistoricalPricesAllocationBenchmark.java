@@ -0,0 +1,178 @@
+package org.galatea.starter.domain;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Measures the bytes allocated per row when historical prices go through the path of a request:
+ * read from the Iex JSON, copied to an entity and back as if stored and loaded, and written as the
+ * JSON response, and the heap a loaded entity keeps per row. "before" runs the same path with the
+ * four prices held as BigDecimals, the way IexHistoricalPrices and IexHistoricalPricesDB held
+ * them; "after" runs it with the current, scaled long classes.
+ *
+ * <p>Not a unit test; run it with the test classpath, e.g. from the IDE, and read the figures it
+ * prints. Needs a JVM that can count allocated bytes per thread, such as HotSpot.
+ */
+public final class HistoricalPricesAllocationBenchmark {
+
+  private static final int ROWS = 20_000;
+  private static final int WARMUP_RUNS = 20;
+  private static final int MEASURED_RUNS = 10;
+
+  private HistoricalPricesAllocationBenchmark() {}
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args ignored.
+   * @throws Exception if the JSON cannot be read or written.
+   */
+  public static void main(final String[] args) throws Exception {
+    ObjectMapper mapper = new ObjectMapper();
+    byte[] iexJson = mapper.writeValueAsBytes(iexRows());
+
+    System.out.printf("%-8s %12s %12s %12s %12s%n", "", "read", "copy", "write", "retained");
+    report("before", mapper, iexJson, new TypeReference<List<BigDecimalPrices>>() {},
+        BigDecimalEntity::new, BigDecimalPrices::new);
+    report("after", mapper, iexJson, new TypeReference<List<IexHistoricalPrices>>() {},
+        IexHistoricalPricesDB::new, IexHistoricalPrices::new);
+  }
+
+  private static <P, E> void report(final String name, final ObjectMapper mapper,
+      final byte[] iexJson, final TypeReference<List<P>> type, final Function<P, E> toEntity,
+      final Function<E, P> fromEntity) throws Exception {
+    List<E> entities = mapper.readValue(iexJson, type).stream()
+        .map(toEntity)
+        .collect(Collectors.toList());
+
+    long readBytes = bytesPerRow(() -> mapper.readValue(iexJson, type));
+    long copyBytes = bytesPerRow(() -> entities.stream()
+        .map(fromEntity)
+        .map(toEntity)
+        .collect(Collectors.toList()));
+    // A BigDecimal keeps the String it was written as, so every run writes rows it just read
+    long writeBytes = bytesPerRow(() -> mapper.writeValueAsBytes(mapper.readValue(iexJson, type)))
+        - readBytes;
+    long retainedBytes = retainedBytesPerRow(() -> mapper.readValue(iexJson, type).stream()
+        .map(toEntity)
+        .collect(Collectors.toList()));
+    System.out.printf("%-8s %12d %12d %12d %12d%n", name, readBytes, copyBytes, writeBytes,
+        retainedBytes);
+  }
+
+  private static long bytesPerRow(final Callable<Object> run) throws Exception {
+    com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long threadId = Thread.currentThread().getId();
+    Object sink = null;
+    for (int i = 0; i < WARMUP_RUNS; i++) {
+      sink = run.call();
+    }
+    long before = threads.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < MEASURED_RUNS; i++) {
+      sink = run.call();
+    }
+    long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+    if (sink == null) {
+      throw new IllegalStateException("Nothing was run");
+    }
+    return allocated / ((long) MEASURED_RUNS * ROWS);
+  }
+
+  private static long retainedBytesPerRow(final Callable<Object> load) throws Exception {
+    MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    long before = usedHeapAfterGc(memory);
+    Object loaded = load.call();
+    long retained = usedHeapAfterGc(memory) - before;
+    if (loaded == null) {
+      throw new IllegalStateException("Nothing was loaded");
+    }
+    return retained / ROWS;
+  }
+
+  private static long usedHeapAfterGc(final MemoryMXBean memory) {
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return memory.getHeapMemoryUsage().getUsed();
+  }
+
+  private static List<IexHistoricalPrices> iexRows() {
+    List<IexHistoricalPrices> rows = new ArrayList<>(ROWS);
+    LocalDate date = LocalDate.parse("2000-01-03");
+    for (int i = 0; i < ROWS; i++) {
+      BigDecimal close = BigDecimal.valueOf(10_000 + i * 37L % 5_000, 2);
+      rows.add(IexHistoricalPrices.builder()
+          .symbol("IBM")
+          .close(close)
+          .high(close.add(new BigDecimal("1.2345")))
+          .low(close.subtract(new BigDecimal("0.98")))
+          .open(close.add(new BigDecimal("0.3")))
+          .volume(1_000_000L + i)
+          .date(date.plusDays(i).toString())
+          .build());
+    }
+    return rows;
+  }
+
+  /**
+   * The daily price DTO as it was with BigDecimal prices.
+   */
+  @Data
+  @NoArgsConstructor
+  private static class BigDecimalPrices {
+
+    private String symbol;
+    private BigDecimal close;
+    private BigDecimal high;
+    private BigDecimal low;
+    private BigDecimal open;
+    private long volume;
+    private String date;
+
+    BigDecimalPrices(final BigDecimalEntity entity) {
+      this.symbol = entity.symbol;
+      this.close = entity.close;
+      this.high = entity.high;
+      this.low = entity.low;
+      this.open = entity.open;
+      this.volume = entity.volume;
+      this.date = entity.date.toString();
+    }
+  }
+
+  /**
+   * The stored daily price as it was with BigDecimal prices.
+   */
+  private static class BigDecimalEntity {
+
+    private final String symbol;
+    private final BigDecimal close;
+    private final BigDecimal high;
+    private final BigDecimal low;
+    private final BigDecimal open;
+    private final long volume;
+    private final LocalDate date;
+
+    BigDecimalEntity(final BigDecimalPrices prices) {
+      this.symbol = prices.getSymbol();
+      this.close = prices.getClose();
+      this.high = prices.getHigh();
+      this.low = prices.getLow();
+      this.open = prices.getOpen();
+      this.volume = prices.getVolume();
+      this.date = LocalDate.parse(prices.getDate());
+    }
+  }
+}
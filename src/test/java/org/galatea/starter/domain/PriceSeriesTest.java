@@ -0,0 +1,67 @@
+package org.galatea.starter.domain;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.Test;
+
+public class PriceSeriesTest {
+
+  @Test
+  public void testSliceReturnsRowsWithinWindow() {
+    PriceSeries series = PriceSeries.of("IBM",
+        entities("2022-01-31", "2022-02-01", "2022-02-02", "2022-02-03"));
+
+    List<IexHistoricalPrices> slice =
+        series.slice(LocalDate.parse("2022-01-29"), LocalDate.parse("2022-02-01"));
+
+    assertThat(slice).extracting(IexHistoricalPrices::getDate)
+        .containsExactly("2022-01-31", "2022-02-01");
+    assertThat(slice.get(0).getClose()).isEqualByComparingTo("131.25");
+    assertThat(slice.get(0).getVolume()).isEqualTo(1000L);
+    assertThat(series.slice(LocalDate.parse("2022-02-04"), LocalDate.parse("2022-02-10")))
+        .isEmpty();
+  }
+
+  @Test
+  public void testIndexOfAndLowerBound() {
+    PriceSeries series = PriceSeries.of("IBM", entities("2022-01-31", "2022-02-02"));
+
+    assertThat(series.indexOf(LocalDate.parse("2022-02-02"))).isEqualTo(1);
+    assertThat(series.indexOf(LocalDate.parse("2022-02-01"))).isNegative();
+    assertThat(series.lowerBound(LocalDate.parse("2022-02-01"))).isEqualTo(1);
+    assertThat(series.lowerBound(LocalDate.parse("2022-02-03"))).isEqualTo(2);
+  }
+
+  @Test
+  public void testMergeKeepsDatesSortedAndExistingRows() {
+    PriceSeries series = PriceSeries.of("IBM", entities("2022-01-31", "2022-02-02"));
+    IexHistoricalPrices replacement = IexHistoricalPrices.builder().symbol("IBM")
+        .close(BigDecimal.ONE).date("2022-01-31").build();
+    IexHistoricalPrices added = IexHistoricalPrices.builder().symbol("IBM")
+        .close(new BigDecimal("170.8074")).volume(5L).date("2022-02-01").build();
+
+    PriceSeries merged = series.merge(Arrays.asList(replacement, added));
+
+    assertThat(merged.size()).isEqualTo(3);
+    assertThat(merged.firstDate()).isEqualTo(LocalDate.parse("2022-01-31"));
+    assertThat(merged.lastDate()).isEqualTo(LocalDate.parse("2022-02-02"));
+    assertThat(merged.toPrices(0).getClose()).isEqualByComparingTo("131.25");
+    assertThat(merged.toPrices(1).getClose()).isEqualByComparingTo("170.8074");
+    assertThat(series.size()).isEqualTo(2);
+    assertThat(series.merge(Collections.emptyList())).isSameAs(series);
+  }
+
+  private static List<IexHistoricalPricesDB> entities(final String... dates) {
+    return Arrays.stream(dates)
+        .map(date -> new IexHistoricalPricesDB("IBM", new BigDecimal("131.25"),
+            new BigDecimal("132"), new BigDecimal("130.5"), new BigDecimal("131"), 1000L,
+            LocalDate.parse(date)))
+        .collect(Collectors.toList());
+  }
+}
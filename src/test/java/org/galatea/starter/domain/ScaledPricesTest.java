@@ -0,0 +1,47 @@
+package org.galatea.starter.domain;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.math.BigDecimal;
+import junitparams.JUnitParamsRunner;
+import junitparams.Parameters;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(JUnitParamsRunner.class)
+public class ScaledPricesTest {
+
+  @Test
+  @Parameters({"172.74", "0.05", "-0.05", "300", "1.23455", "1.23454", "000.0001",
+      "12345678901234.5678", "123456789012345.5", "1e3", "99999.99995"})
+  public void testParseMatchesBigDecimal(final String price) {
+    char[] chars = ("[" + price + "]").toCharArray();
+
+    assertThat(ScaledPrices.parse(chars, 1, price.length()))
+        .isEqualTo(ScaledPrices.scale(new BigDecimal(price)));
+  }
+
+  @Test
+  @Parameters({"1727400, 172.74", "500, 0.05", "-500, -0.05", "3000000, 300", "1, 0.0001",
+      "-12346, -1.2346"})
+  public void testFormatWritesPlainDecimals(final long price, final String expected) {
+    assertThat(ScaledPrices.format(price)).isEqualTo(expected);
+  }
+
+  @Test
+  public void testPricesAreReadAndWrittenAsDecimals() throws Exception {
+    ObjectMapper mapper = new ObjectMapper();
+
+    IexHistoricalPrices prices = mapper.readValue("{\"symbol\":\"IBM\",\"close\":131.25,"
+        + "\"high\":\"132.5\",\"low\":null,\"volume\":1000,\"date\":\"2022-02-01\"}",
+        IexHistoricalPrices.class);
+
+    assertThat(prices.getScaledClose()).isEqualTo(1312500L);
+    assertThat(prices.getHigh()).isEqualByComparingTo("132.5");
+    assertThat(prices.getLow()).isNull();
+    assertThat(prices.getOpen()).isNull();
+    assertThat(mapper.writeValueAsString(prices)).isEqualTo("{\"symbol\":\"IBM\",\"close\":131.25,"
+        + "\"high\":132.5,\"low\":null,\"open\":null,\"volume\":1000,\"date\":\"2022-02-01\"}");
+  }
+}
@@ -8,7 +8,6 @@ import static org.hamcrest.Matchers.not;
 import static org.mockito.BDDMockito.given;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.common.collect.Sets;
 import io.restassured.RestAssured;
 import io.restassured.http.Headers;
 import io.restassured.module.mockmvc.RestAssuredMockMvc;
@@ -107,7 +106,7 @@ public class FuseHttpTraceFilterTest extends ASpringTest {
     log.info("Agreement objects that the service will expect {}", agreementMessages);
 
     given(this.mockSettlementService.spawnMissions(singletonList(expectedAgreement)))
-        .willReturn(Sets.newTreeSet(expectedMissionIds));
+        .willReturn(expectedMissionIds);
 
     Response response =
         RestAssured.given()
@@ -137,7 +136,7 @@ public class FuseHttpTraceFilterTest extends ASpringTest {
     String xml = writer.toString();
 
     given(this.mockSettlementService.spawnMissions(toTradeAgreements(messages)))
-        .willReturn(Sets.newTreeSet(singletonList(1L)));
+        .willReturn(singletonList(1L));
 
     Response response =
         RestAssured.given()
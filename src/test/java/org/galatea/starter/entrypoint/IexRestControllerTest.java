@@ -1,9 +1,16 @@
 package org.galatea.starter.entrypoint;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.hasValue;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import java.math.BigDecimal;
@@ -16,6 +23,8 @@ import junitparams.JUnitParamsRunner;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.galatea.starter.ASpringTest;
+import org.galatea.starter.MvcConfig;
+import org.galatea.starter.domain.EmptyPriceDateRepository;
 import org.galatea.starter.domain.HistoricalPricesRepository;
 import org.galatea.starter.domain.IexHistoricalPricesDB;
 import org.hamcrest.number.BigDecimalCloseTo;
@@ -67,6 +76,9 @@ public class IexRestControllerTest extends ASpringTest {
   @Autowired
   HistoricalPricesRepository testHPRepository;
 
+  @Autowired
+  EmptyPriceDateRepository testEmptyDateRepository;
+
   @Autowired
   private Clock clock;
 
@@ -86,16 +98,42 @@ public class IexRestControllerTest extends ASpringTest {
         .andReturn();
   }
 
+  @Test
+  public void testSearchSymbolsEndpoint() throws Exception {
+    // The symbols are configured in the file
+    // src/test/resources/wiremock/mappings/mapping-symbols.json
+    this.mvc.perform(
+        MockMvcRequestBuilders.get("/iex/symbols/search?query=aa&token=xyz1")
+            .accept(MediaType.APPLICATION_JSON_VALUE))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$", hasSize(2)))
+        .andExpect(jsonPath("$[0].symbol", is("AA")))
+        .andExpect(jsonPath("$[1].symbol", is("AAAU")))
+        .andReturn();
+
+    this.mvc.perform(
+        MockMvcRequestBuilders.get("/iex/symbols/search?query=gold&token=xyz1")
+            .accept(MediaType.APPLICATION_JSON_VALUE))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$", hasSize(1)))
+        .andExpect(jsonPath("$[0].symbol", is("AAAU")))
+        .andReturn();
+  }
+
   // Test the getLastTradedPrice and potential null params
   @Test
   public void testGetLastTradedPrice() throws Exception {
 
-    MvcResult result = this.mvc.perform(
+    MvcResult pending = this.mvc.perform(
         org.springframework.test.web.servlet.request.MockMvcRequestBuilders
             .get("/iex/lastTradedPrice?token=xyz1&symbols=FB")
             // This URL will be hit by the MockMvc client. The result is configured in the file
             // src/test/resources/wiremock/mappings/mapping-lastTradedPrice.json
             .accept(MediaType.APPLICATION_JSON_VALUE))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+
+    MvcResult result = this.mvc.perform(asyncDispatch(pending))
         .andExpect(status().isOk())
         .andExpect(jsonPath("$[0].symbol", is("FB")))
         .andExpect(jsonPath("$[0].price").value(new BigDecimal("186.3011")))
@@ -112,6 +150,20 @@ public class IexRestControllerTest extends ASpringTest {
         .andReturn();
   }
 
+  @Test
+  public void testGetLastTradedPriceNegativeMaxAge() throws Exception {
+    MvcResult pending = this.mvc.perform(
+        MockMvcRequestBuilders
+            .get("/iex/lastTradedPrice?token=xyz1&symbols=FB&maxAgeMs=-1")
+            .accept(MediaType.APPLICATION_JSON_VALUE))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+
+    this.mvc.perform(asyncDispatch(pending))
+        .andExpect(status().isBadRequest())
+        .andReturn();
+  }
+
   // Test Historical Price Endpoint for calls of different parameter combinations
   @Test
   public void testGetHistoricalPricesDate() throws Exception {
@@ -191,8 +243,8 @@ public class IexRestControllerTest extends ASpringTest {
         .andExpect(status().isOk())
         .andReturn();
 
-    List<IexHistoricalPricesDB> entries1 = testHPRepository.findBySymbol("T");
-    assertThat(entries1).hasSize(3);
+    // The prices are stored in the background
+    await().untilAsserted(() -> assertThat(testHPRepository.findBySymbol("T")).hasSize(3));
   }
 
   @Test
@@ -204,19 +256,21 @@ public class IexRestControllerTest extends ASpringTest {
         .andExpect(status().isOk())
         .andReturn();
 
+    await().untilAsserted(() -> assertThat(
+        testHPRepository.findBySymbolAndDate("MRNA", LocalDate.parse("2022-02-01"))).isNotNull());
     IexHistoricalPricesDB sample1 =
-        testHPRepository.findBySymbolAndDate("MRNA","2022-02-01");
+        testHPRepository.findBySymbolAndDate("MRNA", LocalDate.parse("2022-02-01"));
     IexHistoricalPricesDB sample2 =
-        testHPRepository.findBySymbolAndDate("MRNA","2022-01-11");
+        testHPRepository.findBySymbolAndDate("MRNA", LocalDate.parse("2022-01-11"));
     IexHistoricalPricesDB sample3 =
-        testHPRepository.findBySymbolAndDate("MMA", "2022-02-01");
+        testHPRepository.findBySymbolAndDate("MMA", LocalDate.parse("2022-02-01"));
 
     //Negative tests
     assertThat(sample2).isNull();
     assertThat(sample3).isNull();
 
     //Positive tests
-    assertThat(sample1.getClose()).isEqualTo(new BigDecimal("172.74"));
+    assertThat(sample1.getClose()).isEqualByComparingTo("172.74");
     assertThat(sample1.getVolume()).isEqualTo(7329761);
   }
 
@@ -233,6 +287,21 @@ public class IexRestControllerTest extends ASpringTest {
     assertThat(testHPRepository.existsBySymbol("BIIB")).isFalse();
   }
 
+  @Test
+  public void testRememberDateIexHasNoPriceFor() throws Exception {
+    this.mvc.perform(
+            MockMvcRequestBuilders
+                .get("/iex/historicalPrices?date=20220201&symbol=SNOW&token=xyz1")
+                .accept(MediaType.APPLICATION_JSON_VALUE))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$").isEmpty())
+        .andReturn();
+
+    assertThat(testEmptyDateRepository.findBySymbolAndDateBetween("SNOW",
+        LocalDate.parse("2022-02-01"), LocalDate.parse("2022-02-01"))).hasSize(1);
+    assertThat(testHPRepository.existsBySymbol("SNOW")).isFalse();
+  }
+
   @Test
   public void testDoNotCallIexIfWeekend() throws Exception {
     this.mvc.perform(
@@ -248,7 +317,7 @@ public class IexRestControllerTest extends ASpringTest {
   public void testDoNotCallRepositoryIfWeekend() throws Exception {
     testHPRepository.save(new IexHistoricalPricesDB("DUMM", new BigDecimal("300"),
         new BigDecimal("320"), new BigDecimal("290"), new BigDecimal("305"),
-        1267L,"2022-02-05"));
+        1267L, LocalDate.parse("2022-02-05")));
 
     this.mvc.perform(
         MockMvcRequestBuilders
@@ -270,10 +339,10 @@ public class IexRestControllerTest extends ASpringTest {
     //First, insert two objects from database - assume it's from a previous call
     testHPRepository.save(new IexHistoricalPricesDB("AMZN", new BigDecimal("2776.91"),
         new BigDecimal("2884.95"), new BigDecimal("2766.66"), new BigDecimal("2834.75"),
-        11276568L,"2022-02-03"));
+        11276568L, LocalDate.parse("2022-02-03")));
     testHPRepository.save(new IexHistoricalPricesDB("AMZN", new BigDecimal("3012.25"),
         new BigDecimal("3101.5"), new BigDecimal("2977.27"), new BigDecimal("3131"),
-        4366488L,"2022-02-02"));
+        4366488L, LocalDate.parse("2022-02-02")));
     //check to make sure they are saved
     List<IexHistoricalPricesDB> entries1 = testHPRepository.findBySymbol("AMZN");
     assertThat(entries1).hasSize(2);
@@ -322,4 +391,177 @@ public class IexRestControllerTest extends ASpringTest {
 
   }
 
+  @Test
+  public void testFillMissingDatesWithOneRangeCall() throws Exception {
+    testHPRepository.save(new IexHistoricalPricesDB("GOOG", new BigDecimal("2853.01"),
+        new BigDecimal("2982.36"), new BigDecimal("2839.43"), new BigDecimal("2860.07"),
+        2643210L, LocalDate.parse("2022-02-03")));
+
+    // Two dates are missing, so a single 5d range call is made to Iex instead of one per date.
+    // The result is configured in the file
+    // src/test/resources/wiremock/mappings/mapping-historicalPrices-fillMissingWithRange.json
+    this.mvc.perform(
+        MockMvcRequestBuilders
+            .get("/iex/historicalPrices?range=3d&symbol=GOOG&token=xyz1")
+            .accept(MediaType.APPLICATION_JSON_VALUE))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$", hasSize(3)))
+        .andExpect(jsonPath("[0].date", is("2022-02-01")))
+        .andExpect(jsonPath("[1].date", is("2022-02-02")))
+        .andExpect(jsonPath("[2].date", is("2022-02-03")))
+        .andReturn();
+
+    // Only the dates that were missing are stored, not everything the range call returned
+    await().untilAsserted(() -> assertThat(testHPRepository.findBySymbol("GOOG")).hasSize(3));
+    assertThat(testHPRepository.findBySymbolAndDate("GOOG", LocalDate.parse("2022-01-31")))
+        .isNull();
+  }
+
+  @Test
+  public void testDoNotRememberDatesBeforeARangeAnswer() throws Exception {
+    testHPRepository.save(new IexHistoricalPricesDB("INTC", new BigDecimal("48.3"),
+        new BigDecimal("49.2"), new BigDecimal("48.02"), new BigDecimal("48.49"),
+        27960811L, LocalDate.parse("2022-02-03")));
+
+    // The 5d range call only reaches back to 2022-02-02, see
+    // src/test/resources/wiremock/mappings/mapping-historicalPrices-rangeFallsShort.json
+    this.mvc.perform(
+        MockMvcRequestBuilders
+            .get("/iex/historicalPrices?range=3d&symbol=INTC&token=xyz1")
+            .accept(MediaType.APPLICATION_JSON_VALUE))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$", hasSize(2)))
+        .andExpect(jsonPath("[0].date", is("2022-02-02")))
+        .andExpect(jsonPath("[1].date", is("2022-02-03")))
+        .andReturn();
+
+    // Iex never answered for 2022-02-01, so it is asked again next time
+    assertThat(testEmptyDateRepository.findBySymbolAndDateBetween("INTC",
+        LocalDate.parse("2022-02-01"), LocalDate.parse("2022-02-01"))).isEmpty();
+  }
+
+  @Test
+  public void testGetBatchHistoricalPrices() throws Exception {
+    // MSFT is configured in the file
+    // src/test/resources/wiremock/mappings/mapping-historicalPrices-batch.json, while Iex does not
+    // know ZZZZ, which only fails that symbol
+    this.mvc.perform(
+        MockMvcRequestBuilders
+            .get("/iex/historicalPrices/batch?symbols=msft,ZZZZ,MSFT&date=20220202&token=xyz1")
+            .accept(MediaType.APPLICATION_JSON_VALUE))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.prices.MSFT", hasSize(1)))
+        .andExpect(jsonPath("$.prices.MSFT[0].close").value(new BigDecimal("313.46")))
+        .andExpect(jsonPath("$.prices.ZZZZ").doesNotExist())
+        .andExpect(jsonPath("$.errors.ZZZZ").exists())
+        .andExpect(jsonPath("$.errors.MSFT").doesNotExist())
+        .andReturn();
+  }
+
+  @Test
+  public void testGetBatchHistoricalPricesEmpty() throws Exception {
+    this.mvc.perform(
+        MockMvcRequestBuilders
+            .get("/iex/historicalPrices/batch?symbols=&token=xyz1")
+            .accept(MediaType.APPLICATION_JSON_VALUE))
+        .andExpect(status().isBadRequest())
+        .andReturn();
+  }
+
+  @Test
+  public void testGetAggregatedHistoricalPrices() throws Exception {
+    // Every trading day of the range is stored, so Iex is not called
+    storePrice("ORCL", "2022-01-28", "100", "102", "99", "101", 1000L);
+    storePrice("ORCL", "2022-01-31", "101", "104", "100", "103", 2000L);
+    storePrice("ORCL", "2022-02-01", "103", "103", "101", "102", 1000L);
+    storePrice("ORCL", "2022-02-02", "102", "105", "102", "105", 1000L);
+    storePrice("ORCL", "2022-02-03", "105", "106", "101", "104", 1000L);
+
+    this.mvc.perform(
+        MockMvcRequestBuilders
+            .get("/iex/historicalPrices/aggregate?symbols=orcl&range=7d&interval=week"
+                + "&volatilityWindow=3&token=xyz1")
+            .accept(MediaType.APPLICATION_JSON_VALUE))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.interval", is("WEEK")))
+        .andExpect(jsonPath("$.bars.ORCL", hasSize(2)))
+        .andExpect(jsonPath("$.bars.ORCL[0].start", is("2022-01-28")))
+        .andExpect(jsonPath("$.bars.ORCL[0].simpleReturn").value(nullValue()))
+        .andExpect(jsonPath("$.bars.ORCL[1].start", is("2022-01-31")))
+        .andExpect(jsonPath("$.bars.ORCL[1].end", is("2022-02-03")))
+        .andExpect(jsonPath("$.bars.ORCL[1].open").value(101))
+        .andExpect(jsonPath("$.bars.ORCL[1].high").value(106))
+        .andExpect(jsonPath("$.bars.ORCL[1].low").value(100))
+        .andExpect(jsonPath("$.bars.ORCL[1].close").value(104))
+        .andExpect(jsonPath("$.bars.ORCL[1].volume").value(5000))
+        .andExpect(jsonPath("$.bars.ORCL[1].vwap").value(closeTo(102.8667, 0.001)))
+        .andExpect(jsonPath("$.bars.ORCL[1].simpleReturn")
+            .value(closeTo(104.0 / 101 - 1, 1e-9)))
+        .andExpect(jsonPath("$.bars.ORCL[1].volatility").value(notNullValue()))
+        .andExpect(jsonPath("$.errors").isEmpty())
+        .andReturn();
+  }
+
+  @Test
+  public void testGetAggregatedHistoricalPricesBadInterval() throws Exception {
+    this.mvc.perform(
+        MockMvcRequestBuilders
+            .get("/iex/historicalPrices/aggregate?symbols=ORCL&interval=fortnight&token=xyz1")
+            .accept(MediaType.APPLICATION_JSON_VALUE))
+        .andExpect(status().isBadRequest())
+        .andReturn();
+  }
+
+  @Test
+  public void testStreamHistoricalPricesAsNdjson() throws Exception {
+    storePrices("NFLX", "2022-02-01", "2022-02-02", "2022-02-03");
+
+    MvcResult result = this.mvc.perform(
+        MockMvcRequestBuilders
+            .get("/iex/historicalPrices/stream?symbols=NFLX&range=3d&token=xyz1")
+            .accept(MvcConfig.APPLICATION_NDJSON))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+    result.getAsyncResult();
+
+    String[] lines = result.getResponse().getContentAsString().split("\n");
+    assertThat(lines).hasSize(3);
+    assertThat(lines[0]).contains("\"symbol\":\"NFLX\"", "\"date\":\"2022-02-01\"");
+    assertThat(lines[2]).contains("\"date\":\"2022-02-03\"");
+  }
+
+  @Test
+  public void testStreamHistoricalPricesAsJsonArray() throws Exception {
+    storePrices("DIS", "2022-02-01", "2022-02-02", "2022-02-03");
+
+    MvcResult result = this.mvc.perform(
+        MockMvcRequestBuilders
+            .get("/iex/historicalPrices/stream?symbols=DIS&range=3d&token=xyz1")
+            .accept(MediaType.APPLICATION_JSON_VALUE))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+
+    this.mvc.perform(asyncDispatch(result))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$", hasSize(3)))
+        .andExpect(jsonPath("[0].symbol", is("DIS")))
+        .andExpect(jsonPath("[2].date", is("2022-02-03")))
+        .andReturn();
+  }
+
+  private void storePrice(final String symbol, final String date, final String open,
+      final String high, final String low, final String close, final long volume) {
+    testHPRepository.save(new IexHistoricalPricesDB(symbol, new BigDecimal(close),
+        new BigDecimal(high), new BigDecimal(low), new BigDecimal(open), volume,
+        LocalDate.parse(date)));
+  }
+
+  private void storePrices(final String symbol, final String... dates) {
+    for (String date : dates) {
+      testHPRepository.save(new IexHistoricalPricesDB(symbol, new BigDecimal("100.5"),
+          new BigDecimal("101"), new BigDecimal("99.75"), new BigDecimal("100"), 1000L,
+          LocalDate.parse(date)));
+    }
+  }
+
 }
@@ -2,14 +2,24 @@ package org.galatea.starter.entrypoint;
 
 import static java.util.Collections.singletonList;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.BDDMockito.given;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
-import com.google.common.collect.Sets;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 import junitparams.JUnitParamsRunner;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -75,7 +85,7 @@ public class SettlementProtoRestControllerTest extends ASpringTest {
         .addMessage(message).build();
 
     given(this.mockSettlementService.spawnMissions(singletonList(agreement)))
-        .willReturn(Sets.newTreeSet(singletonList(expectedId)));
+        .willReturn(singletonList(expectedId));
 
     MvcResult result = this.mvc.perform(
         post("/settlementEngine?requestId=1234").contentType(APPLICATION_X_PROTOBUF)
@@ -89,6 +99,86 @@ public class SettlementProtoRestControllerTest extends ASpringTest {
         .contains("/settlementEngine/mission/" + expectedId));
   }
 
+  @Test
+  public void testSettleAgreementStream() throws Exception {
+    TradeAgreementProtoMessage message1
+        = TestDataGenerator.defaultTradeAgreementProtoMessageData().build();
+    TradeAgreementProtoMessage message2
+        = TestDataGenerator.defaultTradeAgreementProtoMessageData().setQty(200).build();
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    message1.writeDelimitedTo(body);
+    message2.writeDelimitedTo(body);
+
+    // Hand the agreements on in batches of one, as they are read
+    List<TradeAgreement> agreements = new ArrayList<>();
+    given(this.mockSettlementService.spawnMissions(any(), any())).willAnswer(invocation -> {
+      Iterator<TradeAgreement> read = invocation.getArgument(0);
+      Consumer<List<Long>> spawned = invocation.getArgument(1);
+      while (read.hasNext()) {
+        agreements.add(read.next());
+        spawned.accept(singletonList((long) agreements.size()));
+      }
+      return (long) agreements.size();
+    });
+
+    MvcResult result = this.mvc.perform(
+        post("/settlementEngine/stream?requestId=1234").contentType(APPLICATION_X_PROTOBUF)
+            .accept(APPLICATION_X_PROTOBUF).content(body.toByteArray()))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+    result.getAsyncResult();
+
+    assertEquals(Arrays.asList(TestDataGenerator.defaultTradeAgreementData().build(),
+        TestDataGenerator.defaultTradeAgreementData().qty(200d).build()), agreements);
+    InputStream received = new ByteArrayInputStream(result.getResponse().getContentAsByteArray());
+    assertEquals(singletonList("/settlementEngine/mission/1"),
+        SettlementResponseProtoMessage.parseDelimitedFrom(received).getSpawnedMissionPathsList());
+    assertEquals(singletonList("/settlementEngine/mission/2"),
+        SettlementResponseProtoMessage.parseDelimitedFrom(received).getSpawnedMissionPathsList());
+  }
+
+  @Test
+  public void testSettleAgreementStreamEndsWithErrorOnBadAgreement() throws Exception {
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    TestDataGenerator.defaultTradeAgreementProtoMessageData().build().writeDelimitedTo(body);
+    // A record of three bytes that are no trade agreement
+    body.write(new byte[] {3, -1, -1, -1});
+    TestDataGenerator.defaultTradeAgreementProtoMessageData().setQty(300).build()
+        .writeDelimitedTo(body);
+
+    // Hand the agreements on in batches of one, as they are read
+    List<TradeAgreement> agreements = new ArrayList<>();
+    given(this.mockSettlementService.spawnMissions(any(), any())).willAnswer(invocation -> {
+      Iterator<TradeAgreement> read = invocation.getArgument(0);
+      Consumer<List<Long>> spawned = invocation.getArgument(1);
+      while (read.hasNext()) {
+        agreements.add(read.next());
+        spawned.accept(singletonList((long) agreements.size()));
+      }
+      return (long) agreements.size();
+    });
+
+    MvcResult result = this.mvc.perform(
+        post("/settlementEngine/stream?requestId=1234").contentType(APPLICATION_X_PROTOBUF)
+            .accept(APPLICATION_X_PROTOBUF).content(body.toByteArray()))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+    result.getAsyncResult();
+
+    // The status was sent with the first message, so the failure is told by the last one
+    assertEquals(singletonList(TestDataGenerator.defaultTradeAgreementData().build()),
+        agreements);
+    InputStream received = new ByteArrayInputStream(result.getResponse().getContentAsByteArray());
+    assertEquals(singletonList("/settlementEngine/mission/1"),
+        SettlementResponseProtoMessage.parseDelimitedFrom(received).getSpawnedMissionPathsList());
+    SettlementResponseProtoMessage error =
+        SettlementResponseProtoMessage.parseDelimitedFrom(received);
+    assertTrue(error.getSpawnedMissionPathsList().isEmpty());
+    assertEquals("Incorrectly formatted message.  Please consult the documentation.",
+        error.getError());
+    assertNull(SettlementResponseProtoMessage.parseDelimitedFrom(received));
+  }
+
   @Test
   public void testGetMission() throws Exception {
     SettlementMission mission = TestDataGenerator.defaultSettlementMissionData().build();
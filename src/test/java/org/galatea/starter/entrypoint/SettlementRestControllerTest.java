@@ -6,24 +6,33 @@ import static org.galatea.starter.MvcConfig.APPLICATION_EXCEL;
 import static org.galatea.starter.MvcConfig.TEXT_CSV;
 import static org.hamcrest.Matchers.hasXPath;
 import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.common.collect.Sets;
 import io.restassured.module.mockmvc.RestAssuredMockMvc;
 import io.restassured.module.mockmvc.response.MockMvcResponse;
 import java.io.StringWriter;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import javax.validation.ConstraintViolation;
+import javax.validation.ConstraintViolationException;
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.Marshaller;
 import junitparams.FileParameters;
@@ -31,12 +40,16 @@ import junitparams.JUnitParamsRunner;
 import lombok.extern.slf4j.Slf4j;
 import org.galatea.starter.ASpringTest;
 import org.galatea.starter.MessageTranslationConfig;
+import org.galatea.starter.MvcConfig;
+import org.galatea.starter.domain.SettlementJob;
+import org.galatea.starter.domain.SettlementJob.Status;
 import org.galatea.starter.domain.SettlementMission;
 import org.galatea.starter.domain.TradeAgreement;
 import org.galatea.starter.entrypoint.messagecontracts.SettlementMissionList;
 import org.galatea.starter.entrypoint.messagecontracts.SettlementMissionMessage;
 import org.galatea.starter.entrypoint.messagecontracts.TradeAgreementMessage;
 import org.galatea.starter.entrypoint.messagecontracts.TradeAgreementMessages;
+import org.galatea.starter.service.SettlementJobService;
 import org.galatea.starter.service.SettlementService;
 import org.galatea.starter.testutils.TestDataGenerator;
 import org.galatea.starter.testutils.XlsxComparator;
@@ -64,7 +77,10 @@ import org.springframework.http.MediaType;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.http.converter.xml.Jaxb2RootElementHttpMessageConverter;
 import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.test.web.servlet.setup.StandaloneMockMvcBuilder;
 import org.springframework.web.accept.ContentNegotiationManager;
 import org.springframework.web.accept.ParameterContentNegotiationStrategy;
 
@@ -77,6 +93,15 @@ public class SettlementRestControllerTest
   @Value("${mvc.settleMissionPath}")
   private String settleMissionPath;
 
+  @Value("${mvc.settleMissionStreamPath}")
+  private String settleMissionStreamPath;
+
+  @Value("${mvc.settleMissionJobPath}")
+  private String settleMissionJobPath;
+
+  @Value("${mvc.getSettlementJobPath}")
+  private String getSettlementJobPath;
+
   @Value("${mvc.getMissionPath}")
   private String getMissionPath;
 
@@ -101,11 +126,16 @@ public class SettlementRestControllerTest
   @MockBean
   private SettlementService mockSettlementService;
 
+  @MockBean
+  private SettlementJobService mockSettlementJobService;
+
   @Autowired
   private SettlementRestController settlementRestController;
 
   private ObjectMapper objectMapper;
 
+  private MockMvc mvc;
+
   private JacksonTester<TradeAgreementMessages> agreementJsonTester;
 
   private JacksonTester<List<Long>> missionIdJsonTester;
@@ -129,9 +159,12 @@ public class SettlementRestControllerTest
     ContentNegotiationManager manager =
         new ContentNegotiationManager(parameterContentNegotiationStrategy);
 
-    RestAssuredMockMvc.standaloneSetup(
+    StandaloneMockMvcBuilder mockMvcBuilder =
         MockMvcBuilders.standaloneSetup(settlementRestController).
             addPlaceholderValue("mvc.settleMissionPath", settleMissionPath).
+            addPlaceholderValue("mvc.settleMissionStreamPath", settleMissionStreamPath).
+            addPlaceholderValue("mvc.settleMissionJobPath", settleMissionJobPath).
+            addPlaceholderValue("mvc.getSettlementJobPath", getSettlementJobPath).
             addPlaceholderValue("mvc.deleteMissionPath", deleteMissionPath).
             addPlaceholderValue("mvc.updateMissionPath", updateMissionPath).
             addPlaceholderValue("mvc.getMissionsPath", getMissionsPath).
@@ -141,7 +174,10 @@ public class SettlementRestControllerTest
                 new Jaxb2RootElementHttpMessageConverter(),
                 new SettlementMissionCsvConverter(),
                 new SettlementMissionXlsxConverter()).
-            setControllerAdvice(new RestExceptionHandler()));
+            setControllerAdvice(new RestExceptionHandler());
+    RestAssuredMockMvc.standaloneSetup(mockMvcBuilder);
+    // Streamed responses are asynchronous, so they are tested with MockMvc itself
+    mvc = mockMvcBuilder.build();
   }
 
   @Test
@@ -165,7 +201,7 @@ public class SettlementRestControllerTest
     log.info("Agreement objects that the service will expect {}", agreementMessages);
 
     BDDMockito.given(this.mockSettlementService.spawnMissions(singletonList(expectedAgreement)))
-        .willReturn(Sets.newTreeSet(expectedMissionIds));
+        .willReturn(expectedMissionIds);
 
     given()
         .log().ifValidationFails()
@@ -201,7 +237,7 @@ public class SettlementRestControllerTest
     log.info("Expected xml response {}", expectedXmlEntry);
 
     BDDMockito.given(this.mockSettlementService.spawnMissions(toTradeAgreements(messages)))
-        .willReturn(Sets.newTreeSet(expectedMissionIds));
+        .willReturn(expectedMissionIds);
 
     given()
         .log().ifValidationFails()
@@ -216,6 +252,164 @@ public class SettlementRestControllerTest
         .statusCode(HttpStatus.OK.value());
   }
 
+  @Test
+  public void testSettleAgreementStream() throws Exception {
+    String ndjson = "{\"instrument\":\"IBM\",\"internalParty\":\"INT-1\","
+        + "\"externalParty\":\"EXT-1\",\"buySell\":\"B\",\"qty\":100}\n"
+        + "{\"instrument\":\"IBM\",\"internalParty\":\"INT-1\","
+        + "\"externalParty\":\"EXT-1\",\"buySell\":\"B\",\"qty\":200}\n";
+
+    // Hand the agreements on in batches of one, as they are read
+    List<TradeAgreement> agreements = new ArrayList<>();
+    BDDMockito.given(this.mockSettlementService.spawnMissions(any(), any()))
+        .willAnswer(invocation -> {
+          Iterator<TradeAgreement> read = invocation.getArgument(0);
+          Consumer<List<Long>> spawned = invocation.getArgument(1);
+          while (read.hasNext()) {
+            agreements.add(read.next());
+            spawned.accept(singletonList(MISSION_ID_1 + agreements.size()));
+          }
+          return (long) agreements.size();
+        });
+
+    MvcResult result = mvc.perform(post("/settlementEngine/stream?requestId=1234")
+        .contentType(MvcConfig.APPLICATION_NDJSON).accept(MvcConfig.APPLICATION_NDJSON)
+        .content(ndjson))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+    result.getAsyncResult();
+
+    assertEquals(Arrays.asList(TestDataGenerator.defaultTradeAgreementData().build(),
+        TestDataGenerator.defaultTradeAgreementData().qty(200d).build()), agreements);
+    assertEquals("{\"spawnedMissions\":[\"/settlementEngine/mission/" + (MISSION_ID_1 + 1)
+        + "\"]}\n{\"spawnedMissions\":[\"/settlementEngine/mission/" + (MISSION_ID_1 + 2)
+        + "\"]}\n", result.getResponse().getContentAsString());
+  }
+
+  @Test
+  public void testSettleAgreementStreamEndsWithErrorOnBadAgreement() throws Exception {
+    String ndjson = "{\"instrument\":\"IBM\",\"internalParty\":\"INT-1\","
+        + "\"externalParty\":\"EXT-1\",\"buySell\":\"B\",\"qty\":100}\n"
+        + "{\"instrument\":\"IBM\",\"qty\":\"lots\"}\n"
+        + "{\"instrument\":\"IBM\",\"internalParty\":\"INT-1\","
+        + "\"externalParty\":\"EXT-1\",\"buySell\":\"B\",\"qty\":300}\n";
+
+    // Hand the agreements on in batches of one, as they are read
+    List<TradeAgreement> agreements = new ArrayList<>();
+    BDDMockito.given(this.mockSettlementService.spawnMissions(any(), any()))
+        .willAnswer(invocation -> {
+          Iterator<TradeAgreement> read = invocation.getArgument(0);
+          Consumer<List<Long>> spawned = invocation.getArgument(1);
+          while (read.hasNext()) {
+            agreements.add(read.next());
+            spawned.accept(singletonList(MISSION_ID_1 + agreements.size()));
+          }
+          return (long) agreements.size();
+        });
+
+    MvcResult result = mvc.perform(post("/settlementEngine/stream?requestId=1234")
+        .contentType(MvcConfig.APPLICATION_NDJSON).accept(MvcConfig.APPLICATION_NDJSON)
+        .content(ndjson))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+    result.getAsyncResult();
+
+    // The status was sent with the first line, so the failure is told by the last one
+    assertEquals(singletonList(TestDataGenerator.defaultTradeAgreementData().build()),
+        agreements);
+    assertEquals("{\"spawnedMissions\":[\"/settlementEngine/mission/" + (MISSION_ID_1 + 1)
+        + "\"]}\n{\"error\":\"Incorrectly formatted message.  Please consult the "
+        + "documentation.\"}\n", result.getResponse().getContentAsString());
+  }
+
+  @Test
+  public void testSubmitSettlementJob() throws Exception {
+    TradeAgreementMessages messages = TradeAgreementMessages.builder().agreement(
+        TradeAgreementMessage.builder().instrument("IBM").internalParty("INT-1")
+            .externalParty("EXT-1").buySell("B").qty(100d).build())
+        .build();
+    SettlementJob queued = SettlementJob.builder().id("job-1").status(Status.QUEUED)
+        .agreementCount(1).missionIds(Collections.emptyList()).build();
+
+    BDDMockito.given(this.mockSettlementJobService.submit(toTradeAgreements(messages)))
+        .willReturn(queued);
+
+    given()
+        .log().ifValidationFails()
+        .contentType(MediaType.APPLICATION_JSON_VALUE)
+        .body(objectMapper.writeValueAsString(messages))
+        .when()
+        .post("/settlementEngine/jobs?requestId=1234")
+        .then()
+        .log().ifValidationFails()
+        .statusCode(HttpStatus.ACCEPTED.value())
+        .header("Location", is("/settlementEngine/jobs/job-1"))
+        .body("id", is("job-1"))
+        .body("status", is("QUEUED"))
+        .body("agreementCount", is(1))
+        .body("spawnedCount", is(0));
+  }
+
+  @Test
+  public void testSubmitSettlementJobWithAnInvalidAgreement() throws Exception {
+    TradeAgreementMessages messages = TradeAgreementMessages.builder().agreement(
+        TradeAgreementMessage.builder().instrument("IBM").internalParty("INT-1")
+            .externalParty("EXT-1").buySell("B").qty(-100d).build())
+        .build();
+    ConstraintViolation<?> violation = mock(ConstraintViolation.class);
+    BDDMockito.given(violation.getMessage()).willReturn("Quantity must be greater than 0");
+
+    BDDMockito.given(this.mockSettlementJobService.submit(toTradeAgreements(messages)))
+        .willThrow(new ConstraintViolationException(Collections.singleton(violation)));
+
+    given()
+        .log().ifValidationFails()
+        .contentType(MediaType.APPLICATION_JSON_VALUE)
+        .body(objectMapper.writeValueAsString(messages))
+        .when()
+        .post("/settlementEngine/jobs?requestId=1234")
+        .then()
+        .log().ifValidationFails()
+        .statusCode(HttpStatus.BAD_REQUEST.value())
+        .body("message", is("Quantity must be greater than 0. "));
+  }
+
+  @Test
+  public void testGetSettlementJob() {
+    SettlementJob job = SettlementJob.builder().id("job-1").status(Status.RUNNING)
+        .agreementCount(3).missionIds(Arrays.asList(MISSION_ID_1, MISSION_ID_1 + 1)).build();
+
+    BDDMockito.given(this.mockSettlementJobService.getJob("job-1")).willReturn(Optional.of(job));
+
+    given()
+        .log().ifValidationFails()
+        .accept(MediaType.APPLICATION_JSON_VALUE)
+        .when()
+        .get("/settlementEngine/jobs/job-1?requestId=1234")
+        .then()
+        .log().ifValidationFails()
+        .statusCode(HttpStatus.OK.value())
+        .body("status", is("RUNNING"))
+        .body("agreementCount", is(3))
+        .body("spawnedCount", is(2))
+        .body("spawnedMissions", is(Arrays.asList("/settlementEngine/mission/" + MISSION_ID_1,
+            "/settlementEngine/mission/" + (MISSION_ID_1 + 1))));
+  }
+
+  @Test
+  public void testGetSettlementJobNotFound() {
+    BDDMockito.given(this.mockSettlementJobService.getJob("job-2")).willReturn(Optional.empty());
+
+    given()
+        .log().ifValidationFails()
+        .accept(MediaType.APPLICATION_JSON_VALUE)
+        .when()
+        .get("/settlementEngine/jobs/job-2?requestId=1234")
+        .then()
+        .log().ifValidationFails()
+        .statusCode(HttpStatus.NOT_FOUND.value());
+  }
+
   private List<TradeAgreement> toTradeAgreements(TradeAgreementMessages messages) {
     return tradeAgreementTranslator.translate(messages);
   }
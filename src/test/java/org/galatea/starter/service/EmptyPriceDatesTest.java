@@ -0,0 +1,66 @@
+package org.galatea.starter.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.galatea.starter.domain.EmptyPriceDateRepository;
+import org.galatea.starter.domain.IexEmptyPriceDate;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class EmptyPriceDatesTest {
+
+  private static final long TTL_MS = 60_000;
+  private static final Instant NOW = Instant.parse("2022-02-04T15:00:00Z");
+  private static final LocalDate FIRST = LocalDate.parse("2022-02-01");
+  private static final LocalDate SECOND = LocalDate.parse("2022-02-02");
+
+  private final EmptyPriceDateRepository repository = mock(EmptyPriceDateRepository.class);
+  private final EmptyPriceDates emptyPriceDates =
+      new EmptyPriceDates(repository, Clock.fixed(NOW, ZoneOffset.UTC), TTL_MS);
+
+  @Test
+  public void testExpiredMarkersAreNotKnownEmpty() {
+    when(repository.findBySymbolAndDateBetween("SNOW", FIRST, SECOND)).thenReturn(Arrays.asList(
+        new IexEmptyPriceDate("SNOW", FIRST, NOW.minusMillis(TTL_MS)),
+        new IexEmptyPriceDate("SNOW", SECOND, NOW.minusMillis(TTL_MS + 1))));
+
+    assertThat(emptyPriceDates.getKnownEmpty("SNOW", FIRST, SECOND)).containsExactly(FIRST);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testMarkingRefreshesExistingMarkers() {
+    IexEmptyPriceDate expired = new IexEmptyPriceDate("SNOW", FIRST, NOW.minusMillis(TTL_MS + 1));
+    when(repository.findBySymbolAndDateBetween("SNOW", FIRST, SECOND))
+        .thenReturn(Collections.singletonList(expired));
+
+    emptyPriceDates.markEmpty("SNOW", Arrays.asList(SECOND, FIRST));
+
+    ArgumentCaptor<List<IexEmptyPriceDate>> saved = ArgumentCaptor.forClass(List.class);
+    verify(repository).saveAll(saved.capture());
+    assertThat(saved.getValue()).hasSize(2);
+    assertThat(saved.getValue().get(0)).isSameAs(expired);
+    assertThat(saved.getValue()).allSatisfy(marker ->
+        assertThat(marker.getCheckedAt()).isEqualTo(NOW));
+  }
+
+  @Test
+  public void testPurgeDeletesMarkersOlderThanTheTtl() {
+    when(repository.deleteByCheckedAtBefore(any())).thenReturn(3);
+
+    emptyPriceDates.purgeExpired();
+
+    verify(repository).deleteByCheckedAtBefore(NOW.minusMillis(TTL_MS));
+  }
+}
@@ -0,0 +1,110 @@
+package org.galatea.starter.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.galatea.starter.domain.IexHistoricalPrices;
+import org.galatea.starter.domain.IexSymbolChart;
+import org.junit.Test;
+import org.springframework.core.task.SyncTaskExecutor;
+
+public class EndOfDayPrefetcherTest {
+
+  private static final ZoneId NEW_YORK = ZoneId.of("America/New_York");
+  // A Friday, after the close
+  private static final Clock FRIDAY =
+      Clock.fixed(Instant.parse("2022-02-04T22:30:00Z"), NEW_YORK);
+
+  private final IexClient iexClient = mock(IexClient.class);
+  private final HistoricalPricesWriter writer = mock(HistoricalPricesWriter.class);
+  private final PriceSeriesCache cache = mock(PriceSeriesCache.class);
+
+  @Test
+  public void testWatchlistIsFetchedInBatchCalls() {
+    when(iexClient.getHistoricalPricesForSymbolsByRange("IBM,AAPL", "5d"))
+        .thenReturn(charts("IBM", "AAPL"));
+    when(iexClient.getHistoricalPricesForSymbolsByRange("MSFT", "5d"))
+        .thenReturn(charts("MSFT"));
+
+    int prices = prefetcher(FRIDAY, 2, "ibm", " AAPL", "IBM", "", "msft").prefetch();
+
+    // Two prices per symbol, the one dated after today being dropped
+    assertThat(prices).isEqualTo(6);
+    for (String symbol : Arrays.asList("IBM", "AAPL", "MSFT")) {
+      List<IexHistoricalPrices> stored = Arrays.asList(
+          price(symbol, "2022-02-03"), price(symbol, "2022-02-04"));
+      verify(writer).write(symbol, stored);
+      verify(writer).flush(symbol);
+      verify(cache).merge(symbol, stored);
+    }
+  }
+
+  @Test
+  public void testFailedCallOnlySkipsItsSymbols() {
+    when(iexClient.getHistoricalPricesForSymbolsByRange("IBM", "5d"))
+        .thenThrow(new IexUnavailableException("Iex is down"));
+    when(iexClient.getHistoricalPricesForSymbolsByRange("AAPL", "5d"))
+        .thenReturn(charts("AAPL"));
+
+    int prices = prefetcher(FRIDAY, 1, "IBM", "AAPL").prefetch();
+
+    assertThat(prices).isEqualTo(2);
+    verify(writer, never()).write(eq("IBM"), any());
+    verify(writer).flush("AAPL");
+  }
+
+  @Test
+  public void testNothingIsFetchedWhenTheMarketDidNotTrade() {
+    Clock saturday = Clock.fixed(Instant.parse("2022-02-05T22:30:00Z"), NEW_YORK);
+
+    prefetcher(saturday, 100, "IBM").prefetchAfterClose();
+
+    verify(iexClient, never()).getHistoricalPricesForSymbolsByRange(anyString(), anyString());
+  }
+
+  @Test
+  public void testNothingIsFetchedWithoutAWatchlist() {
+    prefetcher(FRIDAY, 100, "").prefetchAfterClose();
+
+    verifyZeroInteractions(iexClient, writer, cache);
+  }
+
+  private EndOfDayPrefetcher prefetcher(final Clock clock, final int symbolsPerCall,
+      final String... watchlist) {
+    return new EndOfDayPrefetcher(iexClient, writer, cache,
+        new TradingCalendar(Collections.emptyList()), clock, new SyncTaskExecutor(), watchlist,
+        symbolsPerCall, "5d");
+  }
+
+  private static Map<String, IexSymbolChart> charts(final String... symbols) {
+    Map<String, IexSymbolChart> charts = new HashMap<>();
+    for (String symbol : symbols) {
+      // Batch charts leave the symbol out of each price
+      charts.put(symbol, new IexSymbolChart(Arrays.asList(price(null, "2022-02-03"),
+          price(null, "2022-02-04"), price(null, "2022-02-07"))));
+    }
+    return charts;
+  }
+
+  private static IexHistoricalPrices price(final String symbol, final String date) {
+    BigDecimal price = new BigDecimal("100.5");
+    return IexHistoricalPrices.builder().symbol(symbol).date(date).open(price).high(price)
+        .low(price).close(price).volume(1000).build();
+  }
+}
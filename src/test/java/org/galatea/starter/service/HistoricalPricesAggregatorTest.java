@@ -0,0 +1,114 @@
+package org.galatea.starter.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import org.galatea.starter.domain.BarInterval;
+import org.galatea.starter.domain.IexAggregatedPrices;
+import org.galatea.starter.domain.IexHistoricalPrices;
+import org.galatea.starter.domain.PriceBar;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.task.SyncTaskExecutor;
+
+public class HistoricalPricesAggregatorTest {
+
+  private final HistoricalPricesStreamer streamer = mock(HistoricalPricesStreamer.class);
+  private final HistoricalPricesAggregator aggregator =
+      new HistoricalPricesAggregator(streamer, new SyncTaskExecutor(), 10);
+
+  private final List<IexHistoricalPrices> prices = Arrays.asList(
+      price("2022-01-27", "10", 100),
+      price("2022-01-28", "11", 100),
+      // Iex sometimes has no price for a day, which is skipped
+      IexHistoricalPrices.builder().symbol("IBM").date("2022-01-31").build(),
+      price("2022-02-01", "12", 300),
+      price("2022-02-02", "9", 100),
+      price("2022-02-03", "12", 100));
+
+  @Before
+  @SuppressWarnings("unchecked")
+  public void setUp() {
+    when(streamer.prepare(anyList(), any())).thenAnswer(invocation -> invocation.getArgument(0));
+    doAnswer(invocation -> {
+      prices.forEach(invocation.<Consumer<IexHistoricalPrices>>getArgument(2));
+      return null;
+    }).when(streamer).forEachHistoricalPrice(eq(Collections.singletonList("IBM")), any(), any());
+  }
+
+  @Test
+  public void testMonthlyBars() {
+    IexAggregatedPrices aggregated =
+        aggregator.aggregate(Collections.singletonList("ibm"), "1m", BarInterval.MONTH, 2);
+
+    List<PriceBar> bars = aggregated.getBars().get("IBM");
+    assertThat(bars).hasSize(2);
+    assertThat(bars.get(0).getStart()).isEqualTo("2022-01-27");
+    assertThat(bars.get(0).getEnd()).isEqualTo("2022-01-28");
+    assertThat(bars.get(0).getScaledClose()).isEqualTo(110_000L);
+    assertThat(bars.get(0).getSimpleReturn()).isNull();
+
+    PriceBar february = bars.get(1);
+    assertThat(february.getScaledOpen()).isEqualTo(120_000L);
+    assertThat(february.getScaledHigh()).isEqualTo(120_000L);
+    assertThat(february.getScaledLow()).isEqualTo(90_000L);
+    assertThat(february.getScaledClose()).isEqualTo(120_000L);
+    assertThat(february.getVolume()).isEqualTo(500L);
+    // Every price of a day is its close here, so this is the volume weighted close
+    assertThat(february.getScaledVwap()).isEqualTo(114_000L);
+    assertThat(february.getSimpleReturn()).isCloseTo(12.0 / 11 - 1, offset(1e-12));
+    assertThat(february.getLogReturn()).isCloseTo(Math.log(12.0 / 11), offset(1e-12));
+  }
+
+  @Test
+  public void testVolatilityIsOverTheLastDailyReturns() {
+    List<PriceBar> bars = aggregator.aggregate(Collections.singletonList("IBM"), "1m",
+        BarInterval.DAY, 3).getBars().get("IBM");
+
+    assertThat(bars).hasSize(5);
+    // Three daily returns are needed, so the first three days have no volatility yet
+    assertThat(bars.get(2).getVolatility()).isNull();
+    assertThat(bars.get(3).getVolatility())
+        .isCloseTo(sampleStdDev(Math.log(11.0 / 10), Math.log(12.0 / 11), Math.log(9.0 / 12)),
+            offset(1e-12));
+    assertThat(bars.get(4).getVolatility())
+        .isCloseTo(sampleStdDev(Math.log(12.0 / 11), Math.log(9.0 / 12), Math.log(12.0 / 9)),
+            offset(1e-12));
+  }
+
+  @Test
+  public void testFailedSymbolsAreReportedAsErrors() {
+    when(streamer.prepare(eq(Collections.singletonList("ZZZZ")), any()))
+        .thenThrow(new IexUnavailableException("Iex is down"));
+
+    IexAggregatedPrices aggregated =
+        aggregator.aggregate(Arrays.asList("IBM", "ZZZZ"), "1m", BarInterval.WEEK, 20);
+
+    assertThat(aggregated.getBars()).containsOnlyKeys("IBM");
+    assertThat(aggregated.getErrors()).containsOnlyKeys("ZZZZ");
+  }
+
+  private static IexHistoricalPrices price(final String date, final String close,
+      final long volume) {
+    BigDecimal price = new BigDecimal(close);
+    return IexHistoricalPrices.builder().symbol("IBM").date(date).open(price).high(price)
+        .low(price).close(price).volume(volume).build();
+  }
+
+  private static double sampleStdDev(final double... values) {
+    double mean = Arrays.stream(values).average().orElse(0);
+    double squares = Arrays.stream(values).map(value -> (value - mean) * (value - mean)).sum();
+    return Math.sqrt(squares / (values.length - 1));
+  }
+}
@@ -0,0 +1,145 @@
+package org.galatea.starter.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.galatea.starter.domain.IexHistoricalPrices;
+import org.galatea.starter.domain.IexHistoricalPricesDB;
+import org.galatea.starter.domain.PriceStore;
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataIntegrityViolationException;
+
+public class HistoricalPricesWriterTest {
+
+  private final PriceStore priceStore = mock(PriceStore.class);
+
+  private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private HistoricalPricesWriter writer;
+
+  @After
+  public void shutdown() throws Exception {
+    writer.destroy();
+  }
+
+  @Test
+  public void testPricesArePendingUntilStoredInTheBackground() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    willAnswer(invocation -> release.await(5, TimeUnit.SECONDS))
+        .given(priceStore).saveAll(anyCollection());
+    writer = new HistoricalPricesWriter(priceStore, meterRegistry, 100, 500, 10, 3);
+
+    writer.write("IBM", Arrays.asList(price("IBM", "2022-02-01"), price("IBM", "2022-02-02")));
+
+    assertThat(writer.hasPending("IBM")).isTrue();
+    assertThat(writer.getPending("IBM", LocalDate.parse("2022-02-02"),
+        LocalDate.parse("2022-02-02"))).extracting(IexHistoricalPrices::getDate)
+        .containsExactly("2022-02-02");
+    assertThat(meterRegistry.get("iex.prices.write-behind.pending").gauge().value())
+        .isEqualTo(2);
+
+    release.countDown();
+    await().until(() -> writer.pendingRowCount() == 0);
+    assertThat(writer.hasPending("IBM")).isFalse();
+    assertThat(storedDates()).containsExactly(
+        LocalDate.parse("2022-02-01"), LocalDate.parse("2022-02-02"));
+  }
+
+  @Test
+  public void testStoredDatesAreNotStoredAgain() {
+    given(priceStore.findDatesBySymbolAndDateBetween(eq("IBM"), any(), any()))
+        .willReturn(Collections.singletonList(LocalDate.parse("2022-02-01")));
+    writer = new HistoricalPricesWriter(priceStore, meterRegistry, 100, 500, 10, 3);
+
+    writer.write("IBM", Arrays.asList(price("IBM", "2022-02-01"), price("IBM", "2022-02-02"),
+        price("IBM", "2022-02-02")));
+    writer.flush("IBM");
+
+    assertThat(storedDates()).containsExactly(LocalDate.parse("2022-02-02"));
+    assertThat(writer.pendingRowCount()).isZero();
+  }
+
+  @Test
+  public void testPricesAreStoredInPlaceOncePendingRowsAreFull() {
+    writer = new HistoricalPricesWriter(priceStore, meterRegistry, 1, 500, 10, 3);
+
+    writer.write("IBM", Arrays.asList(price("IBM", "2022-02-01"), price("IBM", "2022-02-02")));
+
+    // Stored before write returned, without ever being pending
+    assertThat(writer.hasPending("IBM")).isFalse();
+    assertThat(storedDates()).hasSize(2);
+  }
+
+  @Test
+  public void testPricesThatKeepFailingToStoreAreDropped() {
+    willThrow(new IllegalStateException("The database is down"))
+        .given(priceStore).saveAll(anyCollection());
+    writer = new HistoricalPricesWriter(priceStore, meterRegistry, 100, 500, 10, 3);
+
+    writer.write("IBM", Arrays.asList(price("IBM", "2022-02-01"), price("IBM", "2022-02-02")));
+
+    await().until(() -> writer.pendingRowCount() == 0);
+    assertThat(writer.hasPending("IBM")).isFalse();
+    verify(priceStore, times(3)).saveAll(anyCollection());
+  }
+
+  @Test
+  public void testPricesStoredElsewhereMeanwhileAreSkipped() {
+    // Another instance stores 2022-02-01 after it was checked, so the index refuses it
+    List<LocalDate> stored = new ArrayList<>();
+    willAnswer(invocation -> {
+      Collection<IexHistoricalPricesDB> entities = invocation.getArgument(0);
+      for (IexHistoricalPricesDB entity : entities) {
+        if (entity.getDate().equals(LocalDate.parse("2022-02-01"))) {
+          throw new DataIntegrityViolationException("ux_iex_historical_prices_symbol_date");
+        }
+      }
+      entities.forEach(entity -> stored.add(entity.getDate()));
+      return null;
+    }).given(priceStore).saveAll(anyCollection());
+    writer = new HistoricalPricesWriter(priceStore, meterRegistry, 100, 500, 10, 3);
+
+    writer.write("IBM", Arrays.asList(price("IBM", "2022-02-01"), price("IBM", "2022-02-02"),
+        price("IBM", "2022-02-03")));
+
+    await().until(() -> writer.pendingRowCount() == 0);
+    assertThat(stored).containsExactly(
+        LocalDate.parse("2022-02-02"), LocalDate.parse("2022-02-03"));
+  }
+
+  private List<LocalDate> storedDates() {
+    ArgumentCaptor<Collection<IexHistoricalPricesDB>> saved =
+        ArgumentCaptor.forClass(Collection.class);
+    verify(priceStore).saveAll(saved.capture());
+    List<LocalDate> dates = new ArrayList<>();
+    saved.getValue().forEach(entity -> dates.add(entity.getDate()));
+    return dates;
+  }
+
+  private static IexHistoricalPrices price(final String symbol, final String date) {
+    return IexHistoricalPrices.builder().symbol(symbol).date(date).close(BigDecimal.TEN)
+        .high(BigDecimal.TEN).low(BigDecimal.ONE).open(BigDecimal.ONE).volume(100).build();
+  }
+}
@@ -0,0 +1,112 @@
+package org.galatea.starter.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.Test;
+
+public class IexBackfillPlannerTest {
+
+  private static final LocalDate TODAY = LocalDate.parse("2022-02-04");
+
+  // No holidays, so every weekday is a trading day
+  private final IexBackfillPlanner planner =
+      new IexBackfillPlanner(10, new TradingCalendar(Collections.emptyList()));
+
+  @Test
+  public void testSingleMissingDateIsRequestedAlone() {
+    List<LocalDate> requested = weekdays("2022-02-01", "2022-02-03");
+    List<LocalDate> missing = dates("2022-02-01");
+
+    IexBackfillPlan plan = planner.plan(requested, missing, TODAY);
+
+    assertThat(plan.getRange()).isEmpty();
+    assertThat(plan.getSingleDates()).isEqualTo(missing);
+  }
+
+  @Test
+  public void testRecentRunIsCoveredByOneRangeCall() {
+    List<LocalDate> requested = weekdays("2022-02-01", "2022-02-03");
+    List<LocalDate> missing = dates("2022-02-01", "2022-02-02");
+
+    IexBackfillPlan plan = planner.plan(requested, missing, TODAY);
+
+    assertThat(plan.getRange()).contains(IexChartRange.FIVE_DAYS);
+    assertThat(plan.getSingleDates()).isEmpty();
+    assertThat(plan.callCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void testScatteredOldDatesAreRequestedAlone() {
+    List<LocalDate> requested = weekdays("2020-01-01", "2022-02-03");
+    List<LocalDate> missing = dates("2020-03-02", "2021-06-01");
+
+    IexBackfillPlan plan = planner.plan(requested, missing, TODAY);
+
+    assertThat(plan.getRange()).isEmpty();
+    assertThat(plan.getSingleDates()).isEqualTo(missing);
+  }
+
+  @Test
+  public void testOldDateAndRecentRunAreSplit() {
+    List<LocalDate> requested = weekdays("2021-01-04", "2022-02-03");
+    List<LocalDate> missing = dates("2021-01-05", "2022-02-01", "2022-02-02", "2022-02-03");
+
+    IexBackfillPlan plan = planner.plan(requested, missing, TODAY);
+
+    assertThat(plan.getRange()).contains(IexChartRange.FIVE_DAYS);
+    assertThat(plan.getSingleDates()).isEqualTo(dates("2021-01-05"));
+  }
+
+  @Test
+  public void testLongRunIsCoveredByLargerRange() {
+    List<LocalDate> requested = weekdays("2021-12-01", "2022-02-03");
+    List<LocalDate> missing = weekdays("2021-12-20", "2022-02-03");
+
+    IexBackfillPlan plan = planner.plan(requested, missing, TODAY);
+
+    assertThat(plan.getRange()).contains(IexChartRange.THREE_MONTHS);
+    assertThat(plan.getSingleDates()).isEmpty();
+  }
+
+  @Test
+  public void testDateOlderThanEveryRangeIsRequestedAlone() {
+    List<LocalDate> missing = dates("2010-06-01", "2010-06-02");
+
+    IexBackfillPlan plan = planner.plan(missing, missing, TODAY);
+
+    assertThat(plan.getRange()).isEmpty();
+    assertThat(plan.getSingleDates()).isEqualTo(missing);
+  }
+
+  @Test
+  public void testGroupIntoRuns() {
+    List<LocalDate> requested = weekdays("2022-01-24", "2022-02-03");
+    List<LocalDate> missing = dates("2022-01-24", "2022-01-25", "2022-01-28", "2022-01-31",
+        "2022-02-03");
+
+    List<List<LocalDate>> runs = planner.groupIntoRuns(requested, missing);
+
+    assertThat(runs).containsExactly(
+        dates("2022-01-24", "2022-01-25"),
+        dates("2022-01-28", "2022-01-31"),
+        dates("2022-02-03"));
+    assertThat(planner.groupIntoRuns(requested, Collections.emptyList())).isEmpty();
+  }
+
+  private static List<LocalDate> dates(final String... dates) {
+    return Arrays.stream(dates).map(LocalDate::parse).collect(Collectors.toList());
+  }
+
+  private static List<LocalDate> weekdays(final String start, final String end) {
+    return LocalDate.parse(start).datesUntil(LocalDate.parse(end).plusDays(1))
+        .filter(date -> date.getDayOfWeek() != DayOfWeek.SATURDAY
+            && date.getDayOfWeek() != DayOfWeek.SUNDAY)
+        .collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,67 @@
+package org.galatea.starter.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collections;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import org.galatea.starter.ASpringTest;
+import org.galatea.starter.domain.IexHistoricalPricesDB;
+import org.galatea.starter.domain.PriceStore;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@SpringBootTest
+public class JpaPriceStoreTest extends ASpringTest {
+
+  private static final LocalDate DATE = LocalDate.parse("2022-02-01");
+
+  @Autowired
+  private PriceStore priceStore;
+
+  @Autowired
+  private StoredSymbolIndex storedSymbolIndex;
+
+  @Autowired
+  private PlatformTransactionManager transactionManager;
+
+  @PersistenceContext
+  private EntityManager entityManager;
+
+  @Test
+  public void testCommittedRowsAreRecorded() {
+    new TransactionTemplate(transactionManager).execute(status -> {
+      priceStore.saveAll(Collections.singletonList(price("COMMIT")));
+      // Not recorded until the transaction commits
+      entityManager.flush();
+      assertThat(storedSymbolIndex.contains("COMMIT")).isFalse();
+      return null;
+    });
+
+    assertThat(storedSymbolIndex.isComplete("COMMIT", DATE, DATE)).isTrue();
+  }
+
+  @Test
+  public void testRolledBackRowsAreNotRecorded() {
+    new TransactionTemplate(transactionManager).execute(status -> {
+      priceStore.saveAll(Collections.singletonList(price("ROLLBACK")));
+      // Make sure the insert runs before the rollback
+      entityManager.flush();
+      status.setRollbackOnly();
+      return null;
+    });
+
+    assertThat(storedSymbolIndex.isComplete("ROLLBACK", DATE, DATE)).isFalse();
+    assertThat(storedSymbolIndex.contains("ROLLBACK")).isFalse();
+  }
+
+  private static IexHistoricalPricesDB price(final String symbol) {
+    return new IexHistoricalPricesDB(symbol, BigDecimal.TEN, BigDecimal.TEN, BigDecimal.ONE,
+        BigDecimal.ONE, 100, DATE);
+  }
+}
@@ -0,0 +1,110 @@
+package org.galatea.starter.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import org.galatea.starter.domain.IexLastTradedPrice;
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class LastTradedPriceBatcherTest {
+
+  private final IexAsyncClient iexClient = mock(IexAsyncClient.class);
+
+  private LastTradedPriceBatcher batcher;
+
+  @After
+  public void shutdown() {
+    batcher.destroy();
+  }
+
+  @Test
+  public void testConcurrentRequestsShareOneCall() {
+    batcher = new LastTradedPriceBatcher(iexClient, 200, 100, 2);
+    given(iexClient.getLastTradedPriceForSymbols(any()))
+        .willReturn(completed(price("AAPL"), price("FB"), price("IBM")));
+
+    CompletableFuture<List<IexLastTradedPrice>> first = CompletableFuture
+        .supplyAsync(() -> batcher.getLastTradedPrices(Arrays.asList("FB", "AAPL")));
+    CompletableFuture<List<IexLastTradedPrice>> second = CompletableFuture
+        .supplyAsync(() -> batcher.getLastTradedPrices(Arrays.asList("ibm", "FB")));
+
+    assertThat(symbols(first.join())).containsExactly("FB", "AAPL");
+    assertThat(symbols(second.join())).containsExactly("IBM", "FB");
+    ArgumentCaptor<List<String>> sent = ArgumentCaptor.forClass(List.class);
+    verify(iexClient, times(1)).getLastTradedPriceForSymbols(sent.capture());
+    assertThat(sent.getValue()).containsExactlyInAnyOrder("FB", "AAPL", "IBM");
+  }
+
+  @Test
+  public void testFullBatchIsSentWithoutWaitingForWindow() {
+    // The window is far longer than the test would be allowed to take
+    batcher = new LastTradedPriceBatcher(iexClient, 60_000, 2, 2);
+    given(iexClient.getLastTradedPriceForSymbols(any()))
+        .willReturn(completed(price("AAPL"), price("FB")));
+
+    assertThat(symbols(batcher.getLastTradedPrices(Arrays.asList("AAPL", "FB"))))
+        .containsExactly("AAPL", "FB");
+  }
+
+  @Test
+  public void testUnknownSymbolIsLeftOut() {
+    batcher = new LastTradedPriceBatcher(iexClient, 1, 100, 1);
+    given(iexClient.getLastTradedPriceForSymbols(any()))
+        .willReturn(completed(price("FB")));
+
+    assertThat(symbols(batcher.getLastTradedPrices(Arrays.asList("NOPE", "FB"))))
+        .containsExactly("FB");
+  }
+
+  @Test
+  public void testFailedCallFailsEveryCaller() {
+    batcher = new LastTradedPriceBatcher(iexClient, 1, 100, 1);
+    given(iexClient.getLastTradedPriceForSymbols(any()))
+        .willReturn(CompletableFuture.failedFuture(new IllegalStateException("Iex is down")));
+
+    assertThatThrownBy(() -> batcher.getLastTradedPrices(Collections.singletonList("FB")))
+        .isInstanceOf(IllegalStateException.class);
+  }
+
+  @Test
+  public void testAsyncRequestCompletesOnceIexAnswers() {
+    batcher = new LastTradedPriceBatcher(iexClient, 1, 100, 1);
+    CompletableFuture<List<IexLastTradedPrice>> call = new CompletableFuture<>();
+    given(iexClient.getLastTradedPriceForSymbols(any())).willReturn(call);
+
+    CompletableFuture<List<IexLastTradedPrice>> prices =
+        batcher.getLastTradedPricesAsync(Collections.singletonList("FB")).toCompletableFuture();
+    verify(iexClient, timeout(1000)).getLastTradedPriceForSymbols(any());
+    assertThat(prices).isNotDone();
+
+    call.complete(Collections.singletonList(price("FB")));
+    assertThat(symbols(prices.join())).containsExactly("FB");
+  }
+
+  private static CompletableFuture<List<IexLastTradedPrice>> completed(
+      final IexLastTradedPrice... prices) {
+    return CompletableFuture.completedFuture(Arrays.asList(prices));
+  }
+
+  private static IexLastTradedPrice price(final String symbol) {
+    return IexLastTradedPrice.builder().symbol(symbol).price(BigDecimal.TEN).size(100).build();
+  }
+
+  private static List<String> symbols(final List<IexLastTradedPrice> prices) {
+    return prices.stream().map(IexLastTradedPrice::getSymbol).collect(Collectors.toList());
+  }
+}
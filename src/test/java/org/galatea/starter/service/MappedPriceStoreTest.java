@@ -0,0 +1,132 @@
+package org.galatea.starter.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+import org.galatea.starter.domain.IexHistoricalPrices;
+import org.galatea.starter.domain.IexHistoricalPricesDB;
+import org.galatea.starter.domain.ScaledPrices;
+import org.galatea.starter.domain.SymbolCoverage;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MappedPriceStoreTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testStoredPricesAreReadByWindow() {
+    MappedPriceStore store = store(2);
+
+    store.saveAll(Arrays.asList(row("IBM", "2022-02-01", 1310000),
+        row("IBM", "2022-02-02", 1320000), row("AAPL", "2022-02-01", 1700000)));
+    store.saveAll(Arrays.asList(row("IBM", "2022-02-03", 1330000),
+        row("IBM", "2022-02-04", 1340000)));
+
+    assertThat(store.findDatesBySymbolAndDateBetween("IBM", date("2022-02-02"),
+        date("2022-02-03"))).containsExactly(date("2022-02-02"), date("2022-02-03"));
+    IexHistoricalPricesDB found = store.findBySymbolAndDate("IBM", date("2022-02-04"));
+    assertThat(found.getSymbol()).isEqualTo("IBM");
+    assertThat(found.getScaledClose()).isEqualTo(1340000L);
+    assertThat(found.getScaledOpen()).isEqualTo(ScaledPrices.MISSING);
+    assertThat(found.getVolume()).isEqualTo(1000L);
+    assertThat(store.findBySymbolAndDate("IBM", date("2022-02-07"))).isNull();
+    assertThat(store.findBySymbol("MSFT")).isEmpty();
+
+    List<IexHistoricalPrices> streamed = new ArrayList<>();
+    store.forEachBySymbolAndDateBetween("IBM", date("2022-01-01"), date("2022-02-02"),
+        streamed::add);
+    assertThat(streamed).extracting(IexHistoricalPrices::getDate)
+        .containsExactly("2022-02-01", "2022-02-02");
+  }
+
+  @Test
+  public void testOlderPricesAreMergedInDateOrder() {
+    MappedPriceStore store = store(100);
+    store.saveAll(Arrays.asList(row("IBM", "2022-02-02", 1), row("IBM", "2022-02-04", 2)));
+
+    // One date is already stored, and is kept as it was
+    store.saveAll(Arrays.asList(row("IBM", "2022-02-03", 3), row("IBM", "2022-02-01", 4),
+        row("IBM", "2022-02-04", 5)));
+
+    assertThat(store.findBySymbol("IBM")).extracting(IexHistoricalPricesDB::getScaledClose)
+        .containsExactly(4L, 1L, 3L, 2L);
+  }
+
+  @Test
+  public void testReplacedFilesAreReadThroughTheSameStore() throws Exception {
+    MappedPriceStore store = store(1);
+    store.saveAll(Arrays.asList(row("IBM", "2022-02-03", 1)));
+
+    store.saveAll(Arrays.asList(row("IBM", "2022-02-02", 2)));
+    store.saveAll(Arrays.asList(row("IBM", "2022-02-01", 3)));
+    // Appended to the latest generation
+    store.saveAll(Arrays.asList(row("IBM", "2022-02-04", 4)));
+
+    assertThat(store.findBySymbol("IBM")).extracting(IexHistoricalPricesDB::getScaledClose)
+        .containsExactly(3L, 2L, 1L, 4L);
+    // Only the latest generation is left
+    try (Stream<Path> files = Files.list(folder.getRoot().toPath().resolve("prices"))) {
+      assertThat(files.map(path -> path.getFileName().toString()))
+          .containsExactly("IBM.2.prices");
+    }
+    assertThat(store(1).findBySymbol("IBM")).extracting(IexHistoricalPricesDB::getScaledClose)
+        .containsExactly(3L, 2L, 1L, 4L);
+  }
+
+  @Test
+  public void testHistoryIsKeptAcrossRestarts() {
+    MappedPriceStore store = store(1);
+    store.saveAll(Arrays.asList(row("BRK.B", "2022-02-01", 1), row("BRK.B", "2022-02-02", 2)));
+    store.saveAll(Arrays.asList(row("BRK.B", "2022-01-31", 3)));
+
+    MappedPriceStore reopened = store(1);
+
+    assertThat(reopened.findCoverageOfEverySymbol()).containsExactly(
+        new SymbolCoverage("BRK.B", date("2022-01-31"), date("2022-02-02"), 3));
+    assertThat(reopened.findBySymbol("BRK.B")).extracting(IexHistoricalPricesDB::getScaledClose)
+        .containsExactly(3L, 1L, 2L);
+  }
+
+  @Test
+  public void testListenersAreToldOfStoredRows() {
+    MappedPriceStore store = store(100);
+    store.saveAll(Arrays.asList(row("IBM", "2022-02-01", 1)));
+    List<LocalDate> told = new ArrayList<>();
+    store.addStoredListener((symbol, date) -> told.add(date));
+
+    store.saveAll(Arrays.asList(row("IBM", "2022-02-01", 1), row("IBM", "2022-02-02", 2)));
+
+    assertThat(told).containsExactly(date("2022-02-02"));
+  }
+
+  @Test
+  public void testSymbolsAreEncodedAsPortableFileNames() {
+    assertThat(MappedPriceStore.encode("BRK.B")).isEqualTo("BRK_002eB");
+    assertThat(MappedPriceStore.decode("BRK_002eB")).isEqualTo("BRK.B");
+    assertThat(MappedPriceStore.decode(MappedPriceStore.encode("ibm^x"))).isEqualTo("ibm^x");
+  }
+
+  private MappedPriceStore store(final int growthRows) {
+    return new MappedPriceStore(folder.getRoot().toPath().resolve("prices").toString(),
+        growthRows);
+  }
+
+  private static IexHistoricalPricesDB row(final String symbol, final String date,
+      final long close) {
+    return IexHistoricalPricesDB.ofScaled(symbol, close, close, close, ScaledPrices.MISSING, 1000,
+        date(date));
+  }
+
+  private static LocalDate date(final String date) {
+    return LocalDate.parse(date);
+  }
+}
@@ -0,0 +1,77 @@
+package org.galatea.starter.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.galatea.starter.domain.IexHistoricalPrices;
+import org.galatea.starter.domain.IexHistoricalPricesDB;
+import org.galatea.starter.domain.PriceSeries;
+import org.junit.Test;
+
+public class PriceSeriesCacheTest {
+
+  @Test
+  public void testSymbolIsAdmittedAfterEnoughMisses() {
+    PriceSeriesCache cache = new PriceSeriesCache(10, 100, 2);
+
+    assertThat(cache.recordMiss("IBM")).isFalse();
+    assertThat(cache.recordMiss("IBM")).isTrue();
+  }
+
+  @Test
+  public void testLeastRecentlyUsedSymbolIsEvicted() {
+    PriceSeriesCache cache = new PriceSeriesCache(2, 100, 1);
+    cache.put(series("IBM", 3));
+    cache.put(series("AAPL", 3));
+    cache.get("IBM");
+
+    cache.put(series("GOOG", 3));
+
+    assertThat(cache.get("IBM")).isPresent();
+    assertThat(cache.get("AAPL")).isEmpty();
+    assertThat(cache.get("GOOG")).isPresent();
+    assertThat(cache.rowCount()).isEqualTo(6);
+  }
+
+  @Test
+  public void testSeriesAreEvictedToStayWithinRowLimit() {
+    PriceSeriesCache cache = new PriceSeriesCache(10, 5, 1);
+    cache.put(series("IBM", 3));
+    cache.put(series("AAPL", 3));
+
+    assertThat(cache.get("IBM")).isEmpty();
+    assertThat(cache.rowCount()).isEqualTo(3);
+
+    cache.put(series("AAPL", 6));
+    assertThat(cache.get("AAPL")).isEmpty();
+    assertThat(cache.rowCount()).isZero();
+  }
+
+  @Test
+  public void testMergeOnlyUpdatesCachedSymbols() {
+    PriceSeriesCache cache = new PriceSeriesCache(10, 100, 1);
+    cache.put(series("IBM", 2));
+    IexHistoricalPrices price = IexHistoricalPrices.builder().symbol("IBM")
+        .close(BigDecimal.TEN).date("2022-03-01").build();
+
+    cache.merge("IBM", Collections.singletonList(price));
+    cache.merge("AAPL", Collections.singletonList(price));
+
+    assertThat(cache.get("IBM").map(PriceSeries::size)).contains(3);
+    assertThat(cache.get("AAPL")).isEmpty();
+    assertThat(cache.rowCount()).isEqualTo(3);
+  }
+
+  private static PriceSeries series(final String symbol, final int rows) {
+    List<IexHistoricalPricesDB> entities = IntStream.range(0, rows)
+        .mapToObj(i -> new IexHistoricalPricesDB(symbol, BigDecimal.ONE, BigDecimal.ONE,
+            BigDecimal.ONE, BigDecimal.ONE, 1L, LocalDate.parse("2022-02-01").plusDays(i)))
+        .collect(Collectors.toList());
+    return PriceSeries.of(symbol, entities);
+  }
+}
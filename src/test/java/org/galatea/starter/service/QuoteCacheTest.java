@@ -0,0 +1,75 @@
+package org.galatea.starter.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Collections;
+import org.galatea.starter.domain.IexLastTradedPrice;
+import org.junit.Test;
+
+public class QuoteCacheTest {
+
+  private final MutableClock clock = new MutableClock(Instant.parse("2022-02-04T16:30:25Z"));
+
+  private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private final QuoteCache cache = new QuoteCache(clock, meterRegistry);
+
+  @Test
+  public void testQuoteIsServedWhileFreshEnough() {
+    cache.putAll(Collections.singletonList(IexLastTradedPrice.builder().symbol("FB")
+        .price(new BigDecimal("186.3011")).size(100).time(1565272860000L).build()));
+    clock.instant = clock.instant.plusMillis(500);
+
+    assertThat(cache.get("fb", 1000).map(IexLastTradedPrice::getPrice))
+        .contains(new BigDecimal("186.3011"));
+    assertThat(cache.get("FB", 499)).isEmpty();
+    assertThat(cache.get("IBM", 1000)).isEmpty();
+
+    assertThat(meterRegistry.get("iex.quote.cache").tag("result", "hit").counter().count())
+        .isEqualTo(1);
+    assertThat(meterRegistry.get("iex.quote.cache").tag("result", "miss").counter().count())
+        .isEqualTo(2);
+  }
+
+  @Test
+  public void testRefetchedQuoteReplacesStaleOne() {
+    cache.putAll(Collections.singletonList(
+        IexLastTradedPrice.builder().symbol("FB").price(BigDecimal.ONE).build()));
+    clock.instant = clock.instant.plusSeconds(5);
+    cache.putAll(Collections.singletonList(
+        IexLastTradedPrice.builder().symbol("FB").price(BigDecimal.TEN).build()));
+
+    assertThat(cache.get("FB", 0).map(IexLastTradedPrice::getPrice)).contains(BigDecimal.TEN);
+  }
+
+  private static class MutableClock extends Clock {
+
+    private Instant instant;
+
+    MutableClock(final Instant instant) {
+      this.instant = instant;
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(final ZoneId zone) {
+      return this;
+    }
+
+    @Override
+    public Instant instant() {
+      return instant;
+    }
+  }
+}
@@ -0,0 +1,128 @@
+package org.galatea.starter.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+import javax.validation.ConstraintViolation;
+import javax.validation.ConstraintViolationException;
+import org.galatea.starter.domain.SettlementJob;
+import org.galatea.starter.domain.SettlementJob.Status;
+import org.galatea.starter.domain.TradeAgreement;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.junit.Test;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+
+public class SettlementJobServiceTest {
+
+  private static final long RETENTION_MS = 60_000;
+
+  private final SettlementService settlementService = mock(SettlementService.class);
+  private final Clock clock = mock(Clock.class);
+  private final SettlementJobService service = new SettlementJobService(settlementService,
+      new SyncTaskExecutor(), clock, RETENTION_MS);
+
+  @Test
+  public void testJobReportsTheMissionsOfEachStoredBatch() {
+    givenBatchesAreStored(Arrays.asList(1L, 2L), Collections.singletonList(3L));
+
+    SettlementJob job = service.submit(agreements(3));
+
+    assertThat(job.getStatus()).isEqualTo(Status.SUCCEEDED);
+    assertThat(job.getAgreementCount()).isEqualTo(3);
+    assertThat(job.getMissionIds()).containsExactly(1L, 2L, 3L);
+    assertThat(service.getJob(job.getId())).contains(job);
+  }
+
+  @Test
+  public void testFailedJobKeepsTheStoredMissions() {
+    given(settlementService.spawnValidatedMissions(any(), any())).willAnswer(invocation -> {
+      Consumer<List<Long>> spawned = invocation.getArgument(1);
+      spawned.accept(Collections.singletonList(1L));
+      throw new IllegalStateException("The database is down");
+    });
+
+    SettlementJob job = service.submit(agreements(2));
+
+    assertThat(job.getStatus()).isEqualTo(Status.FAILED);
+    assertThat(job.getMissionIds()).containsExactly(1L);
+    assertThat(job.getError()).isEqualTo("An internal application error occurred.");
+  }
+
+  @Test
+  public void testAgreementsAreValidatedOnlyBeforeTheJobIsQueued() {
+    givenBatchesAreStored(Collections.singletonList(1L));
+
+    service.submit(agreements(1));
+
+    verify(settlementService).validate(any());
+    verify(settlementService, never()).spawnMissions(any(), any());
+  }
+
+  @Test
+  public void testInvalidAgreementsAreTurnedAwayBeforeTheJobIsQueued() {
+    ConstraintViolation<?> violation = mock(ConstraintViolation.class);
+    willThrow(new ConstraintViolationException(Collections.singleton(violation)))
+        .given(settlementService).validate(any());
+
+    assertThatThrownBy(() -> service.submit(agreements(2)))
+        .isInstanceOf(ConstraintViolationException.class);
+    verify(settlementService, never()).spawnValidatedMissions(any(), any());
+  }
+
+  @Test
+  public void testJobIsRejectedWhenTheQueueIsFull() {
+    SettlementJobService busy = new SettlementJobService(settlementService, task -> {
+      throw new TaskRejectedException("The queue is full");
+    }, clock, RETENTION_MS);
+
+    assertThatThrownBy(() -> busy.submit(agreements(1)))
+        .isInstanceOf(TaskRejectedException.class);
+  }
+
+  @Test
+  public void testFinishedJobIsEvictedAfterTheRetention() {
+    givenBatchesAreStored(Collections.singletonList(1L));
+    given(clock.millis()).willReturn(1_000L);
+    String id = service.submit(agreements(1)).getId();
+
+    given(clock.millis()).willReturn(1_000L + RETENTION_MS);
+    service.evictFinished();
+    assertThat(service.getJob(id)).isPresent();
+
+    given(clock.millis()).willReturn(1_001L + RETENTION_MS);
+    service.evictFinished();
+    assertThat(service.getJob(id)).isEmpty();
+  }
+
+  @SafeVarargs
+  private final void givenBatchesAreStored(final List<Long>... batches) {
+    given(settlementService.spawnValidatedMissions(any(), any())).willAnswer(invocation -> {
+      Iterator<TradeAgreement> agreements = invocation.getArgument(0);
+      agreements.forEachRemaining(agreement -> { });
+      Consumer<List<Long>> spawned = invocation.getArgument(1);
+      long missions = 0;
+      for (List<Long> batch : batches) {
+        spawned.accept(batch);
+        missions += batch.size();
+      }
+      return missions;
+    });
+  }
+
+  private static List<TradeAgreement> agreements(final int count) {
+    return Collections.nCopies(count, TestDataGenerator.defaultTradeAgreementData().build());
+  }
+}
@@ -0,0 +1,80 @@
+package org.galatea.starter.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.persistence.EntityManagerFactory;
+import org.galatea.starter.Application;
+import org.galatea.starter.domain.TradeAgreement;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Measures the missions per second stored by SettlementService.spawnMissions for posts of 10k
+ * agreements, against the in-memory database of the application, and the statements it prepares
+ * per mission. With ids taken one at a time from the database every mission costs a round trip
+ * for its id before its insert; with the pooled id generator of SettlementMission the ids come
+ * from memory, and the inserts of a post go out as JDBC batches of hibernate.jdbc.batch_size.
+ *
+ * <p>Not a unit test; run it with the test classpath, e.g. from the IDE, and read the figures it
+ * prints. Run it on a checkout from before the pooled generator to compare.
+ */
+public final class SettlementMissionInsertBenchmark {
+
+  private static final int AGREEMENTS_PER_POST = 10_000;
+  private static final int WARMUP_POSTS = 3;
+  private static final int MEASURED_POSTS = 5;
+
+  private SettlementMissionInsertBenchmark() {}
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args ignored.
+   */
+  public static void main(final String[] args) {
+    try (ConfigurableApplicationContext context = new SpringApplicationBuilder(Application.class)
+        .run("--server.port=0", "--spring.jpa.properties.hibernate.generate_statistics=true")) {
+      SettlementService service = context.getBean(SettlementService.class);
+      Statistics statistics = context.getBean(EntityManagerFactory.class)
+          .unwrap(SessionFactory.class).getStatistics();
+      List<TradeAgreement> agreements = agreements();
+
+      for (int i = 0; i < WARMUP_POSTS; i++) {
+        service.spawnMissions(agreements);
+      }
+
+      statistics.clear();
+      long totalNanos = 0;
+      for (int i = 0; i < MEASURED_POSTS; i++) {
+        long start = System.nanoTime();
+        service.spawnMissions(agreements);
+        long nanos = System.nanoTime() - start;
+        totalNanos += nanos;
+        System.out.printf("post %d: %,10.0f missions/s%n", i + 1, missionsPerSecond(1, nanos));
+      }
+
+      System.out.printf("mean:   %,10.0f missions/s, %.3f statements per mission%n",
+          missionsPerSecond(MEASURED_POSTS, totalNanos),
+          (double) statistics.getPrepareStatementCount()
+              / (MEASURED_POSTS * AGREEMENTS_PER_POST));
+    }
+  }
+
+  private static double missionsPerSecond(final int posts, final long nanos) {
+    return posts * AGREEMENTS_PER_POST * 1e9 / nanos;
+  }
+
+  private static List<TradeAgreement> agreements() {
+    List<TradeAgreement> agreements = new ArrayList<>(AGREEMENTS_PER_POST);
+    for (int i = 0; i < AGREEMENTS_PER_POST; i++) {
+      agreements.add(TestDataGenerator.defaultTradeAgreementData()
+          .externalParty("EXT-" + i % 100)
+          .qty(100d + i)
+          .build());
+    }
+    return agreements;
+  }
+}
@@ -4,14 +4,27 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
-import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import javax.validation.ConstraintViolationException;
+import javax.validation.Validation;
+import javax.validation.Validator;
 import org.galatea.starter.ASpringTest;
 import org.galatea.starter.domain.SettlementMission;
 import org.galatea.starter.domain.TradeAgreement;
@@ -31,11 +44,13 @@ public class SettlementServiceTest extends ASpringTest {
   @MockBean
   private IAgreementTransformer mockAgreementTransformer;
 
+  private final Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
   private SettlementService service;
 
   @Before
   public void setup() {
-    service = new SettlementService(mockSettlementMissionRpsy, mockAgreementTransformer);
+    service = newService(100);
   }
 
   @Test
@@ -110,10 +125,60 @@ public class SettlementServiceTest extends ASpringTest {
     given(this.mockSettlementMissionRpsy.saveAll(Mockito.anyList()))
         .willReturn(Collections.singletonList(testSettlementMission));
 
-    Set<Long> missionIds = service.spawnMissions(Collections.singletonList(testTradeAgreement));
+    List<Long> missionIds = service.spawnMissions(Collections.singletonList(testTradeAgreement));
     assertEquals(1, missionIds.size());
   }
 
+  @Test
+  public void testSpawnMissionsInChunksKeepsTheOrderOfTheAgreements() {
+    givenMissionsTakeTheQtyOfTheirAgreementAsId();
+
+    List<Long> missionIds = newService(10).spawnMissions(agreements(25, 0));
+
+    assertEquals(LongStream.rangeClosed(1, 25).boxed().collect(Collectors.toList()), missionIds);
+    // Every chunk is stored together, in one transaction
+    verify(this.mockSettlementMissionRpsy, times(1)).saveAll(anyList());
+  }
+
+  @Test
+  public void testSpawnMissionsFromAStreamStoresBatchesAsTheyAreRead() {
+    givenMissionsTakeTheQtyOfTheirAgreementAsId();
+    List<List<Long>> spawned = new ArrayList<>();
+
+    long missions = newService(100).spawnMissions(agreements(25, 0).iterator(), spawned::add);
+
+    assertEquals(25, missions);
+    assertEquals(Arrays.asList(LongStream.rangeClosed(1, 10).boxed().collect(Collectors.toList()),
+        LongStream.rangeClosed(11, 20).boxed().collect(Collectors.toList()),
+        LongStream.rangeClosed(21, 25).boxed().collect(Collectors.toList())), spawned);
+  }
+
+  @Test
+  public void testSpawnValidatedMissionsDoesNotValidateAgain() {
+    givenMissionsTakeTheQtyOfTheirAgreementAsId();
+    Validator unusedValidator = mock(Validator.class);
+    SettlementService service = new SettlementService(this.mockSettlementMissionRpsy,
+        this.mockAgreementTransformer, unusedValidator, ForkJoinPool.commonPool(), 100, 10);
+
+    long missions = service.spawnValidatedMissions(agreements(25, 0).iterator(), ids -> { });
+
+    assertEquals(25, missions);
+    verifyZeroInteractions(unusedValidator);
+  }
+
+  @Test
+  public void testSpawnMissionsInChunksStoresNothingWhenAnAgreementIsInvalid() {
+    givenMissionsTakeTheQtyOfTheirAgreementAsId();
+
+    try {
+      newService(10).spawnMissions(agreements(25, 23));
+      fail("A ConstraintViolationException was expected but not thrown");
+    } catch (ConstraintViolationException e) {
+      assertEquals(1, e.getConstraintViolations().size());
+    }
+    verify(this.mockSettlementMissionRpsy, never()).saveAll(anyList());
+  }
+
   @Test
   public void testUpdateMission() {
 
@@ -123,8 +188,7 @@ public class SettlementServiceTest extends ASpringTest {
     given(this.mockSettlementMissionRpsy.save(testSettlementMission))
         .willReturn(testSettlementMission);
 
-    SettlementService service =
-        new SettlementService(this.mockSettlementMissionRpsy, this.mockAgreementTransformer);
+    SettlementService service = newService(100);
 
     Optional<SettlementMission> settlementMissionOptional = service.updateMission(35L, testSettlementMission);
     assertEquals((Long) 35L, settlementMissionOptional.get().getId());
@@ -136,8 +200,7 @@ public class SettlementServiceTest extends ASpringTest {
     given(this.mockSettlementMissionRpsy.existsById(35L))
         .willReturn(true);
 
-    SettlementService service =
-        new SettlementService(this.mockSettlementMissionRpsy, this.mockAgreementTransformer);
+    SettlementService service = newService(100);
 
     boolean missionExists = service.missionExists(35L);
     assertTrue(missionExists);
@@ -148,11 +211,38 @@ public class SettlementServiceTest extends ASpringTest {
 
     doNothing().when(this.mockSettlementMissionRpsy).deleteById(35L);
 
-    SettlementService service =
-        new SettlementService(this.mockSettlementMissionRpsy, this.mockAgreementTransformer);
+    SettlementService service = newService(100);
 
     service.deleteMission(35L);
     boolean missionExists = service.missionExists(35L);
     assertFalse(missionExists);
   }
+
+  private SettlementService newService(final int chunkSize) {
+    return new SettlementService(this.mockSettlementMissionRpsy, this.mockAgreementTransformer,
+        validator, ForkJoinPool.commonPool(), chunkSize, 10);
+  }
+
+  /**
+   * Agreements with quantities 1 to count, but for the one at invalidIndex (from 1) whose
+   * quantity is negative; 0 for none.
+   */
+  private static List<TradeAgreement> agreements(final int count, final int invalidIndex) {
+    List<TradeAgreement> agreements = new ArrayList<>(count);
+    for (int i = 1; i <= count; i++) {
+      agreements.add(TestDataGenerator.defaultTradeAgreementData()
+          .qty(i == invalidIndex ? -1d : i).build());
+    }
+    return agreements;
+  }
+
+  private void givenMissionsTakeTheQtyOfTheirAgreementAsId() {
+    given(this.mockAgreementTransformer.transform(any())).willAnswer(invocation -> {
+      TradeAgreement agreement = invocation.getArgument(0);
+      return TestDataGenerator.defaultSettlementMissionData()
+          .id(agreement.getQty().longValue()).qty(agreement.getQty()).build();
+    });
+    given(this.mockSettlementMissionRpsy.saveAll(anyList()))
+        .willAnswer(invocation -> invocation.getArgument(0));
+  }
 }
@@ -0,0 +1,69 @@
+package org.galatea.starter.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import org.galatea.starter.domain.PriceStore;
+import org.galatea.starter.domain.SymbolCoverage;
+import org.junit.Test;
+
+public class StoredSymbolIndexTest {
+
+  private final PriceStore priceStore = mock(PriceStore.class);
+
+  @Test
+  public void testIndexIsLoadedFromTheRepository() {
+    StoredSymbolIndex index = index(new SymbolCoverage("IBM", date("2022-01-31"),
+        date("2022-02-04"), 5));
+
+    assertThat(index.contains("IBM")).isTrue();
+    assertThat(index.contains("AAPL")).isFalse();
+    assertThat(index.isComplete("IBM", date("2022-02-01"), date("2022-02-03"))).isTrue();
+    // Before the first stored date
+    assertThat(index.isComplete("IBM", date("2022-01-28"), date("2022-02-03"))).isFalse();
+  }
+
+  @Test
+  public void testRecordedDatesExtendTheCoverage() {
+    StoredSymbolIndex index = index();
+
+    index.record("IBM", date("2022-02-03"));
+    index.record("IBM", date("2022-02-01"));
+
+    SymbolCoverage coverage = index.getCoverage("IBM").get();
+    assertThat(coverage.getFirstDate()).isEqualTo("2022-02-01");
+    assertThat(coverage.getLastDate()).isEqualTo("2022-02-03");
+    assertThat(coverage.getRowCount()).isEqualTo(2);
+    // 2022-02-02 is missing
+    assertThat(index.isComplete("IBM", date("2022-02-01"), date("2022-02-03"))).isFalse();
+
+    index.record("IBM", date("2022-02-02"));
+
+    assertThat(index.isComplete("IBM", date("2022-02-01"), date("2022-02-03"))).isTrue();
+  }
+
+  @Test
+  public void testWeekendsAreNotGaps() {
+    StoredSymbolIndex index = index(new SymbolCoverage("IBM", date("2022-02-04"),
+        date("2022-02-07"), 2));
+
+    assertThat(index.isComplete("IBM", date("2022-02-04"), date("2022-02-07"))).isTrue();
+  }
+
+  private StoredSymbolIndex index(final SymbolCoverage... coverage) {
+    given(priceStore.findCoverageOfEverySymbol()).willReturn(
+        Arrays.asList(coverage));
+    StoredSymbolIndex index =
+        new StoredSymbolIndex(priceStore, new TradingCalendar(Collections.emptyList()));
+    index.load();
+    return index;
+  }
+
+  private static LocalDate date(final String date) {
+    return LocalDate.parse(date);
+  }
+}
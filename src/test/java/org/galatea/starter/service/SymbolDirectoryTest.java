@@ -0,0 +1,76 @@
+package org.galatea.starter.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.galatea.starter.domain.IexSymbol;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SymbolDirectoryTest {
+
+  private final IexClient iexClient = mock(IexClient.class);
+
+  private final SymbolDirectory directory = new SymbolDirectory(iexClient);
+
+  @Before
+  public void setup() {
+    given(iexClient.getAllSymbols()).willReturn(Arrays.asList(
+        symbol("AAPL", "Apple Inc."),
+        symbol("AA", "Alcoa Corporation"),
+        symbol("GOOG", "Alphabet Inc. - Class C"),
+        symbol("APLE", "Apple Hospitality REIT Inc")));
+  }
+
+  @Test
+  public void testSymbolsAreLoadedOnce() {
+    assertThat(directory.getAllSymbols()).hasSize(4);
+    assertThat(directory.getAllSymbols()).hasSize(4);
+
+    verify(iexClient, times(1)).getAllSymbols();
+  }
+
+  @Test
+  public void testSearchRanksExactThenSymbolThenNameMatches() {
+    assertThat(symbols(directory.search("aa", 10))).containsExactly("AA", "AAPL");
+    assertThat(symbols(directory.search("Appl", 10))).containsExactly("AAPL", "APLE");
+    assertThat(symbols(directory.search("al", 10))).containsExactly("AA", "GOOG");
+    assertThat(symbols(directory.search("a", 2))).containsExactly("AA", "AAPL");
+    assertThat(directory.search("zz", 10)).isEmpty();
+  }
+
+  @Test
+  public void testFailedRefreshKeepsCurrentSymbols() {
+    directory.getAllSymbols();
+    given(iexClient.getAllSymbols()).willThrow(new IllegalStateException("Iex is down"));
+
+    directory.refresh();
+
+    assertThat(directory.getAllSymbols()).hasSize(4);
+  }
+
+  @Test
+  public void testRefreshReplacesSymbols() {
+    directory.getAllSymbols();
+    given(iexClient.getAllSymbols()).willReturn(Arrays.asList(symbol("IBM", "IBM")));
+
+    directory.refresh();
+
+    assertThat(symbols(directory.getAllSymbols())).containsExactly("IBM");
+    assertThat(directory.search("aa", 10)).isEmpty();
+  }
+
+  private static IexSymbol symbol(final String symbol, final String name) {
+    return IexSymbol.builder().symbol(symbol).name(name).isEnabled(true).build();
+  }
+
+  private static List<String> symbols(final List<IexSymbol> symbols) {
+    return symbols.stream().map(IexSymbol::getSymbol).collect(Collectors.toList());
+  }
+}
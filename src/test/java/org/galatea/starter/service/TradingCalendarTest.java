@@ -0,0 +1,48 @@
+package org.galatea.starter.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import org.junit.Test;
+
+public class TradingCalendarTest {
+
+  // The holidays of 2022 only
+  private final TradingCalendar calendar = new TradingCalendar(Arrays.asList(
+      LocalDate.parse("2022-01-17"), LocalDate.parse("2022-02-21"), LocalDate.parse("2022-04-15"),
+      LocalDate.parse("2022-05-30"), LocalDate.parse("2022-06-20"), LocalDate.parse("2022-07-04"),
+      LocalDate.parse("2022-09-05"), LocalDate.parse("2022-11-24"),
+      LocalDate.parse("2022-12-26")));
+
+  @Test
+  public void testWeekendsAndHolidaysAreNotTradingDays() {
+    assertThat(calendar.isTradingDay(LocalDate.parse("2022-02-04"))).isTrue();
+    assertThat(calendar.isTradingDay(LocalDate.parse("2022-02-05"))).isFalse();
+    assertThat(calendar.isTradingDay(LocalDate.parse("2022-01-17"))).isFalse();
+    // Outside the years of the holidays, every weekday trades
+    assertThat(calendar.isTradingDay(LocalDate.parse("2023-01-16"))).isTrue();
+  }
+
+  @Test
+  public void testTradingDaysLeaveOutHolidays() {
+    assertThat(calendar.tradingDays(LocalDate.parse("2022-01-13"), LocalDate.parse("2022-01-19")))
+        .containsExactly(LocalDate.parse("2022-01-13"), LocalDate.parse("2022-01-14"),
+            LocalDate.parse("2022-01-18"));
+    assertThat(calendar.tradingDaysBetween(LocalDate.parse("2022-01-13"),
+        LocalDate.parse("2022-01-19"))).isEqualTo(3);
+  }
+
+  @Test
+  public void testRangesSpanYears() {
+    // 2022-12-26 is a holiday, and 2023-01-02 is not one in this calendar
+    assertThat(calendar.tradingDays(LocalDate.parse("2022-12-23"), LocalDate.parse("2023-01-03")))
+        .containsExactly(LocalDate.parse("2022-12-23"), LocalDate.parse("2022-12-27"),
+            LocalDate.parse("2022-12-28"), LocalDate.parse("2022-12-29"),
+            LocalDate.parse("2022-12-30"), LocalDate.parse("2023-01-02"));
+    assertThat(calendar.tradingDaysBetween(LocalDate.parse("2022-01-01"),
+        LocalDate.parse("2023-01-01"))).isEqualTo(251);
+    assertThat(calendar.tradingDaysBetween(LocalDate.parse("2022-02-04"),
+        LocalDate.parse("2022-02-04"))).isZero();
+  }
+}
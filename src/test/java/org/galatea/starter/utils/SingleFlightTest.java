@@ -0,0 +1,76 @@
+package org.galatea.starter.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class SingleFlightTest {
+
+  private final SingleFlight<String, String> singleFlight = new SingleFlight<>();
+
+  @Test
+  public void testConcurrentCallsForSameKeyShareOneCall() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    CountDownLatch release = new CountDownLatch(1);
+    List<String> results = Collections.synchronizedList(new ArrayList<>());
+    List<Thread> callers = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      Thread caller = new Thread(() -> results.add(singleFlight.execute("IBM", () -> {
+        calls.incrementAndGet();
+        await(release);
+        return "result";
+      })));
+      caller.start();
+      callers.add(caller);
+    }
+
+    // Only release the call once every caller is blocked, either running it or waiting for it
+    while (callers.stream().anyMatch(caller -> caller.getState() != Thread.State.WAITING
+        && caller.getState() != Thread.State.TIMED_WAITING)) {
+      Thread.sleep(5);
+    }
+    release.countDown();
+    for (Thread caller : callers) {
+      caller.join(5000);
+    }
+
+    assertThat(results).containsExactly("result", "result", "result", "result");
+    assertThat(calls.get()).isEqualTo(1);
+    assertThat(singleFlight.inFlightCount()).isZero();
+  }
+
+  @Test
+  public void testCallIsMadeAgainOnceCompleted() {
+    AtomicInteger calls = new AtomicInteger();
+
+    singleFlight.execute("IBM", () -> "first " + calls.incrementAndGet());
+    String second = singleFlight.execute("IBM", () -> "second " + calls.incrementAndGet());
+
+    assertThat(second).isEqualTo("second 2");
+  }
+
+  @Test
+  public void testExceptionIsThrownAndKeyReleased() {
+    assertThatThrownBy(() -> singleFlight.execute("IBM", () -> {
+      throw new IllegalStateException("Iex is down");
+    })).isInstanceOf(IllegalStateException.class);
+
+    assertThat(singleFlight.inFlightCount()).isZero();
+    assertThat(singleFlight.execute("IBM", () -> "recovered")).isEqualTo("recovered");
+  }
+
+  private static void await(final CountDownLatch latch) {
+    try {
+      latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,175 @@
+package org.galatea.starter.utils.jms;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiConsumer;
+import javax.jms.ConnectionFactory;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.Session;
+import org.junit.Test;
+import org.springframework.jms.support.converter.MessageConversionException;
+import org.springframework.transaction.TransactionStatus;
+
+public class FuseMessageListenerContainerTest {
+
+  private final List<Message> failed = new ArrayList<>();
+  private final BiConsumer<Message, Exception> failedMessageConsumer =
+      (message, e) -> failed.add(message);
+  private final FuseMessageListenerContainer container =
+      new FuseMessageListenerContainer(failedMessageConsumer);
+
+  private final Message first = mock(Message.class);
+  private final Message second = mock(Message.class);
+  private final Message third = mock(Message.class);
+  // Neither transacted nor client acknowledged, so nothing it received can be redelivered
+  private final Session autoAcknowledgedSession = mock(Session.class);
+
+  @Test
+  public void testBatchIsDrainedUpToItsSize() throws Exception {
+    container.setBatchSize(2);
+    MessageConsumer consumer = mock(MessageConsumer.class);
+    given(consumer.receive(anyLong())).willReturn(first, second, third);
+    given(consumer.receiveNoWait()).willReturn(second, third);
+
+    assertThat(container.receiveBatch(consumer, 2)).containsExactly(first, second);
+  }
+
+  @Test
+  public void testBatchEndsWhenNoMoreMessagesArrive() throws Exception {
+    container.setBatchSize(10);
+    container.setBatchTimeoutMs(5);
+    MessageConsumer consumer = mock(MessageConsumer.class);
+    given(consumer.receive(anyLong())).willReturn(first, (Message) null);
+
+    assertThat(container.receiveBatch(consumer, 10)).containsExactly(first);
+  }
+
+  @Test
+  public void testBatchIsHandedToTheListenerAtOnce() throws Exception {
+    List<List<Message>> handed = new ArrayList<>();
+    container.setMessageListener((BatchMessageListener) handed::add);
+
+    assertThat(container.invokeBatchListener(autoAcknowledgedSession,
+        Arrays.asList(first, second))).isTrue();
+
+    assertThat(handed).containsExactly(Arrays.asList(first, second));
+    assertThat(failed).isEmpty();
+  }
+
+  @Test
+  public void testPoisonMessageIsIsolatedInPlaceWhenItCannotBeRedelivered() throws Exception {
+    List<Message> handled = new ArrayList<>();
+    container.setMessageListener((BatchMessageListener) messages -> {
+      if (messages.contains(second)) {
+        throw new MessageConversionException("Not an agreement");
+      }
+      handled.addAll(messages);
+    });
+
+    assertThat(container.invokeBatchListener(autoAcknowledgedSession,
+        Arrays.asList(first, second, third))).isTrue();
+
+    assertThat(handled).containsExactly(first, third);
+    assertThat(failed).containsExactly(second);
+  }
+
+  @Test
+  public void testTransientFailureIsNotTreatedAsPoison() {
+    List<List<Message>> handed = new ArrayList<>();
+    container.setMessageListener((BatchMessageListener) messages -> {
+      handed.add(messages);
+      throw new IllegalStateException("The database is down");
+    });
+
+    assertThatThrownBy(() -> container.invokeBatchListener(autoAcknowledgedSession,
+        Arrays.asList(first, second))).isInstanceOf(IllegalStateException.class);
+
+    // Not handed out one at a time, since every message would fail the same way
+    assertThat(handed).containsExactly(Arrays.asList(first, second));
+    assertThat(failed).isEmpty();
+  }
+
+  @Test
+  public void testTransientFailureRollsTheSessionBack() throws Exception {
+    FuseMessageListenerContainer batching = transactedContainer(2);
+    batching.setMessageListener((BatchMessageListener) messages -> {
+      throw new IllegalStateException("The database is down");
+    });
+    Session session = transactedSession();
+    MessageConsumer consumer = mock(MessageConsumer.class);
+    given(consumer.receive(anyLong())).willReturn(first);
+    given(consumer.receiveNoWait()).willReturn(second);
+
+    TransactionStatus status = mock(TransactionStatus.class);
+
+    // Handled like the failure of a single message, not as a broken connection
+    assertThat(batching.doReceiveAndExecute(null, session, consumer, status)).isTrue();
+
+    verify(session).rollback();
+    verify(session, never()).commit();
+    verify(status).setRollbackOnly();
+    assertThat(failed).isEmpty();
+  }
+
+  @Test
+  public void testMessagesOfAPoisonedBatchAreCommittedOneAtATime() throws Exception {
+    FuseMessageListenerContainer batching = transactedContainer(3);
+    List<Message> stored = new ArrayList<>();
+    batching.setMessageListener((BatchMessageListener) messages -> {
+      if (messages.contains(second)) {
+        throw new MessageConversionException("Not an agreement");
+      } else if (messages.contains(third)) {
+        throw new IllegalStateException("The database is down");
+      }
+      stored.addAll(messages);
+    });
+    Session session = transactedSession();
+    MessageConsumer consumer = mock(MessageConsumer.class);
+    // The batch, then its messages redelivered after the rollback
+    given(consumer.receive(anyLong())).willReturn(first, first, second, third);
+    given(consumer.receiveNoWait()).willReturn(second, third);
+
+    for (int i = 0; i < 4; i++) {
+      assertThat(batching.doReceiveAndExecute(null, session, consumer, null)).isTrue();
+    }
+
+    // The poisoned batch and then the third message alone were rolled back, but not the first
+    // message once it was stored on its own
+    assertThat(stored).containsExactly(first);
+    assertThat(failed).containsExactly(second);
+    verify(session, times(2)).commit();
+    verify(session, times(2)).rollback();
+  }
+
+  private FuseMessageListenerContainer transactedContainer(final int batchSize) {
+    FuseMessageListenerContainer batching =
+        new FuseMessageListenerContainer(failedMessageConsumer) {
+          @Override
+          protected void messageReceived(final Object invoker, final Session session) {
+            // No invoker to tell outside of a running container
+          }
+        };
+    batching.setConnectionFactory(mock(ConnectionFactory.class));
+    batching.setSessionTransacted(true);
+    batching.setAcceptMessagesWhileStopping(true);
+    batching.setBatchSize(batchSize);
+    return batching;
+  }
+
+  private static Session transactedSession() throws Exception {
+    Session session = mock(Session.class);
+    given(session.getTransacted()).willReturn(true);
+    return session;
+  }
+}
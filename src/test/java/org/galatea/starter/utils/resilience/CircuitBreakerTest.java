@@ -0,0 +1,74 @@
+package org.galatea.starter.utils.resilience;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.Clock;
+import org.galatea.starter.utils.resilience.CircuitBreaker.State;
+import org.junit.Test;
+
+public class CircuitBreakerTest {
+
+  private final Clock clock = mock(Clock.class);
+
+  private final CircuitBreaker breaker = new CircuitBreaker("test", 3, 1000, clock);
+
+  @Test
+  public void testOpensAfterConsecutiveFailures() {
+    when(clock.millis()).thenReturn(0L);
+    breaker.onFailure();
+    breaker.onFailure();
+    breaker.onSuccess();
+    breaker.onFailure();
+    breaker.onFailure();
+    assertThat(breaker.getState()).isEqualTo(State.CLOSED);
+    assertThat(breaker.tryAcquirePermission()).isTrue();
+
+    breaker.onFailure();
+    assertThat(breaker.getState()).isEqualTo(State.OPEN);
+    assertThat(breaker.tryAcquirePermission()).isFalse();
+  }
+
+  @Test
+  public void testLetsOneTrialCallThroughOnceOpenTimeHasPassed() {
+    when(clock.millis()).thenReturn(0L);
+    openBreaker();
+
+    when(clock.millis()).thenReturn(999L);
+    assertThat(breaker.tryAcquirePermission()).isFalse();
+
+    when(clock.millis()).thenReturn(1000L);
+    assertThat(breaker.tryAcquirePermission()).isTrue();
+    assertThat(breaker.getState()).isEqualTo(State.HALF_OPEN);
+    // Only the one trial call until it reports back
+    assertThat(breaker.tryAcquirePermission()).isFalse();
+
+    breaker.onSuccess();
+    assertThat(breaker.getState()).isEqualTo(State.CLOSED);
+    assertThat(breaker.tryAcquirePermission()).isTrue();
+  }
+
+  @Test
+  public void testFailedTrialCallReopens() {
+    when(clock.millis()).thenReturn(0L);
+    openBreaker();
+
+    when(clock.millis()).thenReturn(1000L);
+    assertThat(breaker.tryAcquirePermission()).isTrue();
+    breaker.onFailure();
+    assertThat(breaker.getState()).isEqualTo(State.OPEN);
+
+    when(clock.millis()).thenReturn(1999L);
+    assertThat(breaker.tryAcquirePermission()).isFalse();
+    when(clock.millis()).thenReturn(2000L);
+    assertThat(breaker.tryAcquirePermission()).isTrue();
+  }
+
+  private void openBreaker() {
+    for (int i = 0; i < 3; i++) {
+      breaker.onFailure();
+    }
+    assertThat(breaker.getState()).isEqualTo(State.OPEN);
+  }
+}